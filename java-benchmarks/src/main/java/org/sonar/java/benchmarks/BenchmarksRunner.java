@@ -0,0 +1,45 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.benchmarks;
+
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.Main;
+
+import java.util.List;
+
+/**
+ * Runs the benchmarks selected by the usual JMH command line, with the GC profiler to report allocation rates unless other
+ * profilers are requested.
+ */
+public final class BenchmarksRunner {
+
+  private BenchmarksRunner() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    List<String> arguments = Lists.newArrayList(args);
+    if (!arguments.contains("-prof")) {
+      arguments.add("-prof");
+      arguments.add("gc");
+    }
+    Main.main(arguments.toArray(new String[arguments.size()]));
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.resources.Resource;
+import org.sonar.java.JavaConfiguration;
+import org.sonar.java.JavaFilesCache;
+import org.sonar.java.JavaSquid;
+import org.sonar.java.bytecode.visitor.ResourceMapping;
+import org.sonar.java.checks.CheckList;
+import org.sonar.plugins.java.api.JavaCheck;
+import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.JavaResourceLocator;
+import org.sonar.squidbridge.api.CodeVisitor;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analysis of a whole project, sources and bytecode, with all the checks of {@link CheckList#getJavaChecks()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChecksBenchmark {
+
+  @Param({Fixtures.STRUTS, Fixtures.COMMONS_COLLECTIONS})
+  public String project;
+
+  private Collection<File> sourceFiles;
+  private File binaries;
+
+  @Setup
+  public void setUp() {
+    sourceFiles = Fixtures.sourceFiles(project);
+    binaries = Fixtures.binaries(project);
+  }
+
+  @Benchmark
+  public JavaSquid scan() throws Exception {
+    JavaSquid squid = new JavaSquid(new JavaConfiguration(Charsets.UTF_8), new ClassesLocator(), checks());
+    squid.scan(sourceFiles, Collections.<File>emptyList(), Collections.singleton(binaries));
+    return squid;
+  }
+
+  /**
+   * Checks keep state during an analysis, so that each one needs new instances.
+   */
+  private static CodeVisitor[] checks() throws ReflectiveOperationException {
+    List<Class<? extends JavaCheck>> checkClasses = CheckList.getJavaChecks();
+    CodeVisitor[] checks = new CodeVisitor[checkClasses.size()];
+    for (int i = 0; i < checks.length; i++) {
+      checks[i] = checkClasses.get(i).newInstance();
+    }
+    return checks;
+  }
+
+  /**
+   * Locates classes in source files, without any SonarQube resource.
+   */
+  private static class ClassesLocator implements JavaResourceLocator {
+
+    private final Map<String, String> sourceFileKeys = Maps.newHashMap();
+    private final ResourceMapping resourceMapping = new ResourceMapping();
+
+    @Override
+    public Resource findResourceByClassName(String className) {
+      return null;
+    }
+
+    @Override
+    public String findSourceFileKeyByClassName(String className) {
+      return sourceFileKeys.get(className.replace('.', '/'));
+    }
+
+    @Override
+    public Collection<String> classKeys() {
+      return sourceFileKeys.keySet();
+    }
+
+    @Override
+    public Collection<File> classFilesToAnalyze() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Collection<File> classpath() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public Integer getMethodStartLine(String fullyQualifiedMethodName) {
+      return null;
+    }
+
+    @Override
+    public ResourceMapping getResourceMapping() {
+      return resourceMapping;
+    }
+
+    @Override
+    public void scanFile(JavaFileScannerContext context) {
+      JavaFilesCache javaFilesCache = new JavaFilesCache();
+      javaFilesCache.scanFile(context);
+      for (String key : javaFilesCache.getResourcesCache().keySet()) {
+        sourceFileKeys.put(key, context.getFileKey());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Projects used as fixtures, unpacked by the build in target/test-projects.
+ */
+final class Fixtures {
+
+  static final String STRUTS = "struts-core-1.3.9";
+  static final String COMMONS_COLLECTIONS = "commons-collections-3.2.1";
+
+  private static final int METHOD_LINES = 15;
+  private static final File PROJECTS_DIR = new File(System.getProperty("sonar.java.benchmarks.projects", "target/test-projects"));
+
+  private Fixtures() {
+  }
+
+  static File sources(String project) {
+    return directory(project, "src");
+  }
+
+  static File binaries(String project) {
+    return directory(project, "bin");
+  }
+
+  static Collection<File> sourceFiles(String project) {
+    return FileUtils.listFiles(sources(project), new String[] {"java"}, true);
+  }
+
+  static List<File> classpath() {
+    return ImmutableList.of(binaries(STRUTS), binaries(COMMONS_COLLECTIONS));
+  }
+
+  /**
+   * @param size "small" (about 1 KB), "medium" (about 8 KB) or "huge" (about 70 KB)
+   */
+  static File sourceFile(String size) {
+    String path;
+    if ("small".equals(size)) {
+      path = "org/apache/struts/mock/MockAction.java";
+    } else if ("medium".equals(size)) {
+      path = "org/apache/struts/chain/contexts/ServletActionContext.java";
+    } else if ("huge".equals(size)) {
+      path = "org/apache/struts/action/ActionServlet.java";
+    } else {
+      throw new IllegalArgumentException("Unknown size: " + size);
+    }
+    return new File(sources(STRUTS), path);
+  }
+
+  /**
+   * @return a generated file of about the given number of lines, made of methods mixing statements, expressions and comments
+   */
+  static File generatedSourceFile(int lines) {
+    StringBuilder source = new StringBuilder();
+    source.append("package generated;\n\nimport java.util.List;\n\npublic class Generated {\n\n");
+    source.append("  private int count;\n\n");
+    int method = 0;
+    for (int line = 8; line < lines; line += METHOD_LINES) {
+      source.append("  /**\n   * Method ").append(method).append("\n   */\n");
+      source.append("  public int method").append(method).append("(List<String> values, int limit) {\n");
+      source.append("    int result = 0;\n");
+      source.append("    for (String value : values) {\n");
+      source.append("      if (value.length() > limit && result < 100) {\n");
+      source.append("        result += value.hashCode() % 7; // accumulate\n");
+      source.append("      } else {\n");
+      source.append("        count++;\n");
+      source.append("      }\n");
+      source.append("    }\n");
+      source.append("    return result * 2 + count;\n");
+      source.append("  }\n\n");
+      method++;
+    }
+    source.append("}\n");
+    File file = new File(PROJECTS_DIR.getParentFile(), "generated/Generated" + lines + ".java");
+    try {
+      Files.createParentDirs(file);
+      Files.write(source, file, Charsets.UTF_8);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+    return file;
+  }
+
+  private static File directory(String project, String name) {
+    File directory = new File(new File(PROJECTS_DIR, project), name);
+    if (!directory.isDirectory()) {
+      throw new IllegalStateException(directory.getAbsolutePath() + " not found: run 'mvn package -Pbenchmarks' first, "
+        + "or set sonar.java.benchmarks.projects to the directory of the projects");
+    }
+    return directory;
+  }
+
+}
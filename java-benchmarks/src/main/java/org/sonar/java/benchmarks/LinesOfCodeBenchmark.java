@@ -0,0 +1,107 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.java.LineSet;
+import org.sonar.java.ast.parser.JavaParser;
+import org.sonar.java.ast.visitors.LinesOfCodeVisitor;
+import org.sonar.java.ast.visitors.SubscriptionVisitor;
+import org.sonar.java.model.InternalSyntaxToken;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.SyntaxToken;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting of the lines of code of a generated file of 10k lines, with lines stored in a {@link LineSet} by
+ * {@link LinesOfCodeVisitor}, and in a set of boxed integers by {@link #linesOfCodeInHashSet()}, as a baseline.
+ * To be run with "-prof gc" to compare allocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LinesOfCodeBenchmark {
+
+  private CompilationUnitTree tree;
+  private LinesOfCodeVisitor visitor;
+  private HashSetLinesOfCodeVisitor hashSetVisitor;
+
+  @Setup
+  public void setUp() {
+    File file = Fixtures.generatedSourceFile(10000);
+    tree = (CompilationUnitTree) JavaParser.createParser(Charsets.UTF_8).parse(file);
+    visitor = new LinesOfCodeVisitor();
+    hashSetVisitor = new HashSetLinesOfCodeVisitor();
+  }
+
+  @Benchmark
+  public int linesOfCode() {
+    return visitor.linesOfCode(tree);
+  }
+
+  @Benchmark
+  public int linesOfCodeInHashSet() {
+    return hashSetVisitor.linesOfCode(tree);
+  }
+
+  private static class HashSetLinesOfCodeVisitor extends SubscriptionVisitor {
+
+    private Set<Integer> lines;
+
+    int linesOfCode(CompilationUnitTree tree) {
+      lines = Sets.newHashSet();
+      visitTokens(tree);
+      return lines.size();
+    }
+
+    @Override
+    public List<Tree.Kind> nodesToVisit() {
+      return ImmutableList.of(Tree.Kind.TOKEN);
+    }
+
+    @Override
+    public void visitToken(SyntaxToken syntaxToken) {
+      if (!((InternalSyntaxToken) syntaxToken).isEOF()) {
+        lines.add(syntaxToken.line());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.java.ast.parser.JavaParser;
+import org.sonar.java.parser.sslr.ActionParser2;
+import org.sonar.java.resolve.BytecodeCompleter;
+import org.sonar.java.resolve.ParametrizedTypeCache;
+import org.sonar.java.resolve.SemanticModel;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Semantic analysis of a single file, with symbols read from bytecode shared by all invocations, as during an analysis.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SemanticModelBenchmark {
+
+  @Param({"small", "medium", "huge"})
+  public String size;
+
+  private ActionParser2 parser;
+  private String source;
+  private BytecodeCompleter bytecodeCompleter;
+  private CompilationUnitTree tree;
+
+  @Setup
+  public void setUp() throws IOException {
+    parser = JavaParser.createParser(Charsets.UTF_8);
+    source = Files.toString(Fixtures.sourceFile(size), Charsets.UTF_8);
+    bytecodeCompleter = new BytecodeCompleter(Fixtures.classpath(), new ParametrizedTypeCache());
+  }
+
+  /**
+   * Semantic analysis sets symbols and types on the tree, so that each invocation needs a tree which was never analyzed.
+   */
+  @Setup(Level.Invocation)
+  public void parse() {
+    tree = (CompilationUnitTree) parser.parse(source);
+  }
+
+  @TearDown
+  public void tearDown() {
+    bytecodeCompleter.done();
+  }
+
+  @Benchmark
+  public SemanticModel createFor() {
+    SemanticModel semanticModel = SemanticModel.createFor(tree, bytecodeCompleter);
+    semanticModel.done();
+    return semanticModel;
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.benchmarks;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.java.ast.parser.JavaParser;
+import org.sonar.java.ast.visitors.SubscriptionVisitor;
+import org.sonar.java.model.JavaTree;
+import org.sonar.java.model.VisitorsBridge;
+import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.SyntaxToken;
+import org.sonar.plugins.java.api.tree.SyntaxTrivia;
+import org.sonar.plugins.java.api.tree.Tree;
+import org.sonar.squidbridge.api.SourceFile;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Traversal of the tree of a generated file of 10k lines by a {@link SubscriptionVisitor}, depending on the kinds of nodes
+ * it subscribes to. {@link #scanFileWithListLookup()} looks up subscriptions in the list returned by
+ * {@link SubscriptionVisitor#nodesToVisit()} on each node, as a baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SubscriptionVisitorBenchmark {
+
+  /**
+   * "methods": methods and constructors, "trees": all kinds of trees, "tokens": tokens and trivias
+   */
+  @Param({"methods", "trees", "tokens"})
+  public String subscription;
+
+  private JavaFileScannerContext context;
+  private CountingVisitor visitor;
+  private CountingVisitor listLookupVisitor;
+
+  @Setup
+  public void setUp() {
+    File file = Fixtures.generatedSourceFile(10000);
+    CompilationUnitTree tree = (CompilationUnitTree) JavaParser.createParser(Charsets.UTF_8).parse(file);
+    context = new VisitorsBridge.DefaultJavaFileScannerContext(tree, new SourceFile(file.getPath()), file, null, false);
+    visitor = new CountingVisitor(nodesToVisit(subscription));
+    listLookupVisitor = new ListLookupVisitor(nodesToVisit(subscription));
+  }
+
+  private static List<Tree.Kind> nodesToVisit(String subscription) {
+    if ("methods".equals(subscription)) {
+      return ImmutableList.of(Tree.Kind.METHOD, Tree.Kind.CONSTRUCTOR);
+    } else if ("trees".equals(subscription)) {
+      List<Tree.Kind> kinds = Lists.newArrayList(Tree.Kind.values());
+      kinds.remove(Tree.Kind.TOKEN);
+      kinds.remove(Tree.Kind.TRIVIA);
+      return kinds;
+    } else if ("tokens".equals(subscription)) {
+      return ImmutableList.of(Tree.Kind.TOKEN, Tree.Kind.TRIVIA);
+    }
+    throw new IllegalArgumentException("Unknown subscription: " + subscription);
+  }
+
+  @Benchmark
+  public int scanFile() {
+    visitor.count = 0;
+    visitor.scanFile(context);
+    return visitor.count;
+  }
+
+  @Benchmark
+  public int scanFileWithListLookup() {
+    listLookupVisitor.count = 0;
+    listLookupVisitor.scanFile(context);
+    return listLookupVisitor.count;
+  }
+
+  private static class CountingVisitor extends SubscriptionVisitor {
+
+    private final List<Tree.Kind> nodesToVisit;
+    private int count;
+
+    CountingVisitor(List<Tree.Kind> nodesToVisit) {
+      this.nodesToVisit = nodesToVisit;
+    }
+
+    @Override
+    public List<Tree.Kind> nodesToVisit() {
+      return nodesToVisit;
+    }
+
+    @Override
+    public void visitNode(Tree tree) {
+      count++;
+    }
+
+    @Override
+    public void visitToken(SyntaxToken syntaxToken) {
+      count++;
+    }
+
+    @Override
+    public void visitTrivia(SyntaxTrivia syntaxTrivia) {
+      count++;
+    }
+  }
+
+  private static class ListLookupVisitor extends CountingVisitor {
+
+    ListLookupVisitor(List<Tree.Kind> nodesToVisit) {
+      super(nodesToVisit);
+    }
+
+    @Override
+    protected boolean isSubscribed(Tree tree) {
+      return nodesToVisit().contains(((JavaTree) tree).getKind());
+    }
+  }
+
+}
@@ -19,20 +19,19 @@
  */
 package org.sonar.plugins.jacoco;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang.StringUtils;
-import org.jacoco.core.analysis.Analyzer;
-import org.jacoco.core.analysis.CoverageBuilder;
-import org.jacoco.core.analysis.ICounter;
-import org.jacoco.core.analysis.ILine;
-import org.jacoco.core.analysis.ISourceFileCoverage;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.component.ResourcePerspectives;
-import org.sonar.api.measures.CoverageMeasuresBuilder;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
@@ -45,16 +44,29 @@ import org.sonar.api.test.MutableTestable;
 import org.sonar.api.test.Testable;
 import org.sonar.api.utils.SonarException;
 import org.sonar.java.JavaClasspath;
+import org.sonar.java.LineSet;
 import org.sonar.plugins.java.api.JavaResourceLocator;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.google.common.collect.Lists.newArrayList;
 
@@ -68,6 +80,8 @@ public abstract class AbstractAnalyzer {
 
   private Map<String, File> classFilesCache;
   private JavaClasspath javaClasspath;
+  private int threads = 1;
+  private String classProbesCachePath;
 
   public AbstractAnalyzer(ResourcePerspectives perspectives, ModuleFileSystem fileSystem, PathResolver pathResolver,
                           JavaResourceLocator javaResourceLocator, JavaClasspath javaClasspath) {
@@ -83,13 +97,27 @@ public abstract class AbstractAnalyzer {
     this.javaClasspath = javaClasspath;
   }
 
-  private static String fullyQualifiedClassName(String packageName, String simpleClassName) {
-    return ("".equals(packageName) ? "" : packageName + "/") + StringUtils.substringBeforeLast(simpleClassName, ".");
+  /**
+   * @param threads number of threads used to analyze class files and to compute lines covered by each test
+   */
+  public void setThreads(int threads) {
+    Preconditions.checkArgument(threads > 0, "Number of threads must be positive: %s", threads);
+    this.threads = threads;
+  }
+
+  /**
+   * @param classProbesCachePath path of the file where structures of class files are stored for next analyses, relative to the
+   *                             project base directory, or null if they are not stored
+   */
+  public void setClassProbesCachePath(@Nullable String classProbesCachePath) {
+    this.classProbesCachePath = classProbesCachePath;
   }
 
-  private Resource getResource(ISourceFileCoverage coverage, SensorContext context) {
-    String className = fullyQualifiedClassName(coverage.getPackageName(), coverage.getName());
+  static String fullyQualifiedClassName(String packageName, String simpleClassName) {
+    return ("".equals(packageName) ? "" : packageName + "/") + StringUtils.substringBeforeLast(simpleClassName, ".");
+  }
 
+  private Resource getResource(String className, SensorContext context) {
     Resource resourceInContext = context.getResource(javaResourceLocator.findResourceByClassName(className));
     if (resourceInContext == null) {
       // Do not save measures on resource which doesn't exist in the context
@@ -104,17 +132,15 @@ public abstract class AbstractAnalyzer {
   }
 
   public final void analyse(Project project, SensorContext context) {
-    classFilesCache = Maps.newHashMap();
-    for (File classesDir : javaClasspath.getBinaryDirs()) {
-      populateClassFilesCache(classesDir, "");
-    }
-
+    classFilesCache = javaClasspath.getClassFiles();
     if (classFilesCache.isEmpty()) {
       JaCoCoExtensions.LOG.info("No JaCoCo analysis of project coverage can be done since there is no class files.");
       return;
     }
-    String path = getReportPath(project);
-    File jacocoExecutionData = pathResolver.relativeFile(fileSystem.baseDir(), path);
+    List<File> jacocoExecutionData = newArrayList();
+    for (String path : getReportPaths(project)) {
+      jacocoExecutionData.add(pathResolver.relativeFile(fileSystem.baseDir(), path));
+    }
 
     try {
       readExecutionData(jacocoExecutionData, context);
@@ -125,96 +151,161 @@ public abstract class AbstractAnalyzer {
     classFilesCache = null;
   }
 
-  private void populateClassFilesCache(File dir, String path) {
-    File[] files = dir.listFiles();
-    if (files == null) {
-      return;
-    }
-    for (File file : files) {
-      if (file.isDirectory()) {
-        populateClassFilesCache(file, path + file.getName() + "/");
-      } else if (file.getName().endsWith(".class")) {
-        String className = path + StringUtils.removeEnd(file.getName(), ".class");
-        classFilesCache.put(className, file);
-      }
-    }
+  public final void readExecutionData(@Nullable File jacocoExecutionData, SensorContext context) throws IOException {
+    readExecutionData(jacocoExecutionData == null ? Collections.<File>emptyList() : Collections.singletonList(jacocoExecutionData), context);
   }
 
-  public final void readExecutionData(File jacocoExecutionData, SensorContext context) throws IOException {
-    ExecutionDataVisitor executionDataVisitor = new ExecutionDataVisitor();
-
-    if (jacocoExecutionData == null || !jacocoExecutionData.isFile()) {
-      JaCoCoExtensions.LOG.info("Project coverage is set to 0% as no JaCoCo execution data has been dumped: {}", jacocoExecutionData);
-      jacocoExecutionData = null;
-    } else {
-      JaCoCoExtensions.LOG.info("Analysing {}", jacocoExecutionData);
-
-      InputStream inputStream = null;
-      try {
-        inputStream = new BufferedInputStream(new FileInputStream(jacocoExecutionData));
-        ExecutionDataReader reader = new ExecutionDataReader(inputStream);
-        reader.setSessionInfoVisitor(executionDataVisitor);
-        reader.setExecutionDataVisitor(executionDataVisitor);
-        reader.read();
-      } finally {
-        Closeables.closeQuietly(inputStream);
+  /**
+   * Execution data of several files is merged while it is read, keeping only the probes of the analyzed classes.
+   */
+  public final void readExecutionData(List<File> jacocoExecutionData, SensorContext context) throws IOException {
+    File classProbesCacheFile = classProbesCachePath == null ? null : pathResolver.relativeFile(fileSystem.baseDir(), classProbesCachePath);
+    ClassProbesCache classProbesCache = new ClassProbesCache(classProbesCacheFile);
+    ExecutorService executor = threads > 1
+      ? Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("jacoco-analyzer-%d").setDaemon(true).build())
+      : MoreExecutors.sameThreadExecutor();
+    boolean foundExecutionData = false;
+    boolean collectedCoveragePerTest;
+    int analyzedResources = 0;
+    try {
+      Map<String, ClassProbes> classProbesByName = analyzeClassFiles(classProbesCache, executor);
+      Set<Long> classIds = Sets.newHashSet();
+      for (ClassProbes classProbes : classProbesByName.values()) {
+        classIds.add(classProbes.classId());
       }
-    }
-
-    boolean collectedCoveragePerTest = readCoveragePerTests(context, executionDataVisitor);
+      ExecutionDataVisitor executionDataVisitor = new ExecutionDataVisitor(readCoveragePerTests, classIds);
+      for (File file : jacocoExecutionData) {
+        if (file != null && file.isFile()) {
+          read(file, executionDataVisitor);
+          foundExecutionData = true;
+        }
+      }
+      if (!foundExecutionData) {
+        JaCoCoExtensions.LOG.info("Project coverage is set to 0% as no JaCoCo execution data has been dumped: {}", jacocoExecutionData);
+      }
+      collectedCoveragePerTest = readCoveragePerTests(context, executionDataVisitor, classProbesByName, executor);
 
-    CoverageBuilder coverageBuilder = analyze(executionDataVisitor.getMerged());
-    int analyzedResources = 0;
-    for (ISourceFileCoverage coverage : coverageBuilder.getSourceFiles()) {
-      Resource resource = getResource(coverage, context);
-      if (resource != null) {
-        CoverageMeasuresBuilder builder = analyzeFile(resource, coverage);
-        saveMeasures(context, resource, builder.createMeasures());
-        analyzedResources++;
+      for (Map.Entry<String, SourceCoverage> entry : coverageBySourceClass(executionDataVisitor.getMerged(), classProbesByName).entrySet()) {
+        Resource resource = getResource(entry.getKey(), context);
+        if (resource != null) {
+          saveMeasures(context, resource, entry.getValue().createMeasuresBuilder().createMeasures());
+          analyzedResources++;
+        }
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException(e);
+    } catch (ExecutionException e) {
+      throw new SonarException(e.getCause());
+    } finally {
+      executor.shutdownNow();
     }
+    classProbesCache.save();
     if (analyzedResources == 0) {
       JaCoCoExtensions.LOG.warn("Coverage information was not collected. Perhaps you forget to include debug information into compiled classes?");
     } else if (collectedCoveragePerTest) {
       JaCoCoExtensions.LOG.info("Information about coverage per test has been collected.");
-    } else if (jacocoExecutionData != null) {
+    } else if (foundExecutionData) {
       JaCoCoExtensions.LOG.info("No information about coverage per test.");
     }
   }
 
-  private boolean readCoveragePerTests(SensorContext context, ExecutionDataVisitor executionDataVisitor) {
-    boolean collectedCoveragePerTest = false;
-    if(readCoveragePerTests) {
-      for (Map.Entry<String, ExecutionDataStore> entry : executionDataVisitor.getSessions().entrySet()) {
-        if (analyzeLinesCoveredByTests(entry.getKey(), entry.getValue(), context)) {
-          collectedCoveragePerTest = true;
+  private static void read(File jacocoExecutionData, ExecutionDataVisitor executionDataVisitor) throws IOException {
+    JaCoCoExtensions.LOG.info("Analysing {}", jacocoExecutionData);
+    InputStream inputStream = null;
+    try {
+      inputStream = new BufferedInputStream(new FileInputStream(jacocoExecutionData));
+      ExecutionDataReader reader = new ExecutionDataReader(inputStream);
+      reader.setSessionInfoVisitor(executionDataVisitor);
+      reader.setExecutionDataVisitor(executionDataVisitor);
+      reader.read();
+    } finally {
+      Closeables.closeQuietly(inputStream);
+    }
+  }
+
+  /**
+   * Reads each class file once, unless its structure was stored by a previous analysis.
+   */
+  private Map<String, ClassProbes> analyzeClassFiles(final ClassProbesCache classProbesCache, ExecutorService executor)
+    throws InterruptedException, ExecutionException {
+    Map<String, Future<ClassProbes>> futures = Maps.newHashMap();
+    for (Map.Entry<String, File> entry : classFilesCache.entrySet()) {
+      final File classFile = entry.getValue();
+      futures.put(entry.getKey(), executor.submit(new Callable<ClassProbes>() {
+        @Override
+        public ClassProbes call() {
+          try {
+            return classProbesCache.get(Files.toByteArray(classFile));
+          } catch (IOException e) {
+            JaCoCoExtensions.LOG.warn("Exception during analysis of file " + classFile.getAbsolutePath(), e);
+            return null;
+          }
         }
+      }));
+    }
+    Map<String, ClassProbes> result = Maps.newHashMap();
+    for (Map.Entry<String, Future<ClassProbes>> entry : futures.entrySet()) {
+      ClassProbes classProbes = entry.getValue().get();
+      if (classProbes != null && classProbes.hasCode() && classProbes.sourceClassName() != null) {
+        result.put(entry.getKey(), classProbes);
       }
     }
-    return collectedCoveragePerTest;
+    return result;
   }
 
-  private boolean analyzeLinesCoveredByTests(String sessionId, ExecutionDataStore executionDataStore, SensorContext context) {
-    int i = sessionId.indexOf(' ');
-    if (i < 0) {
-      return false;
+  private static Map<String, SourceCoverage> coverageBySourceClass(ExecutionDataStore executionDataStore, Map<String, ClassProbes> classProbesByName) {
+    Map<String, SourceCoverage> result = Maps.newHashMap();
+    for (ClassProbes classProbes : classProbesByName.values()) {
+      SourceCoverage coverage = result.get(classProbes.sourceClassName());
+      if (coverage == null) {
+        coverage = new SourceCoverage();
+        result.put(classProbes.sourceClassName(), coverage);
+      }
+      ExecutionData data = executionDataStore.get(classProbes.classId());
+      classProbes.addCoverage(data == null ? null : data.getProbes(), coverage);
     }
-    String testClassName = sessionId.substring(0, i);
-    String testName = sessionId.substring(i + 1);
-    Resource testResource = context.getResource(javaResourceLocator.findResourceByClassName(testClassName));
-    if (testResource == null) {
-      // No such test class
+    return result;
+  }
+
+  private boolean readCoveragePerTests(SensorContext context, ExecutionDataVisitor executionDataVisitor, Map<String, ClassProbes> classProbesByName,
+    ExecutorService executor) throws InterruptedException, ExecutionException {
+    if (!readCoveragePerTests) {
       return false;
     }
+    List<TestSession> testSessions = newArrayList();
+    for (Map.Entry<String, ExecutionDataStore> entry : executionDataVisitor.getSessions().entrySet()) {
+      TestSession testSession = TestSession.of(entry.getKey(), entry.getValue(), context, javaResourceLocator);
+      if (testSession != null) {
+        testSessions.add(testSession);
+      }
+    }
+    return analyzeLinesCoveredByTests(testSessions, classProbesByName, executor, context);
+  }
 
+  /**
+   * Lines covered by each test are computed on {@code executor}, ahead of their saving which is done on the current thread
+   * in the order of the sessions.
+   */
+  private boolean analyzeLinesCoveredByTests(List<TestSession> testSessions, final Map<String, ClassProbes> classProbesByName,
+    ExecutorService executor, SensorContext context) throws InterruptedException, ExecutionException {
     boolean result = false;
-    CoverageBuilder coverageBuilder = analyze2(executionDataStore);
-    for (ISourceFileCoverage coverage : coverageBuilder.getSourceFiles()) {
-      Resource resource = getResource(coverage, context);
-      if (resource != null) {
-        CoverageMeasuresBuilder builder = analyzeFile(resource, coverage);
-        List<Integer> coveredLines = getCoveredLines(builder);
-        if (!coveredLines.isEmpty() && addCoverage(resource, testResource, testName, coveredLines)) {
+    Deque<Future<Map<String, LineSet>>> pending = new ArrayDeque<Future<Map<String, LineSet>>>();
+    Iterator<TestSession> toAnalyze = testSessions.iterator();
+    for (TestSession testSession : testSessions) {
+      while (pending.size() < 2 * threads && toAnalyze.hasNext()) {
+        final TestSession next = toAnalyze.next();
+        pending.add(executor.submit(new Callable<Map<String, LineSet>>() {
+          @Override
+          public Map<String, LineSet> call() {
+            return coveredLinesBySourceClass(next.executionDataStore, classProbesByName);
+          }
+        }));
+      }
+      for (Map.Entry<String, LineSet> entry : pending.remove().get().entrySet()) {
+        Resource resource = getResource(entry.getKey(), context);
+        if (resource != null && !entry.getValue().isEmpty()
+          && addCoverage(resource, testSession.testResource, testSession.testName, toList(entry.getValue()))) {
           result = true;
         }
       }
@@ -222,27 +313,33 @@ public abstract class AbstractAnalyzer {
     return result;
   }
 
-  private CoverageBuilder analyze2(ExecutionDataStore executionDataStore) {
-    CoverageBuilder coverageBuilder = new CoverageBuilder();
-    Analyzer analyzer = new Analyzer(executionDataStore, coverageBuilder);
+  private static Map<String, LineSet> coveredLinesBySourceClass(ExecutionDataStore executionDataStore, Map<String, ClassProbes> classProbesByName) {
+    Map<String, LineSet> result = Maps.newHashMap();
     for (ExecutionData data : executionDataStore.getContents()) {
-      String vmClassName = data.getName();
-      File classFile = classFilesCache.get(vmClassName);
-      if (classFile != null) {
-        analyzeClassFile(analyzer, classFile);
+      ClassProbes classProbes = classProbesByName.get(data.getName());
+      // execution data of another version of the class is ignored, as by JaCoCo
+      if (classProbes != null && classProbes.classId() == data.getId()) {
+        classProbes.addCoveredLines(data.getProbes(), linesOf(result, classProbes.sourceClassName()));
       }
     }
-    return coverageBuilder;
+    return result;
   }
 
-  private List<Integer> getCoveredLines(CoverageMeasuresBuilder builder) {
-    List<Integer> linesCover = newArrayList();
-    for (Map.Entry<Integer, Integer> hitsByLine : builder.getHitsByLine().entrySet()) {
-      if (hitsByLine.getValue() > 0) {
-        linesCover.add(hitsByLine.getKey());
-      }
+  private static LineSet linesOf(Map<String, LineSet> linesBySourceClass, String sourceClassName) {
+    LineSet lines = linesBySourceClass.get(sourceClassName);
+    if (lines == null) {
+      lines = new LineSet();
+      linesBySourceClass.put(sourceClassName, lines);
     }
-    return linesCover;
+    return lines;
+  }
+
+  private static List<Integer> toList(LineSet lines) {
+    List<Integer> result = newArrayList();
+    for (int line = lines.nextLine(0); line >= 0; line = lines.nextLine(line + 1)) {
+      result.add(line);
+    }
+    return result;
   }
 
   private boolean addCoverage(Resource resource, Resource testFile, String testName, List<Integer> coveredLines) {
@@ -260,64 +357,47 @@ public abstract class AbstractAnalyzer {
     return result;
   }
 
-  private CoverageBuilder analyze(ExecutionDataStore executionDataStore) {
-    CoverageBuilder coverageBuilder = new CoverageBuilder();
-    Analyzer analyzer = new Analyzer(executionDataStore, coverageBuilder);
-    for (File classFile : classFilesCache.values()) {
-      analyzeClassFile(analyzer, classFile);
-    }
-    return coverageBuilder;
-  }
+  private static class TestSession {
 
-  /**
-   * Caller must guarantee that {@code classFile} is actually class file.
-   */
-  private void analyzeClassFile(Analyzer analyzer, File classFile) {
-    InputStream inputStream = null;
-    try {
-      inputStream = new FileInputStream(classFile);
-      analyzer.analyzeClass(inputStream, classFile.getPath());
-    } catch (IOException e) {
-      // (Godin): in fact JaCoCo includes name into exception
-      JaCoCoExtensions.LOG.warn("Exception during analysis of file " + classFile.getAbsolutePath(), e);
-    } finally {
-      Closeables.closeQuietly(inputStream);
+    private final Resource testResource;
+    private final String testName;
+    private final ExecutionDataStore executionDataStore;
+
+    private TestSession(Resource testResource, String testName, ExecutionDataStore executionDataStore) {
+      this.testResource = testResource;
+      this.testName = testName;
+      this.executionDataStore = executionDataStore;
     }
-  }
 
-  private CoverageMeasuresBuilder analyzeFile(Resource resource, ISourceFileCoverage coverage) {
-    CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
-    for (int lineId = coverage.getFirstLine(); lineId <= coverage.getLastLine(); lineId++) {
-      final int hits;
-      ILine line = coverage.getLine(lineId);
-      switch (line.getInstructionCounter().getStatus()) {
-        case ICounter.FULLY_COVERED:
-        case ICounter.PARTLY_COVERED:
-          hits = 1;
-          break;
-        case ICounter.NOT_COVERED:
-          hits = 0;
-          break;
-        case ICounter.EMPTY:
-          continue;
-        default:
-          JaCoCoExtensions.LOG.warn("Unknown status for line {} in {}", lineId, resource);
-          continue;
+    /**
+     * @return the test of the session, or null if the session does not identify a test of the project
+     */
+    @CheckForNull
+    static TestSession of(String sessionId, ExecutionDataStore executionDataStore, SensorContext context, JavaResourceLocator javaResourceLocator) {
+      int i = sessionId.indexOf(' ');
+      if (i < 0) {
+        return null;
       }
-      builder.setHits(lineId, hits);
-
-      ICounter branchCounter = line.getBranchCounter();
-      int conditions = branchCounter.getTotalCount();
-      if (conditions > 0) {
-        int coveredConditions = branchCounter.getCoveredCount();
-        builder.setConditions(lineId, conditions, coveredConditions);
+      String testClassName = sessionId.substring(0, i);
+      Resource testResource = context.getResource(javaResourceLocator.findResourceByClassName(testClassName));
+      if (testResource == null) {
+        // No such test class
+        return null;
       }
+      return new TestSession(testResource, sessionId.substring(i + 1), executionDataStore);
     }
-    return builder;
+
   }
 
   protected abstract void saveMeasures(SensorContext context, Resource resource, Collection<Measure> measures);
 
   protected abstract String getReportPath(Project project);
 
+  /**
+   * @return paths of the execution data files to merge, by default the single {@link #getReportPath(Project)}
+   */
+  protected List<String> getReportPaths(Project project) {
+    return Collections.singletonList(getReportPath(project));
+  }
+
 }
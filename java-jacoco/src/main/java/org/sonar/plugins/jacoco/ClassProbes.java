@@ -0,0 +1,599 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.jacoco;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.IFrame;
+import org.jacoco.core.internal.flow.LabelInfo;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.sonar.java.LineSet;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Structure derived by JaCoCo from a class file: for each line of the class, the probes whose execution covers the line, and
+ * for each branch of the line, the probes whose execution covers the branch. Coverage of the class for any execution data
+ * is then computed from the probes of the data, without reading the class file again.
+ * <p/>
+ * The structure follows the analysis of JaCoCo: an instruction is covered when a probe executed after it is covered, and a
+ * branch of an instruction is covered when the probe or the instruction it leads to is covered.
+ * <p/>
+ * The analysis mirrors {@code org.jacoco.core.internal.analysis.MethodAnalyzer} of JaCoCo {@value #JACOCO_VERSION}, and relies on
+ * its internal packages {@code org.jacoco.core.internal.flow} and {@code org.jacoco.core.internal.data}, which may change with any
+ * version. ClassProbesTest fails when JaCoCo is upgraded, until this class has been checked against the new version.
+ */
+class ClassProbes {
+
+  /**
+   * Version of JaCoCo whose analysis is mirrored.
+   */
+  static final String JACOCO_VERSION = "0.7.1.201405082137";
+
+  private static final int[] NO_INTS = new int[0];
+  private static final long[] NO_LONGS = new long[0];
+
+  private final long classId;
+  private final String sourceClassName;
+  private final boolean hasCode;
+  private final int probeCount;
+  private final int[] lines;
+  /**
+   * For each line, bits of the probes covering the line.
+   */
+  private final long[] lineProbes;
+  /**
+   * For each line, total number of branches of its instructions which have several branches.
+   */
+  private final int[] lineBranches;
+  /**
+   * For each line, index of its first set of probes in {@link #branchProbes}, and index of the first set of the next line.
+   */
+  private final int[] firstBranch;
+  /**
+   * For each branch which can be covered, bits of the probes covering the branch.
+   */
+  private final long[] branchProbes;
+
+  private ClassProbes(long classId, @Nullable String sourceClassName, boolean hasCode, int probeCount, int[] lines, long[] lineProbes,
+    int[] lineBranches, int[] firstBranch, long[] branchProbes) {
+    this.classId = classId;
+    this.sourceClassName = sourceClassName;
+    this.hasCode = hasCode;
+    this.probeCount = probeCount;
+    this.lines = lines;
+    this.lineProbes = lineProbes;
+    this.lineBranches = lineBranches;
+    this.firstBranch = firstBranch;
+    this.branchProbes = branchProbes;
+  }
+
+  static ClassProbes analyze(byte[] classBytes) {
+    ClassAnalyzer classAnalyzer = new ClassAnalyzer();
+    new ClassReader(classBytes).accept(new ClassProbesAdapter(classAnalyzer, false), 0);
+    return classAnalyzer.build(CRC64.checksum(classBytes));
+  }
+
+  /**
+   * Same identifier as the one of the execution data recorded for this version of the class.
+   */
+  long classId() {
+    return classId;
+  }
+
+  /**
+   * @return fully qualified name of the class named after the source file, or null if the class has no source file
+   */
+  @CheckForNull
+  String sourceClassName() {
+    return sourceClassName;
+  }
+
+  /**
+   * @return false if no method of the class has instructions, in which case JaCoCo ignores the class
+   */
+  boolean hasCode() {
+    return hasCode;
+  }
+
+  /**
+   * Adds to {@code lines} the lines covered by the probes, which must have been recorded for this version of the class.
+   */
+  void addCoveredLines(boolean[] probes, LineSet lines) {
+    long[] executed = bits(probes);
+    int words = words();
+    for (int i = 0; i < this.lines.length; i++) {
+      if (intersects(lineProbes, i * words, executed)) {
+        lines.add(this.lines[i]);
+      }
+    }
+  }
+
+  /**
+   * Adds to {@code coverage} the coverage of each line and of its branches.
+   *
+   * @param probes probes recorded for this version of the class, or null if the class was not executed
+   */
+  void addCoverage(@Nullable boolean[] probes, SourceCoverage coverage) {
+    long[] executed = probes == null ? new long[words()] : bits(probes);
+    int words = words();
+    for (int i = 0; i < lines.length; i++) {
+      boolean covered = intersects(lineProbes, i * words, executed);
+      int coveredBranches = 0;
+      for (int branch = firstBranch[i]; branch < firstBranch[i + 1]; branch++) {
+        if (intersects(branchProbes, branch * words, executed)) {
+          coveredBranches++;
+        }
+      }
+      coverage.addLine(lines[i], covered, lineBranches[i], coveredBranches);
+    }
+  }
+
+  private int words() {
+    return (probeCount + 63) >>> 6;
+  }
+
+  private long[] bits(boolean[] probes) {
+    long[] result = new long[words()];
+    for (int i = 0; i < Math.min(probes.length, probeCount); i++) {
+      if (probes[i]) {
+        result[i >>> 6] |= 1L << i;
+      }
+    }
+    return result;
+  }
+
+  private static boolean intersects(long[] sets, int offset, long[] executed) {
+    for (int i = 0; i < executed.length; i++) {
+      if ((sets[offset + i] & executed[i]) != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeLong(classId);
+    out.writeBoolean(sourceClassName != null);
+    if (sourceClassName != null) {
+      out.writeUTF(sourceClassName);
+    }
+    out.writeBoolean(hasCode);
+    out.writeInt(probeCount);
+    writeInts(out, lines);
+    writeLongs(out, lineProbes);
+    writeInts(out, lineBranches);
+    writeInts(out, firstBranch);
+    writeLongs(out, branchProbes);
+  }
+
+  static ClassProbes read(DataInput in) throws IOException {
+    long classId = in.readLong();
+    String sourceClassName = in.readBoolean() ? in.readUTF() : null;
+    boolean hasCode = in.readBoolean();
+    int probeCount = in.readInt();
+    int[] lines = readInts(in);
+    long[] lineProbes = readLongs(in);
+    int[] lineBranches = readInts(in);
+    int[] firstBranch = readInts(in);
+    long[] branchProbes = readLongs(in);
+    return new ClassProbes(classId, sourceClassName, hasCode, probeCount, lines, lineProbes, lineBranches, firstBranch, branchProbes);
+  }
+
+  private static void writeInts(DataOutput out, int[] values) throws IOException {
+    out.writeInt(values.length);
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  private static int[] readInts(DataInput in) throws IOException {
+    int[] values = new int[in.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = in.readInt();
+    }
+    return values;
+  }
+
+  private static void writeLongs(DataOutput out, long[] values) throws IOException {
+    out.writeInt(values.length);
+    for (long value : values) {
+      out.writeLong(value);
+    }
+  }
+
+  private static long[] readLongs(DataInput in) throws IOException {
+    long[] values = new long[in.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = in.readLong();
+    }
+    return values;
+  }
+
+  @Override
+  public String toString() {
+    return sourceClassName + " " + Arrays.toString(lines);
+  }
+
+  /**
+   * Probes covering a line, and sets of probes covering its branches.
+   */
+  private static class LineProbes {
+    private final long[] probes;
+    private int branches;
+    private final List<long[]> branchProbes = Lists.newArrayList();
+
+    LineProbes(int words) {
+      probes = new long[words];
+    }
+  }
+
+  private static class ClassAnalyzer extends ClassProbesVisitor {
+
+    private String className;
+    private String sourceFileName;
+    private boolean hasCode;
+    private int probeCount;
+    private final List<MethodAnalyzer> methods = Lists.newArrayList();
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+      className = name;
+    }
+
+    @Override
+    public void visitSource(String source, String debug) {
+      sourceFileName = source;
+    }
+
+    @Override
+    public MethodProbesVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+      if ((access & Opcodes.ACC_SYNTHETIC) != 0) {
+        return null;
+      }
+      MethodAnalyzer method = new MethodAnalyzer();
+      methods.add(method);
+      return method;
+    }
+
+    @Override
+    public void visitTotalProbeCount(int count) {
+      probeCount = count;
+    }
+
+    ClassProbes build(long classId) {
+      int words = (probeCount + 63) >>> 6;
+      Map<Integer, LineProbes> probesByLine = Maps.newTreeMap();
+      for (MethodAnalyzer method : methods) {
+        if (!method.instructions.isEmpty()) {
+          hasCode = true;
+          method.addTo(probesByLine, words);
+        }
+      }
+      String sourceClassName = null;
+      if (sourceFileName != null) {
+        String packageName = className.lastIndexOf('/') < 0 ? "" : className.substring(0, className.lastIndexOf('/'));
+        sourceClassName = AbstractAnalyzer.fullyQualifiedClassName(packageName, sourceFileName);
+      }
+      int[] lines = new int[probesByLine.size()];
+      long[] lineProbes = new long[lines.length * words];
+      int[] lineBranches = new int[lines.length];
+      int[] firstBranch = new int[lines.length + 1];
+      List<long[]> branchProbes = Lists.newArrayList();
+      int i = 0;
+      for (Map.Entry<Integer, LineProbes> entry : probesByLine.entrySet()) {
+        LineProbes line = entry.getValue();
+        lines[i] = entry.getKey();
+        System.arraycopy(line.probes, 0, lineProbes, i * words, words);
+        lineBranches[i] = line.branches;
+        firstBranch[i] = branchProbes.size();
+        branchProbes.addAll(line.branchProbes);
+        i++;
+      }
+      firstBranch[lines.length] = branchProbes.size();
+      long[] branchBits = branchProbes.isEmpty() ? NO_LONGS : new long[branchProbes.size() * words];
+      for (int branch = 0; branch < branchProbes.size(); branch++) {
+        System.arraycopy(branchProbes.get(branch), 0, branchBits, branch * words, words);
+      }
+      return new ClassProbes(classId, sourceClassName, hasCode, probeCount, lines.length == 0 ? NO_INTS : lines,
+        lineProbes.length == 0 ? NO_LONGS : lineProbes, lineBranches, firstBranch, branchBits);
+    }
+
+  }
+
+  /**
+   * Records the instructions of a method and their predecessors, as the {@code MethodAnalyzer} of JaCoCo does, but with the
+   * identifiers of the probes rather than their execution.
+   */
+  private static class MethodAnalyzer extends MethodProbesVisitor {
+
+    private static final int NONE = -1;
+
+    private int currentLine = NONE;
+    private final List<Label> currentLabels = Lists.newArrayListWithCapacity(2);
+    private final Map<Label, Integer> instructionsByLabel = Maps.newIdentityHashMap();
+    private final List<Instruction> instructions = Lists.newArrayList();
+    private final List<Jump> jumps = Lists.newArrayList();
+    private final List<int[]> probes = Lists.newArrayList();
+    private Instruction lastInsn;
+
+    @Override
+    public void visitLabel(Label label) {
+      currentLabels.add(label);
+      if (!LabelInfo.isSuccessor(label)) {
+        lastInsn = null;
+      }
+    }
+
+    @Override
+    public void visitLineNumber(int line, Label start) {
+      currentLine = line;
+    }
+
+    private void visitInsn() {
+      Instruction insn = new Instruction(instructions.size(), currentLine);
+      instructions.add(insn);
+      if (lastInsn != null) {
+        insn.setPredecessor(lastInsn);
+      }
+      for (Label label : currentLabels) {
+        instructionsByLabel.put(label, insn.index);
+      }
+      currentLabels.clear();
+      lastInsn = insn;
+    }
+
+    @Override
+    public void visitInsn(int opcode) {
+      visitInsn();
+    }
+
+    @Override
+    public void visitIntInsn(int opcode, int operand) {
+      visitInsn();
+    }
+
+    @Override
+    public void visitVarInsn(int opcode, int var) {
+      visitInsn();
+    }
+
+    @Override
+    public void visitTypeInsn(int opcode, String type) {
+      visitInsn();
+    }
+
+    @Override
+    public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+      visitInsn();
+    }
+
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+      visitInsn();
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+      visitInsn();
+    }
+
+    @Override
+    public void visitJumpInsn(int opcode, Label label) {
+      visitInsn();
+      jumps.add(new Jump(lastInsn, label));
+    }
+
+    @Override
+    public void visitLdcInsn(Object cst) {
+      visitInsn();
+    }
+
+    @Override
+    public void visitIincInsn(int var, int increment) {
+      visitInsn();
+    }
+
+    @Override
+    public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+      visitSwitchInsn(dflt, labels);
+    }
+
+    @Override
+    public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+      visitSwitchInsn(dflt, labels);
+    }
+
+    private void visitSwitchInsn(Label dflt, Label[] labels) {
+      visitInsn();
+      LabelInfo.resetDone(labels);
+      jumps.add(new Jump(lastInsn, dflt));
+      LabelInfo.setDone(dflt);
+      for (Label label : labels) {
+        if (!LabelInfo.isDone(label)) {
+          jumps.add(new Jump(lastInsn, label));
+          LabelInfo.setDone(label);
+        }
+      }
+    }
+
+    @Override
+    public void visitMultiANewArrayInsn(String desc, int dims) {
+      visitInsn();
+    }
+
+    @Override
+    public void visitProbe(int probeId) {
+      addProbe(probeId);
+      lastInsn = null;
+    }
+
+    @Override
+    public void visitJumpInsnWithProbe(int opcode, Label label, int probeId, IFrame frame) {
+      visitInsn();
+      addProbe(probeId);
+    }
+
+    @Override
+    public void visitInsnWithProbe(int opcode, int probeId) {
+      visitInsn();
+      addProbe(probeId);
+    }
+
+    @Override
+    public void visitTableSwitchInsnWithProbes(int min, int max, Label dflt, Label[] labels, IFrame frame) {
+      visitSwitchInsnWithProbes(dflt, labels);
+    }
+
+    @Override
+    public void visitLookupSwitchInsnWithProbes(Label dflt, int[] keys, Label[] labels, IFrame frame) {
+      visitSwitchInsnWithProbes(dflt, labels);
+    }
+
+    private void visitSwitchInsnWithProbes(Label dflt, Label[] labels) {
+      visitInsn();
+      LabelInfo.resetDone(dflt);
+      LabelInfo.resetDone(labels);
+      visitSwitchTarget(dflt);
+      for (Label label : labels) {
+        visitSwitchTarget(label);
+      }
+    }
+
+    private void visitSwitchTarget(Label label) {
+      int probeId = LabelInfo.getProbeId(label);
+      if (!LabelInfo.isDone(label)) {
+        if (probeId == LabelInfo.NO_PROBE) {
+          jumps.add(new Jump(lastInsn, label));
+        } else {
+          addProbe(probeId);
+        }
+        LabelInfo.setDone(label);
+      }
+    }
+
+    private void addProbe(int probeId) {
+      lastInsn.branches++;
+      probes.add(new int[] {probeId, lastInsn.index});
+    }
+
+    @Override
+    public void visitEnd() {
+      for (Jump jump : jumps) {
+        instructions.get(instructionsByLabel.get(jump.target)).setPredecessor(jump.source);
+      }
+    }
+
+    void addTo(Map<Integer, LineProbes> probesByLine, int words) {
+      // probes covering each instruction: the ones from which the instruction is reached by following predecessors
+      long[] coveringProbes = new long[instructions.size() * words];
+      for (int[] probe : probes) {
+        int probeId = probe[0];
+        Instruction insn = instructions.get(probe[1]);
+        while (insn != null && !contains(coveringProbes, insn.index * words, probeId)) {
+          coveringProbes[insn.index * words + (probeId >>> 6)] |= 1L << probeId;
+          insn = insn.predecessor;
+        }
+      }
+      for (Instruction insn : instructions) {
+        if (insn.line != NONE) {
+          LineProbes line = probesByLine.get(insn.line);
+          if (line == null) {
+            line = new LineProbes(words);
+            probesByLine.put(insn.line, line);
+          }
+          or(line.probes, coveringProbes, insn.index * words);
+          if (insn.branches > 1) {
+            line.branches += insn.branches;
+          }
+        }
+      }
+      for (int[] probe : probes) {
+        Instruction insn = instructions.get(probe[1]);
+        if (insn.line != NONE && insn.branches > 1) {
+          long[] branch = new long[words];
+          branch[probe[0] >>> 6] |= 1L << probe[0];
+          probesByLine.get(insn.line).branchProbes.add(branch);
+        }
+      }
+      for (Instruction insn : instructions) {
+        Instruction predecessor = insn.predecessor;
+        if (predecessor != null && predecessor.line != NONE && predecessor.branches > 1) {
+          long[] branch = new long[words];
+          or(branch, coveringProbes, insn.index * words);
+          probesByLine.get(predecessor.line).branchProbes.add(branch);
+        }
+      }
+    }
+
+    private static boolean contains(long[] sets, int offset, int probeId) {
+      return (sets[offset + (probeId >>> 6)] & (1L << probeId)) != 0;
+    }
+
+    private static void or(long[] target, long[] sets, int offset) {
+      for (int i = 0; i < target.length; i++) {
+        target[i] |= sets[offset + i];
+      }
+    }
+
+  }
+
+  private static class Instruction {
+    private final int index;
+    private final int line;
+    private int branches;
+    private Instruction predecessor;
+
+    Instruction(int index, int line) {
+      this.index = index;
+      this.line = line;
+    }
+
+    void setPredecessor(Instruction predecessor) {
+      this.predecessor = predecessor;
+      predecessor.branches++;
+    }
+  }
+
+  private static class Jump {
+    private final Instruction source;
+    private final Label target;
+
+    Jump(Instruction source, Label target) {
+      this.source = source;
+      this.target = target;
+    }
+  }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.jacoco;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.internal.data.CRC64;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Structures of the class files analyzed by JaCoCo, by identifier of class. Structures can be stored in a file, so that next
+ * analyses only read the class files which changed. The file can be shared by several sensors: each one adds its structures
+ * to the stored ones, and structures which were not used by the last {@link #MAX_AGE} saves are removed.
+ */
+class ClassProbesCache {
+
+  private static final int MAGIC = 0x4A434350;
+  /**
+   * Must be incremented on each change of the format or of the content of the cache.
+   */
+  private static final int VERSION = 2;
+  /**
+   * Number of saves after which a structure which is not used is removed.
+   */
+  static final int MAX_AGE = 10;
+
+  private final File cacheFile;
+  private final Map<Long, ClassProbes> previous = Maps.newHashMap();
+  /**
+   * Number of saves since each previous structure was last used.
+   */
+  private final Map<Long, Integer> previousAges = Maps.newHashMap();
+  private final ConcurrentMap<Long, ClassProbes> classProbes = Maps.newConcurrentMap();
+
+  /**
+   * @param cacheFile file where structures are stored, or null if they are not stored
+   */
+  ClassProbesCache(@Nullable File cacheFile) {
+    this.cacheFile = cacheFile;
+    if (cacheFile != null) {
+      load(cacheFile);
+    }
+  }
+
+  /**
+   * Can be called by several threads.
+   */
+  ClassProbes get(byte[] classBytes) {
+    long classId = CRC64.checksum(classBytes);
+    ClassProbes result = classProbes.get(classId);
+    if (result == null) {
+      result = previous.get(classId);
+      if (result == null) {
+        result = ClassProbes.analyze(classBytes);
+      }
+      classProbes.put(classId, result);
+    }
+    return result;
+  }
+
+  /**
+   * @return identifiers of the classes whose structures were read from the file
+   */
+  @VisibleForTesting
+  Set<Long> storedClassIds() {
+    return previous.keySet();
+  }
+
+  /**
+   * Stores the structures of the classes of this analysis, along with the previous ones which are not too old.
+   */
+  void save() {
+    if (cacheFile == null) {
+      return;
+    }
+    File directory = cacheFile.getAbsoluteFile().getParentFile();
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Unable to create directory " + directory.getAbsolutePath());
+      }
+      File tmpFile = File.createTempFile("jacoco-classes", ".tmp", directory);
+      try {
+        write(tmpFile);
+        java.nio.file.Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        if (tmpFile.exists() && !tmpFile.delete()) {
+          JaCoCoExtensions.LOG.debug("Unable to delete " + tmpFile.getAbsolutePath());
+        }
+      }
+    } catch (IOException e) {
+      JaCoCoExtensions.LOG.warn("Unable to save structures of class files in " + cacheFile.getAbsolutePath(), e);
+    }
+  }
+
+  private void write(File file) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(JaCoCo.VERSION);
+      Map<Long, Integer> kept = Maps.newHashMap();
+      for (Map.Entry<Long, Integer> entry : previousAges.entrySet()) {
+        if (!classProbes.containsKey(entry.getKey()) && entry.getValue() < MAX_AGE) {
+          kept.put(entry.getKey(), entry.getValue() + 1);
+        }
+      }
+      out.writeInt(classProbes.size() + kept.size());
+      for (ClassProbes probes : classProbes.values()) {
+        out.writeInt(0);
+        probes.write(out);
+      }
+      for (Map.Entry<Long, Integer> entry : kept.entrySet()) {
+        out.writeInt(entry.getValue());
+        previous.get(entry.getKey()).write(out);
+      }
+      out.close();
+    } finally {
+      Closeables.closeQuietly(out);
+    }
+  }
+
+  private void load(File cacheFile) {
+    if (!cacheFile.isFile()) {
+      return;
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || !JaCoCo.VERSION.equals(in.readUTF())) {
+        JaCoCoExtensions.LOG.info("Structures of class files are ignored, as they have been stored by another version");
+        return;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        int age = in.readInt();
+        ClassProbes probes = ClassProbes.read(in);
+        previous.put(probes.classId(), probes);
+        previousAges.put(probes.classId(), age);
+      }
+    } catch (IOException e) {
+      JaCoCoExtensions.LOG.warn("Unable to read structures of class files from " + cacheFile.getAbsolutePath(), e);
+      previous.clear();
+      previousAges.clear();
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+}
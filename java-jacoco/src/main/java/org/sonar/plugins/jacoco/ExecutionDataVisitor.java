@@ -26,17 +26,37 @@ import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
 import org.jacoco.core.data.SessionInfo;
 
+import javax.annotation.Nullable;
 import java.util.Map;
+import java.util.Set;
 
 public class ExecutionDataVisitor implements ISessionInfoVisitor, IExecutionDataVisitor {
 
   private final Map<String, ExecutionDataStore> sessions = Maps.newHashMap();
+  private final boolean collectSessions;
+  private final Set<Long> classIds;
 
   private ExecutionDataStore executionDataStore;
   private ExecutionDataStore merged = new ExecutionDataStore();
 
+  public ExecutionDataVisitor() {
+    this(true, null);
+  }
+
+  /**
+   * @param collectSessions false to only merge the probes of all sessions, as they are read
+   * @param classIds ids of the classes whose execution data is kept, or null to keep all of them
+   */
+  public ExecutionDataVisitor(boolean collectSessions, @Nullable Set<Long> classIds) {
+    this.collectSessions = collectSessions;
+    this.classIds = classIds;
+  }
+
   @Override
   public void visitSessionInfo(SessionInfo info) {
+    if (!collectSessions) {
+      return;
+    }
     String sessionId = info.getId();
     executionDataStore = sessions.get(sessionId);
     if (executionDataStore == null) {
@@ -47,8 +67,16 @@ public class ExecutionDataVisitor implements ISessionInfoVisitor, IExecutionData
 
   @Override
   public void visitClassExecution(ExecutionData data) {
-    executionDataStore.put(data);
-    merged.put(defensiveCopy(data));
+    if (classIds != null && !classIds.contains(data.getId())) {
+      return;
+    }
+    if (collectSessions) {
+      executionDataStore.put(data);
+      merged.put(defensiveCopy(data));
+    } else {
+      // the reader creates new data for each record, into which next probes of the class are merged
+      merged.put(data);
+    }
   }
 
   public Map<String, ExecutionDataStore> getSessions() {
@@ -65,7 +65,10 @@ public class JaCoCoItSensor implements Sensor {
 
   @Override
   public void analyse(Project project, SensorContext context) {
-    new ITAnalyzer(perspectives).analyse(project, context);
+    ITAnalyzer analyzer = new ITAnalyzer(perspectives);
+    analyzer.setThreads(configuration.getThreads());
+    analyzer.setClassProbesCachePath(configuration.getClassProbesCachePath());
+    analyzer.analyse(project, context);
   }
 
   class ITAnalyzer extends AbstractAnalyzer {
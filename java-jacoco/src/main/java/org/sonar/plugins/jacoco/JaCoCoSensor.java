@@ -63,7 +63,10 @@ public class JaCoCoSensor implements Sensor {
 
   @Override
   public void analyse(Project project, SensorContext context) {
-    new UnitTestsAnalyzer(perspectives).analyse(project, context);
+    UnitTestsAnalyzer analyzer = new UnitTestsAnalyzer(perspectives);
+    analyzer.setThreads(configuration.getThreads());
+    analyzer.setClassProbesCachePath(configuration.getClassProbesCachePath());
+    analyzer.analyse(project, context);
   }
 
   @Override
@@ -20,6 +20,7 @@
 package org.sonar.plugins.jacoco;
 
 import com.google.common.collect.ImmutableList;
+import org.apache.commons.lang.StringUtils;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.PropertyType;
@@ -28,6 +29,7 @@ import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Qualifiers;
 
+import javax.annotation.CheckForNull;
 import java.util.List;
 
 public class JacocoConfiguration implements BatchExtension {
@@ -38,6 +40,9 @@ public class JacocoConfiguration implements BatchExtension {
   public static final String IT_REPORT_PATH_DEFAULT_VALUE = "target/jacoco-it.exec";
   public static final String REPORT_MISSING_FORCE_ZERO = "sonar.jacoco.reportMissing.force.zero";
   public static final boolean REPORT_MISSING_FORCE_ZERO_DEFAULT_VALUE = false;
+  public static final String THREADS_PROPERTY = "sonar.jacoco.threads";
+  public static final int THREADS_DEFAULT_VALUE = 1;
+  public static final String CLASS_PROBES_CACHE_PATH_PROPERTY = "sonar.jacoco.classProbesCachePath";
 
   private final Settings settings;
   private final FileSystem fileSystem;
@@ -63,6 +68,15 @@ public class JacocoConfiguration implements BatchExtension {
     return settings.getString(IT_REPORT_PATH_PROPERTY);
   }
 
+  public int getThreads() {
+    return Math.max(1, settings.getInt(THREADS_PROPERTY));
+  }
+
+  @CheckForNull
+  public String getClassProbesCachePath() {
+    return StringUtils.trimToNull(settings.getString(CLASS_PROBES_CACHE_PATH_PROPERTY));
+  }
+
   private boolean isCoverageToZeroWhenNoReport() {
     return settings.getBoolean(REPORT_MISSING_FORCE_ZERO);
   }
@@ -94,6 +108,24 @@ public class JacocoConfiguration implements BatchExtension {
             .description("Force coverage to 0% if no JaCoCo reports are found during analysis.")
             .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
             .type(PropertyType.BOOLEAN)
+            .build(),
+        PropertyDefinition.builder(JacocoConfiguration.THREADS_PROPERTY)
+            .defaultValue(JacocoConfiguration.THREADS_DEFAULT_VALUE + "")
+            .name("Coverage per test threads")
+            .category(CoreProperties.CATEGORY_JAVA)
+            .subCategory(subCategory)
+            .description("Number of threads used to analyze class files and to compute the lines covered by each test. Coverage is still saved " +
+                "test after test, so results do not depend on this value.")
+            .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+            .type(PropertyType.INTEGER)
+            .build(),
+        PropertyDefinition.builder(JacocoConfiguration.CLASS_PROBES_CACHE_PATH_PROPERTY)
+            .name("Class files structure cache")
+            .category(CoreProperties.CATEGORY_JAVA)
+            .subCategory(subCategory)
+            .description("Path to a file where the structure of the analyzed class files is stored, so that unchanged class files are not parsed again " +
+                "by the next analysis. The path may be absolute or relative to the project base directory. Leave empty to parse all class files.")
+            .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
             .build()
     );
   }
@@ -0,0 +1,65 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.jacoco;
+
+import com.google.common.collect.Maps;
+import org.sonar.api.measures.CoverageMeasuresBuilder;
+import org.sonar.java.LineSet;
+
+import java.util.Map;
+
+/**
+ * Coverage of the lines of a source file, summed over the classes compiled from the file.
+ */
+class SourceCoverage {
+
+  private final LineSet lines = new LineSet();
+  private final LineSet coveredLines = new LineSet();
+  private final Map<Integer, int[]> branchesByLine = Maps.newHashMap();
+
+  void addLine(int line, boolean covered, int branches, int coveredBranches) {
+    lines.add(line);
+    if (covered) {
+      coveredLines.add(line);
+    }
+    if (branches > 0) {
+      int[] lineBranches = branchesByLine.get(line);
+      if (lineBranches == null) {
+        lineBranches = new int[2];
+        branchesByLine.put(line, lineBranches);
+      }
+      lineBranches[0] += branches;
+      lineBranches[1] += coveredBranches;
+    }
+  }
+
+  CoverageMeasuresBuilder createMeasuresBuilder() {
+    CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
+    for (int line = lines.nextLine(0); line >= 0; line = lines.nextLine(line + 1)) {
+      builder.setHits(line, coveredLines.contains(line) ? 1 : 0);
+      int[] lineBranches = branchesByLine.get(line);
+      if (lineBranches != null) {
+        builder.setConditions(line, lineBranches[0], lineBranches[1]);
+      }
+    }
+    return builder;
+  }
+
+}
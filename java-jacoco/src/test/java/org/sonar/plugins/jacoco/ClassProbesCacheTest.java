@@ -0,0 +1,104 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.jacoco;
+
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.test.TestUtils;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ClassProbesCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void class_is_analyzed_once() throws Exception {
+    byte[] classBytes = classBytes();
+    ClassProbesCache cache = new ClassProbesCache(null);
+
+    ClassProbes classProbes = cache.get(classBytes);
+
+    assertThat(classProbes.sourceClassName()).isEqualTo("org/example/App");
+    assertThat(cache.get(classBytes.clone())).isSameAs(classProbes);
+    cache.save();
+  }
+
+  @Test
+  public void structures_are_saved_and_reloaded() throws Exception {
+    File cacheFile = new File(temp.getRoot(), "dir/classProbes.bin");
+    byte[] classBytes = classBytes();
+    ClassProbesCache cache = new ClassProbesCache(cacheFile);
+    ClassProbes classProbes = cache.get(classBytes);
+    cache.save();
+
+    assertThat(cacheFile).exists();
+    ClassProbes reloaded = new ClassProbesCache(cacheFile).get(classBytes);
+    assertThat(reloaded).isNotSameAs(classProbes);
+    assertThat(reloaded.classId()).isEqualTo(classProbes.classId());
+    assertThat(reloaded.toString()).isEqualTo(classProbes.toString());
+  }
+
+  @Test
+  public void structures_of_other_analyses_are_kept_until_too_old() throws Exception {
+    File cacheFile = new File(temp.getRoot(), "classProbes.bin");
+    byte[] app = classBytes();
+    byte[] hello = Files.toByteArray(TestUtils.getResource("/Hello.class.toCopy"));
+    ClassProbesCache cache = new ClassProbesCache(cacheFile);
+    long appId = cache.get(app).classId();
+    cache.save();
+    cache = new ClassProbesCache(cacheFile);
+    long helloId = cache.get(hello).classId();
+    cache.save();
+
+    assertThat(new ClassProbesCache(cacheFile).storedClassIds()).containsOnly(appId, helloId);
+
+    for (int i = 1; i < ClassProbesCache.MAX_AGE; i++) {
+      cache = new ClassProbesCache(cacheFile);
+      cache.get(hello);
+      cache.save();
+    }
+    assertThat(new ClassProbesCache(cacheFile).storedClassIds()).containsOnly(appId, helloId);
+    cache = new ClassProbesCache(cacheFile);
+    cache.get(hello);
+    cache.save();
+    assertThat(new ClassProbesCache(cacheFile).storedClassIds()).containsOnly(helloId);
+  }
+
+  @Test
+  public void invalid_file_is_ignored() throws Exception {
+    File cacheFile = temp.newFile("classProbes.bin");
+    Files.write("not a cache".getBytes("UTF-8"), cacheFile);
+
+    ClassProbes classProbes = new ClassProbesCache(cacheFile).get(classBytes());
+
+    assertThat(classProbes.sourceClassName()).isEqualTo("org/example/App");
+  }
+
+  private static byte[] classBytes() throws Exception {
+    return Files.toByteArray(TestUtils.getResource("/org/sonar/plugins/jacoco/JaCoCoSensorTest2/org/example/App.class.toCopy"));
+  }
+
+}
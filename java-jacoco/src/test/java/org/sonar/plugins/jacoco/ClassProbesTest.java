@@ -0,0 +1,286 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.jacoco;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.sonar.api.measures.CoverageMeasuresBuilder;
+import org.sonar.java.LineSet;
+import org.sonar.test.TestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ClassProbesTest {
+
+  private static final String CLASS_NAME = "org/example/App";
+
+  private byte[] classBytes;
+  private ExecutionDataVisitor executionDataVisitor;
+
+  @Before
+  public void setUp() throws Exception {
+    classBytes = Files.toByteArray(TestUtils.getResource("/org/sonar/plugins/jacoco/JaCoCoSensorTest2/org/example/App.class.toCopy"));
+    executionDataVisitor = new ExecutionDataVisitor();
+    InputStream inputStream = new FileInputStream(TestUtils.getResource("/org/sonar/plugins/jacoco/JaCoCoSensorTest2/jacoco.exec"));
+    try {
+      ExecutionDataReader reader = new ExecutionDataReader(inputStream);
+      reader.setSessionInfoVisitor(executionDataVisitor);
+      reader.setExecutionDataVisitor(executionDataVisitor);
+      reader.read();
+    } finally {
+      inputStream.close();
+    }
+  }
+
+  @Test
+  public void structure_of_class() {
+    ClassProbes classProbes = ClassProbes.analyze(classBytes);
+
+    assertThat(classProbes.classId()).isEqualTo(executionData(executionDataVisitor.getMerged()).getId());
+    assertThat(classProbes.sourceClassName()).isEqualTo(CLASS_NAME);
+    assertThat(classProbes.hasCode()).isTrue();
+  }
+
+  @Test
+  public void coverage_is_the_coverage_computed_by_jacoco() throws Exception {
+    ClassProbes classProbes = ClassProbes.analyze(classBytes);
+
+    assertThat(executionDataVisitor.getSessions()).isNotEmpty();
+    for (ExecutionDataStore session : executionDataVisitor.getSessions().values()) {
+      assertSameCoverage(classProbes, executionData(session).getProbes());
+    }
+    boolean[] mergedProbes = executionData(executionDataVisitor.getMerged()).getProbes();
+    assertSameCoverage(classProbes, mergedProbes);
+    assertSameCoverage(classProbes, new boolean[mergedProbes.length]);
+    Random random = new Random(42);
+    for (int i = 0; i < 100; i++) {
+      boolean[] probes = new boolean[mergedProbes.length];
+      for (int probe = 0; probe < probes.length; probe++) {
+        probes[probe] = random.nextBoolean();
+      }
+      assertSameCoverage(classProbes, probes);
+    }
+  }
+
+  /**
+   * Fails when JaCoCo is upgraded, as the analysis of {@link ClassProbes} must then be checked against the new version.
+   */
+  @Test
+  public void jacoco_version_is_the_mirrored_one() {
+    assertThat(JaCoCo.VERSION).isEqualTo(ClassProbes.JACOCO_VERSION);
+  }
+
+  /**
+   * Compares with JaCoCo over the classes of the test resources, of this module, of JaCoCo and of ASM, so that differences
+   * introduced by a change of JaCoCo fail the build.
+   */
+  @Test
+  public void coverage_of_all_classes_is_the_coverage_computed_by_jacoco() throws Exception {
+    List<byte[]> classes = Lists.newArrayList();
+    addClasses(TestUtils.getResource("/Hello.class.toCopy").getParentFile(), classes);
+    addClasses(new File("target/classes"), classes);
+    addClasses(new File(Analyzer.class.getProtectionDomain().getCodeSource().getLocation().toURI()), classes);
+    addClasses(new File(ClassReader.class.getProtectionDomain().getCodeSource().getLocation().toURI()), classes);
+    assertThat(classes.size()).isGreaterThan(300);
+
+    Random random = new Random(42);
+    for (byte[] bytes : classes) {
+      ClassProbes classProbes = ClassProbes.analyze(bytes);
+      assertSameCoverage(classProbes, bytes, null);
+      int probeCount = probeCount(bytes);
+      if (probeCount > 0) {
+        boolean[] all = new boolean[probeCount];
+        Arrays.fill(all, true);
+        assertSameCoverage(classProbes, bytes, all);
+        assertSameCoverage(classProbes, bytes, new boolean[probeCount]);
+        for (int i = 0; i < 5; i++) {
+          boolean[] probes = new boolean[probeCount];
+          for (int probe = 0; probe < probeCount; probe++) {
+            probes[probe] = random.nextInt(3) == 0;
+          }
+          assertSameCoverage(classProbes, bytes, probes);
+        }
+      }
+    }
+  }
+
+  private static void addClasses(File file, List<byte[]> classes) throws Exception {
+    if (file.isDirectory()) {
+      File[] files = file.listFiles();
+      for (File child : files) {
+        addClasses(child, classes);
+      }
+    } else if (file.getName().endsWith(".class") || file.getName().endsWith(".class.toCopy")) {
+      classes.add(Files.toByteArray(file));
+    } else if (file.getName().endsWith(".jar")) {
+      ZipFile zipFile = new ZipFile(file);
+      try {
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+          ZipEntry entry = entries.nextElement();
+          if (entry.getName().endsWith(".class")) {
+            InputStream inputStream = zipFile.getInputStream(entry);
+            try {
+              classes.add(ByteStreams.toByteArray(inputStream));
+            } finally {
+              inputStream.close();
+            }
+          }
+        }
+      } finally {
+        zipFile.close();
+      }
+    }
+  }
+
+  private static int probeCount(byte[] classBytes) {
+    final int[] result = new int[1];
+    new ClassReader(classBytes).accept(new ClassProbesAdapter(new ClassProbesVisitor() {
+      @Override
+      public MethodProbesVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        return null;
+      }
+
+      @Override
+      public void visitTotalProbeCount(int count) {
+        result[0] = count;
+      }
+    }, false), 0);
+    return result[0];
+  }
+
+  @Test
+  public void no_coverage_without_execution_data() throws Exception {
+    SourceCoverage coverage = new SourceCoverage();
+    ClassProbes.analyze(classBytes).addCoverage(null, coverage);
+
+    assertThat(coverage.createMeasuresBuilder().getHitsByLine()).isEqualTo(jacocoCoverage(null).getHitsByLine());
+  }
+
+  @Test
+  public void write_and_read() throws Exception {
+    ClassProbes classProbes = ClassProbes.analyze(classBytes);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    classProbes.write(new DataOutputStream(bytes));
+
+    ClassProbes read = ClassProbes.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertThat(read.classId()).isEqualTo(classProbes.classId());
+    assertThat(read.sourceClassName()).isEqualTo(CLASS_NAME);
+    assertThat(read.hasCode()).isTrue();
+    assertThat(read.toString()).isEqualTo(classProbes.toString());
+    assertSameCoverage(read, executionData(executionDataVisitor.getMerged()).getProbes());
+  }
+
+  private void assertSameCoverage(ClassProbes classProbes, boolean[] probes) throws Exception {
+    assertSameCoverage(classProbes, classBytes, probes);
+  }
+
+  private static void assertSameCoverage(ClassProbes classProbes, byte[] classBytes, boolean[] probes) throws Exception {
+    SourceCoverage coverage = new SourceCoverage();
+    classProbes.addCoverage(probes, coverage);
+    CoverageMeasuresBuilder actual = coverage.createMeasuresBuilder();
+    CoverageMeasuresBuilder expected = jacocoCoverage(classBytes, probes);
+
+    assertThat(actual.getHitsByLine()).isEqualTo(expected.getHitsByLine());
+    assertThat(actual.getConditionsByLine()).isEqualTo(expected.getConditionsByLine());
+    assertThat(actual.getCoveredConditionsByLine()).isEqualTo(expected.getCoveredConditionsByLine());
+
+    if (probes != null) {
+      LineSet coveredLines = new LineSet();
+      classProbes.addCoveredLines(probes, coveredLines);
+      LineSet expectedCoveredLines = new LineSet();
+      for (Integer line : expected.getHitsByLine().keySet()) {
+        if (expected.getHitsByLine().get(line) > 0) {
+          expectedCoveredLines.add(line);
+        }
+      }
+      assertThat(coveredLines).isEqualTo(expectedCoveredLines);
+    }
+  }
+
+  private CoverageMeasuresBuilder jacocoCoverage(boolean[] probes) throws Exception {
+    return jacocoCoverage(classBytes, probes);
+  }
+
+  private static CoverageMeasuresBuilder jacocoCoverage(byte[] classBytes, boolean[] probes) throws Exception {
+    String className = new ClassReader(classBytes).getClassName();
+    ExecutionDataStore executionDataStore = new ExecutionDataStore();
+    if (probes != null) {
+      executionDataStore.put(new ExecutionData(ClassProbes.analyze(classBytes).classId(), className, probes.clone()));
+    }
+    CoverageBuilder coverageBuilder = new CoverageBuilder();
+    new Analyzer(executionDataStore, coverageBuilder).analyzeClass(classBytes, className);
+    CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
+    for (IClassCoverage classCoverage : coverageBuilder.getClasses()) {
+      for (int lineId = classCoverage.getFirstLine(); lineId <= classCoverage.getLastLine(); lineId++) {
+        ILine line = classCoverage.getLine(lineId);
+        if (line.getInstructionCounter().getTotalCount() > 0) {
+          builder.setHits(lineId, line.getInstructionCounter().getCoveredCount() > 0 ? 1 : 0);
+          ICounter branchCounter = line.getBranchCounter();
+          if (branchCounter.getTotalCount() > 0) {
+            builder.setConditions(lineId, branchCounter.getTotalCount(), branchCounter.getCoveredCount());
+          }
+        }
+      }
+    }
+    return builder;
+  }
+
+  private static ExecutionData executionData(ExecutionDataStore executionDataStore) {
+    for (ExecutionData data : executionDataStore.getContents()) {
+      if (CLASS_NAME.equals(data.getName())) {
+        return data;
+      }
+    }
+    return null;
+  }
+
+}
@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.jacoco;
 
+import com.google.common.collect.ImmutableSet;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.SessionInfo;
 import org.junit.Test;
@@ -48,4 +49,20 @@ public class ExecutionDataVisitorTest {
     assertThat(visitor.getMerged().get(1).getProbes()).isEqualTo(new boolean[] {true, true, true});
   }
 
+  @Test
+  public void merge_without_sessions() {
+    ExecutionDataVisitor visitor = new ExecutionDataVisitor(false, ImmutableSet.of(1L));
+
+    visitor.visitSessionInfo(new SessionInfo("foo", 1L, 1L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {true, false, false}));
+    visitor.visitClassExecution(new ExecutionData(2, "other", new boolean[] {true}));
+
+    visitor.visitSessionInfo(new SessionInfo("bar", 2L, 2L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {false, true, false}));
+
+    assertThat(visitor.getSessions()).isEmpty();
+    assertThat(visitor.getMerged().getContents()).hasSize(1);
+    assertThat(visitor.getMerged().get(1).getProbes()).isEqualTo(new boolean[] {true, true, false});
+  }
+
 }
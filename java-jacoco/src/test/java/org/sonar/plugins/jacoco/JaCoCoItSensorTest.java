@@ -34,6 +34,7 @@ import org.sonar.api.scan.filesystem.ModuleFileSystem;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.test.IsMeasure;
 import org.sonar.java.JavaClasspath;
+import org.sonar.java.bytecode.loader.ClassFiles;
 import org.sonar.plugins.java.api.JavaResourceLocator;
 import org.sonar.test.TestUtils;
 
@@ -71,6 +72,7 @@ public class JaCoCoItSensorTest {
   @Before
   public void setUp() {
     configuration = mock(JacocoConfiguration.class);
+    when(configuration.getThreads()).thenReturn(1);
     ResourcePerspectives perspectives = mock(ResourcePerspectives.class);
     ModuleFileSystem fileSystem = mock(ModuleFileSystem.class);
     pathResolver = mock(PathResolver.class);
@@ -103,7 +105,7 @@ public class JaCoCoItSensorTest {
     SensorContext context = mock(SensorContext.class);
     Project project = mock(Project.class);
     when(context.getResource(any(Resource.class))).thenReturn(resource);
-    when(javaClasspath.getBinaryDirs()).thenReturn(ImmutableList.of(outputDir));
+    when(javaClasspath.getClassFiles()).thenReturn(ClassFiles.index(ImmutableList.of(outputDir)));
     when(pathResolver.relativeFile(any(File.class), any(String.class))).thenReturn(jacocoExecutionData);
 
     sensor.analyse(project, context);
@@ -124,7 +126,7 @@ public class JaCoCoItSensorTest {
     SensorContext context = mock(SensorContext.class);
     Project project = mock(Project.class);
     when(context.getResource(any(Resource.class))).thenReturn(null);
-    when(javaClasspath.getBinaryDirs()).thenReturn(ImmutableList.of(outputDir));
+    when(javaClasspath.getClassFiles()).thenReturn(ClassFiles.index(ImmutableList.of(outputDir)));
 
     sensor.analyse(project, context);
 
@@ -22,7 +22,9 @@ package org.sonar.plugins.jacoco;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Files;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.component.ResourcePerspectives;
 import org.sonar.api.measures.CoreMetrics;
@@ -36,6 +38,7 @@ import org.sonar.api.test.MutableTestCase;
 import org.sonar.api.test.MutableTestPlan;
 import org.sonar.api.test.MutableTestable;
 import org.sonar.java.JavaClasspath;
+import org.sonar.java.bytecode.loader.ClassFiles;
 import org.sonar.plugins.java.api.JavaResourceLocator;
 import org.sonar.test.TestUtils;
 
@@ -56,6 +59,9 @@ import static org.mockito.Mockito.when;
 
 public class JaCoCoSensorTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private File jacocoExecutionData;
   private File outputDir;
   private JacocoConfiguration configuration;
@@ -80,6 +86,7 @@ public class JaCoCoSensorTest {
     project = mock(Project.class);
 
     configuration = mock(JacocoConfiguration.class);
+    when(configuration.getThreads()).thenReturn(1);
     perspectives = mock(ResourcePerspectives.class);
     javaClasspath = mock(JavaClasspath.class);
     sensor = new JaCoCoSensor(configuration, perspectives, fileSystem, pathResolver, javaResourceLocator, javaClasspath);
@@ -110,15 +117,38 @@ public class JaCoCoSensorTest {
 
   @Test
   public void test_read_execution_data() {
+    org.sonar.api.resources.File resource = mockHelloResource();
+
+    sensor.analyse(project, context);
+
+    verifyHelloMeasures(resource);
+  }
+
+  @Test
+  public void test_read_execution_data_with_structures_of_class_files_from_previous_analysis() {
+    org.sonar.api.resources.File resource = mockHelloResource();
+    File cacheFile = new File(temp.getRoot(), "classProbes.bin");
+    when(configuration.getClassProbesCachePath()).thenReturn("classProbes.bin");
+    when(pathResolver.relativeFile(any(File.class), eq("classProbes.bin"))).thenReturn(cacheFile);
+
+    sensor.analyse(project, mock(SensorContext.class));
+    assertThat(cacheFile).exists();
+    sensor.analyse(project, context);
+
+    verifyHelloMeasures(resource);
+  }
+
+  private org.sonar.api.resources.File mockHelloResource() {
     org.sonar.api.resources.File resource = mock(org.sonar.api.resources.File.class);
     when(javaResourceLocator.findResourceByClassName("org/sonar/plugins/jacoco/tests/Hello")).thenReturn(resource);
     when(context.getResource(any(Resource.class))).thenReturn(resource);
 
-    when(javaClasspath.getBinaryDirs()).thenReturn(ImmutableList.of(outputDir));
+    when(javaClasspath.getClassFiles()).thenReturn(ClassFiles.index(ImmutableList.of(outputDir)));
     when(pathResolver.relativeFile(any(File.class), any(String.class))).thenReturn(jacocoExecutionData);
+    return resource;
+  }
 
-    sensor.analyse(project, context);
-
+  private void verifyHelloMeasures(org.sonar.api.resources.File resource) {
     verify(context, times(1)).getResource(resource);
     verify(context).saveMeasure(eq(resource), argThat(new IsMeasure(CoreMetrics.LINES_TO_COVER, 7.0)));
     verify(context).saveMeasure(eq(resource), argThat(new IsMeasure(CoreMetrics.UNCOVERED_LINES, 3.0)));
@@ -132,6 +162,16 @@ public class JaCoCoSensorTest {
 
   @Test
   public void test_read_execution_data_for_lines_covered_by_tests() throws IOException {
+    assertLinesCoveredByTests();
+  }
+
+  @Test
+  public void test_read_execution_data_for_lines_covered_by_tests_on_several_threads() throws IOException {
+    when(configuration.getThreads()).thenReturn(2);
+    assertLinesCoveredByTests();
+  }
+
+  private void assertLinesCoveredByTests() throws IOException {
     outputDir = TestUtils.getResource("/org/sonar/plugins/jacoco/JaCoCoSensorTest2/");
     jacocoExecutionData = new File(outputDir, "jacoco.exec");
     Files.copy(TestUtils.getResource("/org/sonar/plugins/jacoco/JaCoCoSensorTest2/org/example/App.class.toCopy"),
@@ -139,7 +179,7 @@ public class JaCoCoSensorTest {
 
     org.sonar.api.resources.File resource = mock(org.sonar.api.resources.File.class);
     when(context.getResource(any(Resource.class))).thenReturn(resource);
-    when(javaClasspath.getBinaryDirs()).thenReturn(ImmutableList.of(outputDir));
+    when(javaClasspath.getClassFiles()).thenReturn(ClassFiles.index(ImmutableList.of(outputDir)));
     when(pathResolver.relativeFile(any(File.class), any(String.class))).thenReturn(jacocoExecutionData);
 
     MutableTestable testAbleFile = mock(MutableTestable.class);
@@ -160,7 +200,7 @@ public class JaCoCoSensorTest {
   @Test
   public void do_not_save_measure_on_resource_which_doesnt_exist_in_the_context() {
     when(context.getResource(any(Resource.class))).thenReturn(null);
-    when(javaClasspath.getBinaryDirs()).thenReturn(ImmutableList.of(outputDir));
+    when(javaClasspath.getClassFiles()).thenReturn(ClassFiles.index(ImmutableList.of(outputDir)));
 
     sensor.analyse(project, context);
 
@@ -169,7 +209,7 @@ public class JaCoCoSensorTest {
 
   @Test
   public void should_do_nothing_if_output_dir_does_not_exists() {
-    when(javaClasspath.getBinaryDirs()).thenReturn(ImmutableList.of(new File("nowhere")));
+    when(javaClasspath.getClassFiles()).thenReturn(ClassFiles.index(ImmutableList.of(new File("nowhere"))));
 
     sensor.analyse(project, context);
 
@@ -64,6 +64,22 @@ public class JacocoConfigurationTest {
   public void defaults() {
     assertThat(jacocoSettings.getReportPath()).isEqualTo("target/jacoco.exec");
     assertThat(jacocoSettings.getItReportPath()).isEqualTo("target/jacoco-it.exec");
+    assertThat(jacocoSettings.getThreads()).isEqualTo(1);
+    assertThat(jacocoSettings.getClassProbesCachePath()).isNull();
+  }
+
+  @Test
+  public void threads() {
+    settings.setProperty(JacocoConfiguration.THREADS_PROPERTY, 4);
+    assertThat(jacocoSettings.getThreads()).isEqualTo(4);
+    settings.setProperty(JacocoConfiguration.THREADS_PROPERTY, 0);
+    assertThat(jacocoSettings.getThreads()).isEqualTo(1);
+  }
+
+  @Test
+  public void class_probes_cache_path() {
+    settings.setProperty(JacocoConfiguration.CLASS_PROBES_CACHE_PATH_PROPERTY, "target/sonar/jacoco-classes.bin");
+    assertThat(jacocoSettings.getClassProbesCachePath()).isEqualTo("target/sonar/jacoco-classes.bin");
   }
 
   @Test
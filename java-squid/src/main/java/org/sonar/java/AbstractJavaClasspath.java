@@ -39,12 +39,14 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.WildcardPattern;
+import org.sonar.java.bytecode.loader.ClassFiles;
 
 import java.io.File;
 import java.io.FileFilter;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import static org.apache.commons.io.filefilter.FileFilterUtils.suffixFileFilter;
 
@@ -61,6 +63,7 @@ public abstract class AbstractJavaClasspath implements BatchExtension {
   protected List<File> elements;
   protected boolean validateLibraries;
   protected boolean initialized;
+  private Map<String, File> classFiles;
 
   public AbstractJavaClasspath(Project project, Settings settings, FileSystem fs, InputFile.Type fileType) {
     this.project = project;
@@ -176,6 +179,18 @@ public abstract class AbstractJavaClasspath implements BatchExtension {
     return binaries;
   }
 
+  /**
+   * Class files of the binary directories, listed once and shared by all users of this classpath.
+   *
+   * @return class files by class key ("org/example/Foo"), a class of several directories being taken from the first one
+   */
+  public Map<String, File> getClassFiles() {
+    if (classFiles == null) {
+      classFiles = ClassFiles.index(getBinaryDirs());
+    }
+    return classFiles;
+  }
+
   private static class WilcardPatternFileFilter implements IOFileFilter {
     private File baseDir;
     private WildcardPattern wildcardPattern;
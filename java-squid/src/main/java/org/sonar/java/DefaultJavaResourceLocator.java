@@ -31,14 +31,20 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.java.bytecode.visitor.ResourceMapping;
 import org.sonar.java.filters.SuppressWarningsFilter;
+import org.sonar.java.filters.SuppressWarningsRange;
+import org.sonar.java.incremental.FileResults;
+import org.sonar.java.incremental.ReplayableVisitor;
+import org.sonar.java.incremental.ResultsCache;
 import org.sonar.plugins.java.api.JavaFileScannerContext;
 import org.sonar.plugins.java.api.JavaResourceLocator;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
-public class DefaultJavaResourceLocator implements JavaResourceLocator {
+public class DefaultJavaResourceLocator implements JavaResourceLocator, ReplayableVisitor {
 
   private static final Logger LOG = LoggerFactory.getLogger(JavaResourceLocator.class);
 
@@ -51,6 +57,8 @@ public class DefaultJavaResourceLocator implements JavaResourceLocator {
   private final Map<String, Integer> methodStartLines;
   private final ResourceMapping resourceMapping;
   private SensorContext sensorContext;
+  private ResultsCache resultsCache;
+  private Collection<String> sortedClassKeys;
 
   public DefaultJavaResourceLocator(Project project, JavaClasspath javaClasspath, SuppressWarningsFilter suppressWarningsFilter) {
     this.project = project;
@@ -84,20 +92,20 @@ public class DefaultJavaResourceLocator implements JavaResourceLocator {
 
   @Override
   public Collection<String> classKeys() {
-    return ImmutableSortedSet.<String>naturalOrder().addAll(resourcesByClass.keySet()).build();
+    if (sortedClassKeys == null) {
+      sortedClassKeys = ImmutableSortedSet.<String>naturalOrder().addAll(resourcesByClass.keySet()).build();
+    }
+    return sortedClassKeys;
   }
 
   @Override
   public Collection<File> classFilesToAnalyze() {
+    Map<String, File> classFiles = javaClasspath.getClassFiles();
     ImmutableList.Builder<File> result = ImmutableList.builder();
     for (String key : classKeys()) {
-      String filePath = key + ".class";
-      for (File binaryDir : javaClasspath.getBinaryDirs()) {
-        File classFile = new File(binaryDir, filePath);
-        if (classFile.isFile()) {
-          result.add(classFile);
-          break;
-        }
+      File classFile = classFiles.get(key);
+      if (classFile != null) {
+        result.add(classFile);
       }
     }
     return result.build();
@@ -118,26 +126,48 @@ public class DefaultJavaResourceLocator implements JavaResourceLocator {
     return resourceMapping;
   }
 
+  @Override
+  public void setResultsCache(ResultsCache resultsCache) {
+    this.resultsCache = resultsCache;
+  }
+
   @Override
   public void scanFile(JavaFileScannerContext context) {
     Preconditions.checkNotNull(sensorContext);
     JavaFilesCache javaFilesCache = new JavaFilesCache();
     javaFilesCache.scanFile(context);
-    org.sonar.api.resources.File currentResource = org.sonar.api.resources.File.fromIOFile(context.getFile(), project);
+    addFile(context.getFile(), context.getFileKey(), javaFilesCache.getResourcesCache().keySet(), javaFilesCache.getMethodStartLines(),
+      javaFilesCache.getSuppressWarnings());
+    FileResults results = resultsCache == null ? null : resultsCache.recordingFor(context.getFile());
+    if (results != null) {
+      results.setClasses(javaFilesCache.getResourcesCache().keySet(), javaFilesCache.getMethodStartLines(), javaFilesCache.getSuppressWarnings());
+    }
+  }
+
+  @Override
+  public void replay(File file, FileResults results) {
+    Preconditions.checkNotNull(sensorContext);
+    addFile(file, file.getAbsolutePath(), results.classKeys(), results.methodStartLines(), results.suppressWarnings());
+  }
+
+  private void addFile(File file, @Nullable String fileKey, Collection<String> classKeys, Map<String, Integer> methodStartLines,
+    List<SuppressWarningsRange> suppressWarnings) {
+    org.sonar.api.resources.File currentResource = org.sonar.api.resources.File.fromIOFile(file, project);
     if (currentResource == null) {
-      throw new IllegalStateException("resource not found : " + context.getFileKey());
+      throw new IllegalStateException("resource not found : " + fileKey);
     }
-    resourceMapping.addResource(currentResource, context.getFileKey());
-    for (Map.Entry<String, File> classIOFileEntry : javaFilesCache.getResourcesCache().entrySet()) {
-      resourcesByClass.put(classIOFileEntry.getKey(), currentResource);
-      if (context.getFileKey() != null) {
-        sourceFileByClass.put(classIOFileEntry.getKey(), context.getFileKey());
+    resourceMapping.addResource(currentResource, fileKey);
+    sortedClassKeys = null;
+    for (String classKey : classKeys) {
+      resourcesByClass.put(classKey, currentResource);
+      if (fileKey != null) {
+        sourceFileByClass.put(classKey, fileKey);
       }
     }
-    methodStartLines.putAll(javaFilesCache.getMethodStartLines());
+    this.methodStartLines.putAll(methodStartLines);
     org.sonar.api.resources.File indexedResource = sensorContext.getResource(currentResource);
-    if (indexedResource != null && javaFilesCache.hasSuppressWarningLines()) {
-      suppressWarningsFilter.addComponent(indexedResource.getEffectiveKey(), javaFilesCache.getSuppressWarningLines());
+    if (indexedResource != null && !suppressWarnings.isEmpty()) {
+      suppressWarningsFilter.addComponent(indexedResource.getEffectiveKey(), suppressWarnings);
     }
   }
 }
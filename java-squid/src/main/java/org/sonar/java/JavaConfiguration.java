@@ -19,12 +19,21 @@
  */
 package org.sonar.java;
 
+import org.sonar.java.model.ChecksProfiler;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.File;
 import java.nio.charset.Charset;
 
 public class JavaConfiguration {
 
   private final Charset charset;
   private boolean separateAccessorsFromMethods = true;
+  private int parserThreads = 1;
+  private int bytecodeThreads = 1;
+  private File signatureIndexDirectory;
+  private ChecksProfiler checksProfiler;
 
   public JavaConfiguration(Charset charset) {
     this.charset = charset;
@@ -42,4 +51,45 @@ public class JavaConfiguration {
     this.separateAccessorsFromMethods = separateAccessorsFromMethods;
   }
 
+  public int getParserThreads() {
+    return parserThreads;
+  }
+
+  public void setParserThreads(int parserThreads) {
+    this.parserThreads = parserThreads;
+  }
+
+  public int getBytecodeThreads() {
+    return bytecodeThreads;
+  }
+
+  public void setBytecodeThreads(int bytecodeThreads) {
+    this.bytecodeThreads = bytecodeThreads;
+  }
+
+  /**
+   * Directory where signatures of classes from JAR files of the classpath are indexed, to be reused by next analyses.
+   * Not used when null.
+   */
+  @CheckForNull
+  public File getSignatureIndexDirectory() {
+    return signatureIndexDirectory;
+  }
+
+  public void setSignatureIndexDirectory(@Nullable File signatureIndexDirectory) {
+    this.signatureIndexDirectory = signatureIndexDirectory;
+  }
+
+  /**
+   * Profiler of the execution of checks. Checks are not profiled when null.
+   */
+  @CheckForNull
+  public ChecksProfiler getChecksProfiler() {
+    return checksProfiler;
+  }
+
+  public void setChecksProfiler(@Nullable ChecksProfiler checksProfiler) {
+    this.checksProfiler = checksProfiler;
+  }
+
 }
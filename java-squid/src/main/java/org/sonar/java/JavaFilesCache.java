@@ -20,11 +20,10 @@
 package org.sonar.java;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
 import org.apache.commons.lang.StringUtils;
+import org.sonar.java.filters.SuppressWarningsRange;
 import org.sonar.java.model.JavaTree;
 import org.sonar.java.signature.MethodSignaturePrinter;
 import org.sonar.java.signature.MethodSignatureScanner;
@@ -56,7 +55,7 @@ public class JavaFilesCache extends BaseTreeVisitor implements JavaFileScanner {
   Map<String, Integer> methodStartLines = Maps.newHashMap();
 
   @VisibleForTesting
-  Multimap<Integer, String> suppressWarningLines = HashMultimap.create();
+  List<SuppressWarningsRange> suppressWarnings = Lists.newArrayList();
 
   private File currentFile;
   private Deque<String> currentClassKey = new LinkedList<String>();
@@ -72,12 +71,15 @@ public class JavaFilesCache extends BaseTreeVisitor implements JavaFileScanner {
     return methodStartLines;
   }
 
-  public Multimap<Integer, String> getSuppressWarningLines() {
-    return suppressWarningLines;
+  /**
+   * @return lines covered by each <code>@SuppressWarnings</code> annotation
+   */
+  public List<SuppressWarningsRange> getSuppressWarnings() {
+    return suppressWarnings;
   }
 
-  public boolean hasSuppressWarningLines() {
-    return !suppressWarningLines.isEmpty();
+  public boolean hasSuppressWarnings() {
+    return !suppressWarnings.isEmpty();
   }
 
   @Override
@@ -88,7 +90,7 @@ public class JavaFilesCache extends BaseTreeVisitor implements JavaFileScanner {
     currentClassKey.clear();
     parent.clear();
     anonymousInnerClassCounter.clear();
-    suppressWarningLines.clear();
+    suppressWarnings.clear();
     scan(tree);
   }
 
@@ -160,8 +162,8 @@ public class JavaFilesCache extends BaseTreeVisitor implements JavaFileScanner {
         break;
       }
     }
-    for (int i = startLine; i <= endLine; i++) {
-      suppressWarningLines.putAll(i, warnings);
+    if (!warnings.isEmpty()) {
+      suppressWarnings.add(new SuppressWarningsRange(startLine, endLine, warnings));
     }
   }
 
@@ -21,6 +21,8 @@ package org.sonar.java;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import org.apache.commons.io.FileUtils;
@@ -36,12 +38,18 @@ import org.sonar.java.ast.visitors.FileVisitor;
 import org.sonar.java.ast.visitors.SyntaxHighlighterVisitor;
 import org.sonar.java.bytecode.BytecodeScanner;
 import org.sonar.java.bytecode.visitor.DependenciesVisitor;
+import org.sonar.java.incremental.FileResults;
+import org.sonar.java.incremental.ReplayableVisitor;
+import org.sonar.java.incremental.ResultsCache;
+import org.sonar.java.incremental.SignatureVisitor;
 import org.sonar.java.model.VisitorsBridge;
 import org.sonar.plugins.java.api.JavaResourceLocator;
 import org.sonar.squidbridge.api.CodeVisitor;
 import org.sonar.squidbridge.api.Query;
 import org.sonar.squidbridge.api.SourceCode;
 import org.sonar.squidbridge.api.SourceCodeSearchEngine;
+import org.sonar.squidbridge.api.SourceFile;
+import org.sonar.squidbridge.api.SourceProject;
 import org.sonar.squidbridge.indexer.SquidIndex;
 
 import javax.annotation.Nullable;
@@ -58,7 +66,12 @@ public class JavaSquid implements SourceCodeSearchEngine {
   private final AstScanner astScanner;
   private final AstScanner astScannerForTests;
   private final BytecodeScanner bytecodeScanner;
+  private final DependenciesVisitor dependenciesVisitor;
   private final DirectedGraph<Resource, Dependency> graph = new DirectedGraph<>();
+  private final SonarComponents sonarComponents;
+  private final ResultsCache resultsCache;
+  private final List<ReplayableVisitor> replayableVisitors;
+  private final List<ReplayableVisitor> replayableVisitorsForTests;
 
   private boolean bytecodeScanned = false;
 
@@ -70,6 +83,21 @@ public class JavaSquid implements SourceCodeSearchEngine {
   public JavaSquid(JavaConfiguration conf,
                    @Nullable SonarComponents sonarComponents, @Nullable Measurer measurer,
                    JavaResourceLocator javaResourceLocator, CodeVisitor... visitors) {
+    this(conf, sonarComponents, measurer, javaResourceLocator, null, visitors);
+  }
+
+  /**
+   * @param resultsCache if not null, only changed files are analyzed, and results of other files are replayed from this cache
+   */
+  public JavaSquid(JavaConfiguration conf,
+                   @Nullable SonarComponents sonarComponents, @Nullable Measurer measurer,
+                   JavaResourceLocator javaResourceLocator, @Nullable ResultsCache resultsCache, CodeVisitor... visitors) {
+    Preconditions.checkArgument(resultsCache == null || sonarComponents != null, "Results can only be cached with SonarComponents");
+    this.sonarComponents = sonarComponents;
+    this.resultsCache = resultsCache;
+    if (resultsCache != null) {
+      sonarComponents.setResultsCache(resultsCache);
+    }
 
     astScanner = JavaAstScanner.create(conf);
 
@@ -86,12 +114,14 @@ public class JavaSquid implements SourceCodeSearchEngine {
       testClasspath = sonarComponents.getJavaTestClasspath();
       testCheckClasses.addAll(sonarComponents.testCheckClasses());
     }
-    setupAstScanner(astScanner, visitorsToBridge, classpath, conf, sonarComponents);
+    replayableVisitors = setupAstScanner(astScanner, visitorsToBridge, classpath, conf, sonarComponents);
     // TODO unchecked cast
     squidIndex = (SquidIndex) astScanner.getIndex();
 
     bytecodeScanner = new BytecodeScanner(squidIndex, javaResourceLocator);
-    bytecodeScanner.accept(new DependenciesVisitor(graph));
+    bytecodeScanner.setReaderThreads(conf.getBytecodeThreads());
+    dependenciesVisitor = new DependenciesVisitor(graph);
+    bytecodeScanner.accept(dependenciesVisitor);
 
     // External visitors (typically Check ones):
     for (CodeVisitor visitor : visitors) {
@@ -104,41 +134,110 @@ public class JavaSquid implements SourceCodeSearchEngine {
 
     astScannerForTests = new AstScanner(astScanner);
     astScannerForTests.accept(new FileVisitor());
-    setupAstScanner(astScannerForTests, testCheckClasses, testClasspath, conf, sonarComponents);
+    replayableVisitorsForTests = setupAstScanner(astScannerForTests, testCheckClasses, testClasspath, conf, sonarComponents);
   }
 
-  private void setupAstScanner(AstScanner astScanner, Iterable<CodeVisitor> visitorsToBridge,
+  /**
+   * @return visitors whose results must be replayed for the files which are not analyzed again
+   */
+  private List<ReplayableVisitor> setupAstScanner(AstScanner astScanner, Iterable<CodeVisitor> visitorsToBridge,
                                List<File> classpath, JavaConfiguration conf, @Nullable SonarComponents sonarComponents) {
+    ImmutableList.Builder<ReplayableVisitor> replayable = ImmutableList.builder();
+    if (resultsCache != null) {
+      visitorsToBridge = Iterables.concat(visitorsToBridge, Arrays.asList((CodeVisitor) new SignatureVisitor(resultsCache)));
+      for (CodeVisitor visitor : visitorsToBridge) {
+        if (visitor instanceof ReplayableVisitor) {
+          ((ReplayableVisitor) visitor).setResultsCache(resultsCache);
+          replayable.add((ReplayableVisitor) visitor);
+        }
+      }
+    }
     if(sonarComponents != null) {
       astScanner.accept(new FileLinesVisitor(sonarComponents, conf.getCharset()));
-      astScanner.accept(new SyntaxHighlighterVisitor(sonarComponents, conf.getCharset()));
+      astScanner.accept(new SyntaxHighlighterVisitor(sonarComponents));
     }
     VisitorsBridge visitorsBridgeTest = new VisitorsBridge(visitorsToBridge, classpath, sonarComponents);
     visitorsBridgeTest.setCharset(conf.getCharset());
     visitorsBridgeTest.setAnalyseAccessors(conf.separatesAccessorsFromMethods());
+    visitorsBridgeTest.setSignatureIndexDirectory(conf.getSignatureIndexDirectory());
+    visitorsBridgeTest.setChecksProfiler(conf.getChecksProfiler());
     astScanner.accept(visitorsBridgeTest);
+    return replayable.build();
   }
 
 
 
   public void scan(Iterable<File> sourceFiles, Iterable<File> testFiles, Collection<File> bytecodeFilesOrDirectories) {
+    if (resultsCache != null) {
+      resultsCache.computeChanges(sourceFiles, testFiles);
+    }
     scanSources(sourceFiles);
     scanBytecode(bytecodeFilesOrDirectories);
     scanTests(testFiles);
+    if (resultsCache != null) {
+      resultsCache.save();
+    }
   }
 
   private void scanSources(Iterable<File> sourceFiles) {
     TimeProfiler profiler = new TimeProfiler(getClass()).start("Java Main Files AST scan");
-    astScanner.scan(sourceFiles);
+    astScanner.scan(filesToAnalyze(sourceFiles));
+    recordOrReplay(sourceFiles, replayableVisitors);
     profiler.stop();
   }
 
   private void scanTests(Iterable<File> testFiles) {
     TimeProfiler profiler = new TimeProfiler(getClass()).start("Java Test Files AST scan");
-    astScannerForTests.simpleScan(testFiles);
+    astScannerForTests.simpleScan(filesToAnalyze(testFiles));
+    recordOrReplay(testFiles, replayableVisitorsForTests);
     profiler.stop();
   }
 
+  private Iterable<File> filesToAnalyze(Iterable<File> files) {
+    if (resultsCache == null) {
+      return files;
+    }
+    List<File> result = Lists.newArrayList();
+    for (File file : files) {
+      if (!resultsCache.isUnchanged(file)) {
+        result.add(file);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Records the issues of the analyzed files, which must be done before they are completed by bytecode checks, and replays
+   * the results of the other ones.
+   */
+  private void recordOrReplay(Iterable<File> files, List<ReplayableVisitor> visitors) {
+    if (resultsCache == null) {
+      return;
+    }
+    SourceProject project = (SourceProject) squidIndex.search("Java Project");
+    for (File file : files) {
+      if (resultsCache.isUnchanged(file)) {
+        replay(file, resultsCache.resultsFor(file), project, visitors);
+      } else {
+        FileResults results = resultsCache.recordingFor(file);
+        SourceFile sourceFile = (SourceFile) squidIndex.search(file.getAbsolutePath());
+        if (results != null && sourceFile != null) {
+          results.recordIssues(sourceFile, sonarComponents);
+        }
+      }
+    }
+  }
+
+  private void replay(File file, FileResults results, SourceProject project, List<ReplayableVisitor> visitors) {
+    SourceFile sourceFile = new SourceFile(file.getAbsolutePath(), file.getPath());
+    project.addChild(sourceFile);
+    results.replayIssues(sourceFile, sonarComponents);
+    results.replayPerspectives(file, sonarComponents);
+    for (ReplayableVisitor visitor : visitors) {
+      visitor.replay(file, results);
+    }
+  }
+
   private void scanBytecode(Collection<File> bytecodeFilesOrDirectories) {
     if (hasBytecode(bytecodeFilesOrDirectories)) {
       TimeProfiler profiler = new TimeProfiler(getClass()).start("Java bytecode scan");
@@ -174,7 +273,11 @@ public class JavaSquid implements SourceCodeSearchEngine {
     return squidIndex;
   }
 
+  /**
+   * Dependencies are only added to the graph once, when it is requested after the scan.
+   */
   public DirectedGraph<Resource, Dependency> getGraph() {
+    dependenciesVisitor.completeGraph();
     return graph;
   }
 
@@ -0,0 +1,196 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java;
+
+import com.google.common.collect.Sets;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Set of line numbers, stored as bits of an array of words rather than as boxed integers.
+ */
+public class LineSet {
+
+  private static final int ADDRESS_BITS_PER_WORD = 6;
+  private static final long[] EMPTY = new long[0];
+
+  private long[] words = EMPTY;
+
+  public LineSet() {
+  }
+
+  public LineSet(Iterable<Integer> lines) {
+    for (Integer line : lines) {
+      add(line);
+    }
+  }
+
+  public void add(int line) {
+    int wordIndex = wordIndex(line);
+    ensureCapacity(wordIndex + 1);
+    words[wordIndex] |= 1L << line;
+  }
+
+  /**
+   * Adds the lines from {@code fromLine} to {@code toLine}, both inclusive.
+   */
+  public void addRange(int fromLine, int toLine) {
+    if (fromLine > toLine) {
+      return;
+    }
+    int startWordIndex = wordIndex(fromLine);
+    int endWordIndex = wordIndex(toLine);
+    ensureCapacity(endWordIndex + 1);
+    long firstWordMask = -1L << fromLine;
+    long lastWordMask = -1L >>> (63 - (toLine & 63));
+    if (startWordIndex == endWordIndex) {
+      words[startWordIndex] |= firstWordMask & lastWordMask;
+    } else {
+      words[startWordIndex] |= firstWordMask;
+      for (int i = startWordIndex + 1; i < endWordIndex; i++) {
+        words[i] = -1L;
+      }
+      words[endWordIndex] |= lastWordMask;
+    }
+  }
+
+  public void addAll(LineSet other) {
+    ensureCapacity(other.words.length);
+    for (int i = 0; i < other.words.length; i++) {
+      words[i] |= other.words[i];
+    }
+  }
+
+  public boolean contains(int line) {
+    if (line < 0) {
+      return false;
+    }
+    int wordIndex = wordIndex(line);
+    return wordIndex < words.length && (words[wordIndex] & (1L << line)) != 0;
+  }
+
+  public int count() {
+    int count = 0;
+    for (long word : words) {
+      count += Long.bitCount(word);
+    }
+    return count;
+  }
+
+  public boolean isEmpty() {
+    for (long word : words) {
+      if (word != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void clear() {
+    Arrays.fill(words, 0);
+  }
+
+  /**
+   * @return the first line of this set greater than or equal to {@code fromLine}, or -1 if there is none
+   */
+  public int nextLine(int fromLine) {
+    int wordIndex = wordIndex(fromLine);
+    if (wordIndex >= words.length) {
+      return -1;
+    }
+    long word = words[wordIndex] & (-1L << fromLine);
+    while (true) {
+      if (word != 0) {
+        return (wordIndex << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+      }
+      wordIndex++;
+      if (wordIndex == words.length) {
+        return -1;
+      }
+      word = words[wordIndex];
+    }
+  }
+
+  /**
+   * @return lines of this set, for APIs which require boxed integers
+   */
+  public Set<Integer> toSet() {
+    Set<Integer> result = Sets.newHashSetWithExpectedSize(count());
+    for (int line = nextLine(0); line >= 0; line = nextLine(line + 1)) {
+      result.add(line);
+    }
+    return result;
+  }
+
+  private void ensureCapacity(int wordsRequired) {
+    if (words.length < wordsRequired) {
+      words = Arrays.copyOf(words, Math.max(2 * words.length, wordsRequired));
+    }
+  }
+
+  private static int wordIndex(int line) {
+    return line >> ADDRESS_BITS_PER_WORD;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof LineSet)) {
+      return false;
+    }
+    long[] otherWords = ((LineSet) obj).words;
+    int length = Math.max(words.length, otherWords.length);
+    for (int i = 0; i < length; i++) {
+      if (word(words, i) != word(otherWords, i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long word(long[] words, int index) {
+    return index < words.length ? words[index] : 0L;
+  }
+
+  @Override
+  public int hashCode() {
+    long hash = 1234;
+    for (int i = words.length - 1; i >= 0; i--) {
+      hash ^= words[i] * (i + 1);
+    }
+    return (int) ((hash >> 32) ^ hash);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int line = nextLine(0); line >= 0; line = nextLine(line + 1)) {
+      if (sb.length() > 1) {
+        sb.append(", ");
+      }
+      sb.append(line);
+    }
+    return sb.append(']').toString();
+  }
+
+}
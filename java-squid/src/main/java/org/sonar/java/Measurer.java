@@ -19,9 +19,8 @@
  */
 package org.sonar.java;
 
-import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
-import com.google.common.io.Files;
+import com.google.common.collect.Maps;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
@@ -32,26 +31,42 @@ import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.java.ast.visitors.AccessorVisitor;
 import org.sonar.java.ast.visitors.CommentLinesVisitor;
+import org.sonar.java.ast.visitors.ComplexityVisitor;
 import org.sonar.java.ast.visitors.LinesOfCodeVisitor;
 import org.sonar.java.ast.visitors.PublicApiChecker;
 import org.sonar.java.ast.visitors.StatementVisitor;
+import org.sonar.java.ast.visitors.SubscriptionDispatcher;
 import org.sonar.java.ast.visitors.SubscriptionVisitor;
+import org.sonar.java.incremental.FileResults;
+import org.sonar.java.incremental.ReplayableVisitor;
+import org.sonar.java.incremental.ResultsCache;
+import org.sonar.java.model.JavaTree;
 import org.sonar.plugins.java.api.JavaFileScannerContext;
 import org.sonar.plugins.java.api.tree.ClassTree;
 import org.sonar.plugins.java.api.tree.MethodTree;
 import org.sonar.plugins.java.api.tree.NewClassTree;
 import org.sonar.plugins.java.api.tree.Tree;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
-public class Measurer extends SubscriptionVisitor implements CharsetAwareVisitor {
+/**
+ * Computes all the metrics of a file in a single walk of its tree and of its tokens, shared with the visitors of
+ * complexity, statements, public API, lines of code and comment lines.
+ */
+public class Measurer extends SubscriptionVisitor implements ReplayableVisitor {
 
   private static final Number[] LIMITS_COMPLEXITY_METHODS = {1, 2, 4, 6, 8, 10, 12};
   private static final Number[] LIMITS_COMPLEXITY_FILES = {0, 5, 10, 20, 30, 60, 90};
+  private static final Map<String, Metric> METRICS_BY_KEY = Maps.newHashMap();
+
+  static {
+    for (Metric metric : CoreMetrics.getMetrics()) {
+      METRICS_BY_KEY.put(metric.getKey(), metric);
+    }
+  }
 
   private final SensorContext sensorContext;
   private final Project project;
@@ -63,15 +78,44 @@ public class Measurer extends SubscriptionVisitor implements CharsetAwareVisitor
   private RangeDistributionBuilder methodComplexityDistribution;
 
   private final Deque<ClassTree> classTrees = new LinkedList<ClassTree>();
+  private final Deque<MethodTree> measuredMethods = new LinkedList<MethodTree>();
   private final AccessorVisitor accessorVisitor;
-  private Charset charset;
+  private final ComplexityVisitor complexityVisitor;
+  private final StatementVisitor statementVisitor = new StatementVisitor();
+  private final PublicApiChecker publicApiChecker;
+  private final LinesOfCodeVisitor linesOfCodeVisitor = new LinesOfCodeVisitor();
+  private final CommentLinesVisitor commentLinesVisitor = new CommentLinesVisitor();
+  private final SubscriptionDispatcher dispatcher;
   private double classes;
+  private ResultsCache resultsCache;
+  private FileResults results;
 
   public Measurer(Project project, SensorContext context, boolean separateAccessorsFromMethods) {
     this.project = project;
     this.sensorContext = context;
     this.separateAccessorsFromMethods = separateAccessorsFromMethods;
     accessorVisitor = new AccessorVisitor();
+    complexityVisitor = new ComplexityVisitor(separateAccessorsFromMethods);
+    if (separateAccessorsFromMethods) {
+      publicApiChecker = PublicApiChecker.newInstanceWithAccessorsSeparatedFromMethods();
+    } else {
+      publicApiChecker = PublicApiChecker.newInstanceWithAccessorsHandledAsMethods();
+    }
+    // this visitor must be called first, to start computing the complexity of methods before they are visited
+    dispatcher = new SubscriptionDispatcher(ImmutableList.of(this, complexityVisitor, statementVisitor, publicApiChecker, linesOfCodeVisitor, commentLinesVisitor));
+  }
+
+  @Override
+  public void setResultsCache(ResultsCache resultsCache) {
+    this.resultsCache = resultsCache;
+  }
+
+  @Override
+  public void replay(java.io.File file, FileResults results) {
+    File resource = File.fromIOFile(file, project);
+    for (Measure measure : results.measures(METRICS_BY_KEY)) {
+      sensorContext.saveMeasure(resource, measure);
+    }
   }
 
   @Override
@@ -85,20 +129,22 @@ public class Measurer extends SubscriptionVisitor implements CharsetAwareVisitor
   @Override
   public void scanFile(JavaFileScannerContext context) {
     sonarFile = File.fromIOFile(context.getFile(), project);
+    results = resultsCache == null ? null : resultsCache.recordingFor(context.getFile());
     classTrees.clear();
+    measuredMethods.clear();
     methods = 0;
     complexityInMethods = 0;
     accessors = 0;
     classes = 0;
-    PublicApiChecker publicApiChecker = PublicApiChecker.newInstanceWithAccessorsHandledAsMethods();
-    if (separateAccessorsFromMethods) {
-      publicApiChecker = PublicApiChecker.newInstanceWithAccessorsSeparatedFromMethods();
-    }
-    publicApiChecker.scan(context.getTree());
+    complexityVisitor.reset();
+    statementVisitor.reset();
+    publicApiChecker.reset();
+    linesOfCodeVisitor.reset();
+    commentLinesVisitor.reset();
     methodComplexityDistribution = new RangeDistributionBuilder(CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION, LIMITS_COMPLEXITY_METHODS);
-    super.scanFile(context);
+    dispatcher.scanFile(context);
     //leave file.
-    int fileComplexity = context.getComplexity(context.getTree());
+    int fileComplexity = complexityVisitor.complexity();
     saveMetricOnFile(CoreMetrics.CLASSES, classes);
     saveMetricOnFile(CoreMetrics.FUNCTIONS, methods);
     saveMetricOnFile(CoreMetrics.ACCESSORS, accessors);
@@ -107,25 +153,20 @@ public class Measurer extends SubscriptionVisitor implements CharsetAwareVisitor
     saveMetricOnFile(CoreMetrics.PUBLIC_API, publicApiChecker.getPublicApi());
     saveMetricOnFile(CoreMetrics.PUBLIC_DOCUMENTED_API_DENSITY, publicApiChecker.getDocumentedPublicApiDensity());
     saveMetricOnFile(CoreMetrics.PUBLIC_UNDOCUMENTED_API, publicApiChecker.getUndocumentedPublicApi());
-    saveMetricOnFile(CoreMetrics.COMMENT_LINES, new CommentLinesVisitor().commentLines(context.getTree()));
-    saveMetricOnFile(CoreMetrics.STATEMENTS, new StatementVisitor().numberOfStatements(context.getTree()));
-    saveMetricOnFile(CoreMetrics.NCLOC, new LinesOfCodeVisitor().linesOfCode(context.getTree()));
+    saveMetricOnFile(CoreMetrics.COMMENT_LINES, commentLinesVisitor.commentLines());
+    saveMetricOnFile(CoreMetrics.STATEMENTS, statementVisitor.numberOfStatements());
+    saveMetricOnFile(CoreMetrics.NCLOC, linesOfCodeVisitor.linesOfCode());
 
-    sensorContext.saveMeasure(sonarFile, methodComplexityDistribution.build(true).setPersistenceMode(PersistenceMode.MEMORY));
+    saveMeasure(methodComplexityDistribution.build(true).setPersistenceMode(PersistenceMode.MEMORY));
 
     RangeDistributionBuilder fileComplexityDistribution = new RangeDistributionBuilder(CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION, LIMITS_COMPLEXITY_FILES);
-    sensorContext.saveMeasure(sonarFile, fileComplexityDistribution.add(fileComplexity).build(true).setPersistenceMode(PersistenceMode.MEMORY));
+    saveMeasure(fileComplexityDistribution.add(fileComplexity).build(true).setPersistenceMode(PersistenceMode.MEMORY));
     saveLinesMetric();
 
   }
 
   private void saveLinesMetric() {
-    try {
-      String content = Files.toString(context.getFile(), charset);
-      saveMetricOnFile(CoreMetrics.LINES, content.split("(\r)?\n|\r", -1).length);
-    } catch (IOException e) {
-      Throwables.propagate(e);
-    }
+    saveMetricOnFile(CoreMetrics.LINES, ((JavaTree.CompilationUnitTreeImpl) context.getTree()).source().lines());
   }
 
   @Override
@@ -144,9 +185,8 @@ public class Measurer extends SubscriptionVisitor implements CharsetAwareVisitor
         accessors++;
       } else {
         methods++;
-        int methodComplexity = context.getMethodComplexity(classTrees.peek(), methodTree);
-        methodComplexityDistribution.add(methodComplexity);
-        complexityInMethods += methodComplexity;
+        complexityVisitor.enterMethod(classTrees.peek());
+        measuredMethods.push(methodTree);
       }
     }
 
@@ -156,6 +196,11 @@ public class Measurer extends SubscriptionVisitor implements CharsetAwareVisitor
   public void leaveNode(Tree tree) {
     if (isClassTree(tree)) {
       classTrees.pop();
+    } else if (tree == measuredMethods.peek()) {
+      measuredMethods.pop();
+      int methodComplexity = complexityVisitor.leaveMethod();
+      methodComplexityDistribution.add(methodComplexity);
+      complexityInMethods += methodComplexity;
     }
   }
 
@@ -164,11 +209,13 @@ public class Measurer extends SubscriptionVisitor implements CharsetAwareVisitor
   }
 
   private void saveMetricOnFile(Metric metric, double value) {
-    sensorContext.saveMeasure(sonarFile, new Measure(metric, value));
+    saveMeasure(new Measure(metric, value));
   }
 
-  @Override
-  public void setCharset(Charset charset) {
-    this.charset = charset;
+  private void saveMeasure(Measure measure) {
+    sensorContext.saveMeasure(sonarFile, measure);
+    if (results != null) {
+      results.addMeasure(measure);
+    }
   }
 }
@@ -29,12 +29,16 @@ import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.rule.RuleKey;
 import org.sonar.api.source.Highlightable;
 import org.sonar.api.source.Symbolizable;
+import org.sonar.java.incremental.FileResults;
+import org.sonar.java.incremental.ResultsCache;
 import org.sonar.plugins.java.api.CheckRegistrar;
 import org.sonar.plugins.java.api.JavaCheck;
 import org.sonar.squidbridge.api.CodeVisitor;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Collection;
@@ -50,6 +54,7 @@ public class SonarComponents implements BatchExtension {
   private final Project project;
   private final List<Checks<JavaCheck>> checks;
   private Checks<JavaCheck> testChecks;
+  private ResultsCache resultsCache;
 
   public SonarComponents(FileLinesContextFactory fileLinesContextFactory, ResourcePerspectives resourcePerspectives, Project project,
                          JavaClasspath javaClasspath, JavaTestClasspath javaTestClasspath,
@@ -81,16 +86,34 @@ public class SonarComponents implements BatchExtension {
     return org.sonar.api.resources.File.fromIOFile(file, project);
   }
 
+  /**
+   * When set, what is saved through the perspectives of the files being analyzed is recorded in this cache.
+   */
+  public void setResultsCache(@Nullable ResultsCache resultsCache) {
+    this.resultsCache = resultsCache;
+  }
+
   public FileLinesContext fileLinesContextFor(File file) {
-    return fileLinesContextFactory.createFor(resourceFromIOFile(file));
+    FileLinesContext fileLinesContext = fileLinesContextFactory.createFor(resourceFromIOFile(file));
+    FileResults results = recordingFor(file);
+    return results == null ? fileLinesContext : results.record(fileLinesContext);
   }
 
   public Symbolizable symbolizableFor(File file) {
-    return resourcePerspectives.as(Symbolizable.class, resourceFromIOFile(file));
+    Symbolizable symbolizable = resourcePerspectives.as(Symbolizable.class, resourceFromIOFile(file));
+    FileResults results = recordingFor(file);
+    return results == null ? symbolizable : results.record(symbolizable);
   }
 
   public Highlightable highlightableFor(File file) {
-    return resourcePerspectives.as(Highlightable.class, resourceFromIOFile(file));
+    Highlightable highlightable = resourcePerspectives.as(Highlightable.class, resourceFromIOFile(file));
+    FileResults results = recordingFor(file);
+    return results == null ? highlightable : results.record(highlightable);
+  }
+
+  @CheckForNull
+  private FileResults recordingFor(File file) {
+    return resultsCache == null ? null : resultsCache.recordingFor(file);
   }
 
   public List<File> getJavaClasspath() {
@@ -104,6 +127,17 @@ public class SonarComponents implements BatchExtension {
     return javaTestClasspath.getElements();
   }
 
+  public List<File> getJavaBinaryDirs() {
+    if (javaClasspath == null) {
+      return Lists.newArrayList();
+    }
+    return javaClasspath.getBinaryDirs();
+  }
+
+  public List<File> getJavaTestBinaryDirs() {
+    return javaTestClasspath.getBinaryDirs();
+  }
+
   public ResourcePerspectives getResourcePerspectives() {
     return resourcePerspectives;
   }
@@ -124,6 +158,28 @@ public class SonarComponents implements BatchExtension {
     return Iterables.concat(checks, Lists.newArrayList(testChecks));
   }
 
+  @CheckForNull
+  public RuleKey ruleKey(JavaCheck check) {
+    for (Checks<JavaCheck> sonarChecks : checks()) {
+      RuleKey ruleKey = sonarChecks == null ? null : sonarChecks.ruleKey(check);
+      if (ruleKey != null) {
+        return ruleKey;
+      }
+    }
+    return null;
+  }
+
+  @CheckForNull
+  public JavaCheck checkOf(RuleKey ruleKey) {
+    for (Checks<JavaCheck> sonarChecks : checks()) {
+      JavaCheck check = sonarChecks == null ? null : sonarChecks.of(ruleKey);
+      if (check != null) {
+        return check;
+      }
+    }
+    return null;
+  }
+
   public void registerTestCheckClasses(String repositoryKey, List<Class<? extends JavaCheck>> javaTestChecks) {
     testChecks = checkFactory.<JavaCheck>create(repositoryKey).addAnnotatedChecks(javaTestChecks);
   }
@@ -19,8 +19,12 @@
  */
 package org.sonar.java.ast;
 
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.RecognitionException;
@@ -40,8 +44,17 @@ import org.sonar.squidbridge.api.SourceProject;
 import org.sonar.squidbridge.indexer.SquidIndex;
 import org.sonar.sslr.parser.LexerlessGrammar;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 public class AstScanner {
@@ -53,6 +66,8 @@ public class AstScanner {
   private final List<AstScannerExceptionHandler> astScannerExceptionHandlers = Lists.newArrayList();
   private final Parser<LexerlessGrammar> parser;
   private CommentAnalyser commentAnalyser;
+  private int parserThreads = 1;
+  private Supplier<? extends Parser<LexerlessGrammar>> parserFactory;
 
   public AstScanner(Parser<LexerlessGrammar> parser) {
     this.parser = parser;
@@ -65,6 +80,19 @@ public class AstScanner {
   public AstScanner(AstScanner astScanner) {
     this.parser = astScanner.parser;
     this.index = astScanner.index;
+    this.parserThreads = astScanner.parserThreads;
+    this.parserFactory = astScanner.parserFactory;
+  }
+
+  /**
+   * Parses files on <code>threads</code> threads, each of them using its own parser created by <code>parserFactory</code>.
+   * Visitors are still notified on the calling thread and in the order of the files, so the index and the logged
+   * messages are exactly the same as the ones of a sequential scan.
+   */
+  public void setParserThreads(int threads, Supplier<? extends Parser<LexerlessGrammar>> parserFactory) {
+    Preconditions.checkArgument(threads > 0, "Number of parser threads must be strictly positive: " + threads);
+    this.parserThreads = threads;
+    this.parserFactory = parserFactory;
   }
 
   public void scan(Iterable<File> files) {
@@ -95,23 +123,20 @@ public class AstScanner {
     ProgressReport progressReport = new ProgressReport("Report about progress of Java AST analyzer", TimeUnit.SECONDS.toMillis(10));
     progressReport.start(size + " source files to be analyzed");
     int count = 0;
-    for (File file : files) {
+    ParallelParser parallelParser = parserThreads > 1 ? new ParallelParser(files) : null;
+    try {
+      for (File file : files) {
 
-      progressReport.message(count + "/" + size + " files analyzed, current is " + file.getAbsolutePath());
-      count++;
+        progressReport.message(count + "/" + size + " files analyzed, current is " + file.getAbsolutePath());
+        count++;
 
-      context.setFile(file);
+        context.setFile(file);
 
-      try {
-        AstNode ast = parser.parse(file);
-        astWalker.walkAndVisit(ast);
-      } catch (RecognitionException e) {
-        LOG.error("Unable to parse source file : " + file.getAbsolutePath());
-        LOG.error(e.getMessage());
-
-        parseErrorWalkAndVisit(e, file);
-      } catch (Exception e) {
-        throw new AnalysisException(getAnalyisExceptionMessage(file), e);
+        scanFile(astWalker, file, parallelParser);
+      }
+    } finally {
+      if (parallelParser != null) {
+        parallelParser.shutdown();
       }
     }
     progressReport.stop(size + "/" + size + " source files analyzed");
@@ -121,6 +146,20 @@ public class AstScanner {
     }
   }
 
+  private void scanFile(AstWalker astWalker, File file, @Nullable ParallelParser parallelParser) {
+    try {
+      AstNode ast = parallelParser == null ? parser.parse(file) : parallelParser.next();
+      astWalker.walkAndVisit(ast);
+    } catch (RecognitionException e) {
+      LOG.error("Unable to parse source file : " + file.getAbsolutePath());
+      LOG.error(e.getMessage());
+
+      parseErrorWalkAndVisit(e, file);
+    } catch (Exception e) {
+      throw new AnalysisException(getAnalyisExceptionMessage(file), e);
+    }
+  }
+
   private void parseErrorWalkAndVisit(RecognitionException e, File file) {
     try {
       // Process the exception
@@ -166,4 +205,57 @@ public class AstScanner {
     }
   }
 
+  /**
+   * Parses files ahead of the visitors on a pool of threads. Results are handed over in submission order, and the number of
+   * trees waiting to be visited is bounded to limit memory consumption.
+   */
+  private class ParallelParser {
+
+    private final ExecutorService executor;
+    private final Iterator<File> filesToParse;
+    private final Deque<Future<AstNode>> pending = new ArrayDeque<Future<AstNode>>();
+    private final ThreadLocal<Parser<LexerlessGrammar>> parsers = new ThreadLocal<Parser<LexerlessGrammar>>() {
+      @Override
+      protected Parser<LexerlessGrammar> initialValue() {
+        return parserFactory.get();
+      }
+    };
+
+    ParallelParser(Iterable<File> files) {
+      executor = Executors.newFixedThreadPool(parserThreads, new ThreadFactoryBuilder().setNameFormat("java-parser-%d").setDaemon(true).build());
+      filesToParse = files.iterator();
+      for (int i = 0; i < 2 * parserThreads; i++) {
+        submitNext();
+      }
+    }
+
+    private void submitNext() {
+      if (filesToParse.hasNext()) {
+        final File file = filesToParse.next();
+        pending.add(executor.submit(new Callable<AstNode>() {
+          @Override
+          public AstNode call() {
+            return parsers.get().parse(file);
+          }
+        }));
+      }
+    }
+
+    AstNode next() throws Exception {
+      Future<AstNode> future = pending.remove();
+      submitNext();
+      try {
+        return future.get();
+      } catch (ExecutionException e) {
+        Throwables.propagateIfPossible(e.getCause(), Exception.class);
+        throw e;
+      }
+    }
+
+    void shutdown() {
+      executor.shutdownNow();
+    }
+
+  }
+
 }
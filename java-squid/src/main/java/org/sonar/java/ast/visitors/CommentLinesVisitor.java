@@ -20,7 +20,7 @@
 package org.sonar.java.ast.visitors;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Sets;
+import org.sonar.java.LineSet;
 import org.sonar.plugins.java.api.tree.CompilationUnitTree;
 import org.sonar.plugins.java.api.tree.SyntaxToken;
 import org.sonar.plugins.java.api.tree.SyntaxTrivia;
@@ -28,11 +28,10 @@ import org.sonar.plugins.java.api.tree.Tree;
 import org.sonar.squidbridge.CommentAnalyser;
 
 import java.util.List;
-import java.util.Set;
 
 public class CommentLinesVisitor extends SubscriptionVisitor {
 
-  private Set<Integer> comments = Sets.newHashSet();
+  private final LineSet comments = new LineSet();
   private boolean seenFirstToken;
   private JavaCommentAnalyser commentAnalyser = new JavaCommentAnalyser();
 
@@ -42,25 +41,31 @@ public class CommentLinesVisitor extends SubscriptionVisitor {
   }
 
   public int commentLines(CompilationUnitTree tree) {
+    reset();
+    visitTokens(tree);
+    return commentLines();
+  }
+
+  /**
+   * Starts counting the comment lines of a file whose tokens are visited by a {@link SubscriptionDispatcher}.
+   */
+  public void reset() {
     comments.clear();
     seenFirstToken = false;
-    visitTokens(tree);
-    return comments.size();
+  }
+
+  /**
+   * @return number of comment lines among the tokens visited since the last {@link #reset()}
+   */
+  public int commentLines() {
+    return comments.count();
   }
 
   @Override
   public void visitToken(SyntaxToken syntaxToken) {
     for (SyntaxTrivia trivia : syntaxToken.trivias()) {
       if (seenFirstToken) {
-        String[] commentLines = commentAnalyser.getContents(trivia.comment())
-            .split("(\r)?\n|\r", -1);
-        int line = trivia.startLine();
-        for (String commentLine : commentLines) {
-          if (!commentLine.contains("NOSONAR") && !commentAnalyser.isBlank(commentLine)) {
-            comments.add(line);
-          }
-          line++;
-        }
+        addCommentLines(commentAnalyser.getContents(trivia.comment()), trivia.startLine());
       } else {
         seenFirstToken = true;
       }
@@ -68,6 +73,33 @@ public class CommentLinesVisitor extends SubscriptionVisitor {
     seenFirstToken = true;
   }
 
+  /**
+   * Splits the contents on \n, \r\n and \r.
+   */
+  private void addCommentLines(String contents, int firstLine) {
+    int line = firstLine;
+    int lineStart = 0;
+    int length = contents.length();
+    for (int i = 0; i < length; i++) {
+      char c = contents.charAt(i);
+      if (c == '\n' || c == '\r') {
+        addCommentLine(contents.substring(lineStart, i), line);
+        if (c == '\r' && i + 1 < length && contents.charAt(i + 1) == '\n') {
+          i++;
+        }
+        lineStart = i + 1;
+        line++;
+      }
+    }
+    addCommentLine(contents.substring(lineStart), line);
+  }
+
+  private void addCommentLine(String commentLine, int line) {
+    if (!commentLine.contains("NOSONAR") && !commentAnalyser.isBlank(commentLine)) {
+      comments.add(line);
+    }
+  }
+
   public static class JavaCommentAnalyser extends CommentAnalyser {
 
     @Override
@@ -27,6 +27,7 @@ import org.sonar.plugins.java.api.tree.ClassTree;
 import org.sonar.plugins.java.api.tree.MethodTree;
 import org.sonar.plugins.java.api.tree.Tree;
 
+import javax.annotation.Nullable;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
@@ -37,6 +38,7 @@ public class ComplexityVisitor extends SubscriptionVisitor {
   private AccessorVisitor accessorVisitor = new AccessorVisitor();
   private Deque<ClassTree> classTrees = new LinkedList<ClassTree>();
   private boolean analyseAccessors;
+  private final Deque<MethodComplexity> methodComplexities = new LinkedList<MethodComplexity>();
 
   public ComplexityVisitor(boolean analyseAccessors) {
     this.analyseAccessors = analyseAccessors;
@@ -66,33 +68,69 @@ public class ComplexityVisitor extends SubscriptionVisitor {
   }
 
   public int scan(ClassTree classTree, MethodTree tree) {
-    complexity = 0;
-    classTrees.clear();
+    reset();
     classTrees.push(classTree);
     super.scanTree(tree);
     return complexity;
   }
 
   public int scan(Tree tree) {
+    reset();
+    super.scanTree(tree);
+    return complexity;
+  }
+
+  /**
+   * Starts computing the complexity of a file whose tree is visited by a {@link SubscriptionDispatcher}.
+   */
+  public void reset() {
     complexity = 0;
     classTrees.clear();
-    super.scanTree(tree);
+    methodComplexities.clear();
+  }
+
+  /**
+   * @return complexity of the trees visited since the last {@link #reset()}
+   */
+  public int complexity() {
     return complexity;
   }
 
+  /**
+   * Starts computing, during the visit of the whole file, the complexity of a method as computed by
+   * {@link #scan(ClassTree, MethodTree)}. Must be called before the method is visited.
+   */
+  public void enterMethod(ClassTree enclosingClass) {
+    methodComplexities.push(new MethodComplexity(enclosingClass, classTrees.size()));
+  }
+
+  /**
+   * @return complexity of the last entered method, which must have been left
+   */
+  public int leaveMethod() {
+    return methodComplexities.pop().complexity;
+  }
+
   @Override
   public void visitNode(Tree tree) {
     if (isClass(tree)) {
       classTrees.push((ClassTree) tree);
     } else if (isMethod(tree)) {
-      computeMethodComplexity((MethodTree) tree);
-    } else if (tree.is(Tree.Kind.CASE_LABEL)) {
-      CaseLabelTree caseLabelTree = (CaseLabelTree) tree;
-      if (!"default".equals(caseLabelTree.caseOrDefaultKeyword().text())) {
-        complexity++;
+      MethodTree methodTree = (MethodTree) tree;
+      complexity += methodComplexity(classTrees.peek(), methodTree);
+      for (MethodComplexity methodComplexity : methodComplexities) {
+        ClassTree enclosingClass = classTrees.size() > methodComplexity.classDepth ? classTrees.peek() : methodComplexity.enclosingClass;
+        methodComplexity.complexity += methodComplexity(enclosingClass, methodTree);
       }
     } else {
-      complexity++;
+      int increment = 1;
+      if (tree.is(Tree.Kind.CASE_LABEL) && "default".equals(((CaseLabelTree) tree).caseOrDefaultKeyword().text())) {
+        increment = 0;
+      }
+      complexity += increment;
+      for (MethodComplexity methodComplexity : methodComplexities) {
+        methodComplexity.complexity += increment;
+      }
     }
   }
 
@@ -106,21 +144,23 @@ public class ComplexityVisitor extends SubscriptionVisitor {
         tree.is(Tree.Kind.ANNOTATION_TYPE);
   }
 
-  private void computeMethodComplexity(MethodTree methodTree) {
+  private int methodComplexity(@Nullable ClassTree enclosingClass, MethodTree methodTree) {
+    int result = 0;
     BlockTree block = methodTree.block();
     if (block != null) {
-      if (classTrees.isEmpty() || !isAccessor(methodTree)) {
-        complexity++;
+      if (enclosingClass == null || !isAccessor(enclosingClass, methodTree)) {
+        result++;
       }
       if (!block.body().isEmpty() && Iterables.getLast(block.body()).is(Tree.Kind.RETURN_STATEMENT)) {
         //minus one because we are going to count the return with +1
-        complexity--;
+        result--;
       }
     }
+    return result;
   }
 
-  private boolean isAccessor(MethodTree methodTree) {
-    return analyseAccessors && accessorVisitor.isAccessor(classTrees.peek(), methodTree);
+  private boolean isAccessor(ClassTree enclosingClass, MethodTree methodTree) {
+    return analyseAccessors && accessorVisitor.isAccessor(enclosingClass, methodTree);
   }
 
 
@@ -130,4 +170,15 @@ public class ComplexityVisitor extends SubscriptionVisitor {
       classTrees.pop();
     }
   }
+
+  private static class MethodComplexity {
+    private final ClassTree enclosingClass;
+    private final int classDepth;
+    private int complexity;
+
+    MethodComplexity(ClassTree enclosingClass, int classDepth) {
+      this.enclosingClass = enclosingClass;
+      this.classDepth = classDepth;
+    }
+  }
 }
@@ -20,7 +20,6 @@
 package org.sonar.java.ast.visitors;
 
 import com.google.common.base.Throwables;
-import com.google.common.collect.Sets;
 import com.google.common.io.Files;
 import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.AstNode;
@@ -29,14 +28,16 @@ import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.Trivia;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.FileLinesContext;
+import org.sonar.java.LineSet;
 import org.sonar.java.SonarComponents;
+import org.sonar.java.model.JavaTree;
+import org.sonar.java.parser.sslr.Input;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.sslr.parser.LexerlessGrammar;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.List;
-import java.util.Set;
 
 /**
  * Saves information about lines directly into Sonar by using {@link FileLinesContext}.
@@ -45,8 +46,8 @@ public class FileLinesVisitor extends SquidAstVisitor<LexerlessGrammar> implemen
 
   private final SonarComponents sonarComponents;
   private final Charset charset;
-  private final Set<Integer> linesOfCode = Sets.newHashSet();
-  private final Set<Integer> linesOfComments = Sets.newHashSet();
+  private final LineSet linesOfCode = new LineSet();
+  private final LineSet linesOfComments = new LineSet();
 
   public FileLinesVisitor(SonarComponents sonarComponents, Charset charset) {
     this.sonarComponents = sonarComponents;
@@ -57,12 +58,16 @@ public class FileLinesVisitor extends SquidAstVisitor<LexerlessGrammar> implemen
   public void leaveFile(AstNode astNode) {
     FileLinesContext fileLinesContext = sonarComponents.fileLinesContextFor(getContext().getFile());
 
-    // TODO minimize access to files, another one in LinesVisitor
     int fileLength;
-    try {
-      fileLength = Files.readLines(getContext().getFile(), charset).size();
-    } catch (IOException e) {
-      throw Throwables.propagate(e);
+    if (astNode == null) {
+      // parse error: there is no decoded source, and every line is saved as neither code nor comment
+      try {
+        fileLength = Files.readLines(getContext().getFile(), charset).size();
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+    } else {
+      fileLength = fileLength(((JavaTree.CompilationUnitTreeImpl) astNode).source());
     }
     for (int line = 1; line <= fileLength; line++) {
       fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, linesOfCode.contains(line) ? 1 : 0);
@@ -74,6 +79,33 @@ public class FileLinesVisitor extends SquidAstVisitor<LexerlessGrammar> implemen
     linesOfComments.clear();
   }
 
+  /**
+   * @return number of lines, not counting the empty line after a final new line
+   */
+  private static int fileLength(Input source) {
+    char[] content = source.input();
+    if (content.length == 0) {
+      return 0;
+    }
+    char last = content[content.length - 1];
+    return last == '\n' || last == '\r' ? (source.lines() - 1) : source.lines();
+  }
+
+  /**
+   * @return number of \n, \r\n and \r in the value
+   */
+  private static int newLines(String value) {
+    int newLines = 0;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == '\n' || (c == '\r' && (i + 1 == length || value.charAt(i + 1) != '\n'))) {
+        newLines++;
+      }
+    }
+    return newLines;
+  }
+
   @Override
   public void visitToken(Token token) {
     if (token.getType().equals(GenericTokenType.EOF)) {
@@ -85,10 +117,7 @@ public class FileLinesVisitor extends SquidAstVisitor<LexerlessGrammar> implemen
     for (Trivia trivia : trivias) {
       if (trivia.isComment()) {
         int baseLine = trivia.getToken().getLine();
-        String[] lines = trivia.getToken().getOriginalValue().split("(\r)?\n|\r", -1);
-        for (int i = 0; i < lines.length; i++) {
-          linesOfComments.add(baseLine + i);
-        }
+        linesOfComments.addRange(baseLine, baseLine + newLines(trivia.getToken().getOriginalValue()));
       }
     }
   }
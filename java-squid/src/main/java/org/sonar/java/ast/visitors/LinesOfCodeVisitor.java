@@ -20,23 +20,36 @@
 package org.sonar.java.ast.visitors;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Sets;
+import org.sonar.java.LineSet;
 import org.sonar.java.model.InternalSyntaxToken;
 import org.sonar.plugins.java.api.tree.CompilationUnitTree;
 import org.sonar.plugins.java.api.tree.SyntaxToken;
 import org.sonar.plugins.java.api.tree.Tree;
 
 import java.util.List;
-import java.util.Set;
 
 public class LinesOfCodeVisitor extends SubscriptionVisitor{
 
-  private Set<Integer> lines = Sets.newHashSet();
+  private final LineSet lines = new LineSet();
 
   public int linesOfCode(CompilationUnitTree tree) {
-    lines.clear();
+    reset();
     visitTokens(tree);
-    return lines.size();
+    return linesOfCode();
+  }
+
+  /**
+   * Starts counting the lines of a file whose tokens are visited by a {@link SubscriptionDispatcher}.
+   */
+  public void reset() {
+    lines.clear();
+  }
+
+  /**
+   * @return number of lines of code among the tokens visited since the last {@link #reset()}
+   */
+  public int linesOfCode() {
+    return lines.count();
   }
 
   @Override
@@ -20,6 +20,7 @@
 package org.sonar.java.ast.visitors;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.sonar.sslr.api.Token;
 import org.sonar.api.utils.ParsingUtils;
 import org.sonar.java.ast.parser.TypeParameterListTreeImpl;
@@ -27,7 +28,6 @@ import org.sonar.java.model.InternalSyntaxToken;
 import org.sonar.java.model.JavaTree;
 import org.sonar.plugins.java.api.tree.AnnotationTree;
 import org.sonar.plugins.java.api.tree.ArrayTypeTree;
-import org.sonar.plugins.java.api.tree.BaseTreeVisitor;
 import org.sonar.plugins.java.api.tree.ClassTree;
 import org.sonar.plugins.java.api.tree.CompilationUnitTree;
 import org.sonar.plugins.java.api.tree.IdentifierTree;
@@ -35,7 +35,6 @@ import org.sonar.plugins.java.api.tree.MemberSelectExpressionTree;
 import org.sonar.plugins.java.api.tree.MethodTree;
 import org.sonar.plugins.java.api.tree.Modifier;
 import org.sonar.plugins.java.api.tree.ModifiersTree;
-import org.sonar.plugins.java.api.tree.NewClassTree;
 import org.sonar.plugins.java.api.tree.ParameterizedTypeTree;
 import org.sonar.plugins.java.api.tree.SyntaxToken;
 import org.sonar.plugins.java.api.tree.SyntaxTrivia;
@@ -47,8 +46,9 @@ import javax.annotation.Nullable;
 
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.List;
 
-public class PublicApiChecker extends BaseTreeVisitor {
+public class PublicApiChecker extends SubscriptionVisitor {
 
   private static final Tree.Kind[] CLASS_KINDS = {
       Tree.Kind.CLASS,
@@ -76,6 +76,7 @@ public class PublicApiChecker extends BaseTreeVisitor {
   private final Deque<Tree> currentParents = new LinkedList<Tree>();
   private double publicApi;
   private double documentedPublicApi;
+  private int anonymousClassesDepth;
   private final boolean separateAccessorsFromMethods;
   private final AccessorVisitor accessorVisitor;
 
@@ -104,41 +105,40 @@ public class PublicApiChecker extends BaseTreeVisitor {
     return API_KINDS.clone();
   }
 
-  public void scan(CompilationUnitTree tree) {
-    classTrees.clear();
-    currentParents.clear();
-    publicApi = 0;
-    documentedPublicApi = 0;
-    super.scan(tree);
-  }
-
   @Override
-  public void visitNewClass(NewClassTree tree) {
-    // don't visit anonymous classes, nothing in an anonymous class is part of public api.
+  public List<Kind> nodesToVisit() {
+    return ImmutableList.<Kind>builder()
+        .add(API_KINDS)
+        .add(Tree.Kind.NEW_CLASS)
+        .build();
   }
 
-  @Override
-  public void visitClass(ClassTree tree) {
-    visitNode(tree);
-    super.visitClass(tree);
-    classTrees.pop();
-    currentParents.pop();
+  public void scan(CompilationUnitTree tree) {
+    reset();
+    scanTree(tree);
   }
 
-  @Override
-  public void visitVariable(VariableTree tree) {
-    visitNode(tree);
-    super.visitVariable(tree);
+  /**
+   * Starts counting the public API of a file whose tree is visited by a {@link SubscriptionDispatcher}.
+   */
+  public void reset() {
+    classTrees.clear();
+    currentParents.clear();
+    publicApi = 0;
+    documentedPublicApi = 0;
+    anonymousClassesDepth = 0;
   }
 
   @Override
-  public void visitMethod(MethodTree tree) {
-    visitNode(tree);
-    super.visitMethod(tree);
-    currentParents.pop();
-  }
-
-  private void visitNode(Tree tree) {
+  public void visitNode(Tree tree) {
+    if (tree.is(Tree.Kind.NEW_CLASS)) {
+      // don't visit anonymous classes, nothing in an anonymous class is part of public api.
+      anonymousClassesDepth++;
+      return;
+    }
+    if (anonymousClassesDepth > 0) {
+      return;
+    }
     Tree currentParent = currentParents.peek();
     if (tree.is(PublicApiChecker.CLASS_KINDS)) {
       classTrees.push((ClassTree) tree);
@@ -155,6 +155,20 @@ public class PublicApiChecker extends BaseTreeVisitor {
     }
   }
 
+  @Override
+  public void leaveNode(Tree tree) {
+    if (tree.is(Tree.Kind.NEW_CLASS)) {
+      anonymousClassesDepth--;
+    } else if (anonymousClassesDepth == 0) {
+      if (tree.is(CLASS_KINDS)) {
+        classTrees.pop();
+        currentParents.pop();
+      } else if (tree.is(METHOD_KINDS)) {
+        currentParents.pop();
+      }
+    }
+  }
+
   public boolean isPublicApi(ClassTree currentClass, ClassTree classTree) {
     return (currentClass != null && isPublicInterface(currentClass)) || hasPublic(classTree.modifiers());
   }
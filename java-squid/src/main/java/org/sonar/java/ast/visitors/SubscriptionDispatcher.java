@@ -0,0 +1,189 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.ast.visitors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sonar.sslr.api.Token;
+import org.sonar.java.model.InternalSyntaxToken;
+import org.sonar.java.model.JavaTree;
+import org.sonar.plugins.java.api.JavaFileScanner;
+import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.SyntaxToken;
+import org.sonar.plugins.java.api.tree.SyntaxTrivia;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Walks the tree and the tokens of each file once for several {@link SubscriptionVisitor}s, and calls each of them only on
+ * the kinds of nodes it subscribed to, instead of letting each of them walk the whole tree.
+ * <p/>
+ * Only visitors which rely on the walk of {@link SubscriptionVisitor} can be dispatched: visitors which override
+ * {@link SubscriptionVisitor#scanFile}, {@link SubscriptionVisitor#scanTree}, {@link SubscriptionVisitor#visitTokens} or
+ * {@link SubscriptionVisitor#isSubscribed} are still scanned on their own.
+ */
+public class SubscriptionDispatcher implements JavaFileScanner {
+
+  private static final SubscriptionVisitor[] NO_SUBSCRIBERS = new SubscriptionVisitor[0];
+
+  private final List<SubscriptionVisitor> visitors;
+  private final Map<Tree.Kind, SubscriptionVisitor[]> subscribers = new EnumMap<Tree.Kind, SubscriptionVisitor[]>(Tree.Kind.class);
+  private final SubscriptionVisitor[] tokenSubscribers;
+  private final SubscriptionVisitor[] triviaSubscribers;
+
+  public SubscriptionDispatcher(List<SubscriptionVisitor> visitors) {
+    this.visitors = ImmutableList.copyOf(visitors);
+    Map<Tree.Kind, List<SubscriptionVisitor>> subscribersByKind = Maps.newEnumMap(Tree.Kind.class);
+    List<SubscriptionVisitor> tokens = Lists.newArrayList();
+    List<SubscriptionVisitor> trivias = Lists.newArrayList();
+    for (SubscriptionVisitor visitor : visitors) {
+      Set<Tree.Kind> nodesToVisit = visitor.subscriptions();
+      for (Tree.Kind kind : nodesToVisit) {
+        List<SubscriptionVisitor> kindSubscribers = subscribersByKind.get(kind);
+        if (kindSubscribers == null) {
+          kindSubscribers = Lists.newArrayList();
+          subscribersByKind.put(kind, kindSubscribers);
+        }
+        kindSubscribers.add(visitor);
+      }
+      // as in SubscriptionVisitor#visitTokens, subscribers to trivias also visit tokens
+      if (nodesToVisit.contains(Tree.Kind.TOKEN) || nodesToVisit.contains(Tree.Kind.TRIVIA)) {
+        tokens.add(visitor);
+      }
+      if (nodesToVisit.contains(Tree.Kind.TRIVIA)) {
+        trivias.add(visitor);
+      }
+    }
+    for (Map.Entry<Tree.Kind, List<SubscriptionVisitor>> entry : subscribersByKind.entrySet()) {
+      subscribers.put(entry.getKey(), entry.getValue().toArray(new SubscriptionVisitor[entry.getValue().size()]));
+    }
+    tokenSubscribers = tokens.toArray(new SubscriptionVisitor[tokens.size()]);
+    triviaSubscribers = trivias.toArray(new SubscriptionVisitor[trivias.size()]);
+  }
+
+  /**
+   * @return the scanners, with the ones which can be dispatched replaced by a single dispatcher at the position of the first of them
+   */
+  public static List<JavaFileScanner> dispatch(List<JavaFileScanner> scanners) {
+    List<SubscriptionVisitor> dispatched = Lists.newArrayList();
+    int position = -1;
+    List<JavaFileScanner> result = Lists.newArrayList();
+    for (JavaFileScanner scanner : scanners) {
+      if (canBeDispatched(scanner)) {
+        if (position < 0) {
+          position = result.size();
+        }
+        dispatched.add((SubscriptionVisitor) scanner);
+      } else {
+        result.add(scanner);
+      }
+    }
+    if (dispatched.size() > 1) {
+      result.add(position, new SubscriptionDispatcher(dispatched));
+    } else if (dispatched.size() == 1) {
+      result.add(position, dispatched.get(0));
+    }
+    return result;
+  }
+
+  static boolean canBeDispatched(JavaFileScanner scanner) {
+    if (!(scanner instanceof SubscriptionVisitor)) {
+      return false;
+    }
+    Class<?> type = scanner.getClass();
+    return !overrides(type, "scanFile", JavaFileScannerContext.class)
+      && !overrides(type, "scanTree", Tree.class)
+      && !overrides(type, "visitTokens", CompilationUnitTree.class)
+      && !overrides(type, "isSubscribed", Tree.class);
+  }
+
+  private static boolean overrides(Class<?> type, String name, Class<?>... parameterTypes) {
+    for (Class<?> current = type; current != SubscriptionVisitor.class; current = current.getSuperclass()) {
+      try {
+        current.getDeclaredMethod(name, parameterTypes);
+        return true;
+      } catch (NoSuchMethodException e) {
+        // not declared by this class
+      }
+    }
+    return false;
+  }
+
+  public List<SubscriptionVisitor> visitors() {
+    return visitors;
+  }
+
+  @Override
+  public void scanFile(JavaFileScannerContext context) {
+    for (SubscriptionVisitor visitor : visitors) {
+      visitor.setContext(context);
+    }
+    visit(context.getTree());
+    if (tokenSubscribers.length > 0) {
+      visitTokens(context.getTree());
+    }
+  }
+
+  private void visit(Tree tree) {
+    JavaTree javaTree = (JavaTree) tree;
+    SubscriptionVisitor[] treeSubscribers = subscribers.get(javaTree.getKind());
+    if (treeSubscribers == null) {
+      treeSubscribers = NO_SUBSCRIBERS;
+    }
+    for (SubscriptionVisitor visitor : treeSubscribers) {
+      visitor.visitNode(tree);
+    }
+    if (!javaTree.isLeaf()) {
+      for (Iterator<Tree> iter = javaTree.childrenIterator(); iter.hasNext(); ) {
+        Tree next = iter.next();
+        if (next != null) {
+          visit(next);
+        }
+      }
+    }
+    for (SubscriptionVisitor visitor : treeSubscribers) {
+      visitor.leaveNode(tree);
+    }
+  }
+
+  private void visitTokens(CompilationUnitTree compilationUnitTree) {
+    for (Token token : ((JavaTree) compilationUnitTree).getAstNode().getTokens()) {
+      SyntaxToken syntaxToken = new InternalSyntaxToken(token);
+      for (SubscriptionVisitor visitor : tokenSubscribers) {
+        visitor.visitToken(syntaxToken);
+      }
+      if (triviaSubscribers.length > 0) {
+        for (SyntaxTrivia syntaxTrivia : syntaxToken.trivias()) {
+          for (SubscriptionVisitor visitor : triviaSubscribers) {
+            visitor.visitTrivia(syntaxTrivia);
+          }
+        }
+      }
+    }
+  }
+
+}
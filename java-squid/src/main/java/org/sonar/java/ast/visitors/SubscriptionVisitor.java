@@ -30,15 +30,16 @@ import org.sonar.plugins.java.api.tree.SyntaxToken;
 import org.sonar.plugins.java.api.tree.SyntaxTrivia;
 import org.sonar.plugins.java.api.tree.Tree;
 
-import java.util.Collection;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 public abstract class SubscriptionVisitor implements JavaFileScanner {
 
 
   protected JavaFileScannerContext context;
-  private Collection<Tree.Kind> nodesToVisit;
+  private Set<Tree.Kind> subscriptions;
   private SemanticModel semanticModel;
 
   public abstract List<Tree.Kind> nodesToVisit();
@@ -61,24 +62,44 @@ public abstract class SubscriptionVisitor implements JavaFileScanner {
 
   @Override
   public void scanFile(JavaFileScannerContext context) {
-    this.context = context;
-    semanticModel = (SemanticModel) context.getSemanticModel();
+    setContext(context);
     scanTree(context.getTree());
     visitTokens(context.getTree());
   }
 
+  /**
+   * Called before visiting the trees of a file, by {@link #scanFile} or by a {@link SubscriptionDispatcher}.
+   */
+  void setContext(JavaFileScannerContext context) {
+    this.context = context;
+    semanticModel = (SemanticModel) context.getSemanticModel();
+  }
+
+  /**
+   * Kinds returned by {@link #nodesToVisit()}, computed once for this visitor.
+   */
+  Set<Tree.Kind> subscriptions() {
+    if (subscriptions == null) {
+      Set<Tree.Kind> kinds = EnumSet.noneOf(Tree.Kind.class);
+      kinds.addAll(nodesToVisit());
+      subscriptions = kinds;
+    }
+    return subscriptions;
+  }
+
   protected void scanTree(Tree tree) {
-    nodesToVisit = nodesToVisit();
+    subscriptions();
     visit(tree);
   }
 
   protected void visitTokens(CompilationUnitTree compilationUnitTree) {
-    if (nodesToVisit().contains(Tree.Kind.TOKEN) || nodesToVisit().contains(Tree.Kind.TRIVIA)) {
+    boolean visitTrivias = subscriptions().contains(Tree.Kind.TRIVIA);
+    if (visitTrivias || subscriptions.contains(Tree.Kind.TOKEN)) {
       //FIXME relying on ASTNode to iterate over tokens.
       for (Token token : ((JavaTree) compilationUnitTree).getAstNode().getTokens()) {
         SyntaxToken syntaxToken = new InternalSyntaxToken(token);
         visitToken(syntaxToken);
-        if (nodesToVisit().contains(Tree.Kind.TRIVIA)) {
+        if (visitTrivias) {
           for (SyntaxTrivia syntaxTrivia : syntaxToken.trivias()) {
             visitTrivia(syntaxTrivia);
           }
@@ -100,7 +121,7 @@ public abstract class SubscriptionVisitor implements JavaFileScanner {
   }
 
   protected boolean isSubscribed(Tree tree) {
-    return nodesToVisit.contains(((JavaTree) tree).getKind());
+    return subscriptions.contains(((JavaTree) tree).getKind());
   }
 
   private void visitChildren(Tree tree) {
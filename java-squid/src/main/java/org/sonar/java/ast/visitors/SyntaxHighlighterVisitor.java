@@ -19,10 +19,7 @@
  */
 package org.sonar.java.ast.visitors;
 
-import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
-import com.google.common.io.Files;
 import com.sonar.sslr.api.AstAndTokenVisitor;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.AstNodeType;
@@ -32,28 +29,25 @@ import org.sonar.api.source.Highlightable;
 import org.sonar.java.SonarComponents;
 import org.sonar.java.ast.api.JavaKeyword;
 import org.sonar.java.ast.parser.JavaLexer;
+import org.sonar.java.model.JavaTree;
+import org.sonar.java.parser.sslr.Input;
 import org.sonar.plugins.java.api.tree.AnnotationTree;
 import org.sonar.plugins.java.api.tree.Tree.Kind;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.sslr.parser.LexerlessGrammar;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.util.List;
 import java.util.Map;
 
 public class SyntaxHighlighterVisitor extends SquidAstVisitor<LexerlessGrammar> implements AstAndTokenVisitor {
 
   private final SonarComponents sonarComponents;
   private final Map<AstNodeType, String> types;
-  private final Charset charset;
 
   private Highlightable.HighlightingBuilder highlighting;
-  private List<Integer> lineStart;
+  private Input source;
 
-  public SyntaxHighlighterVisitor(SonarComponents sonarComponents, Charset charset) {
+  public SyntaxHighlighterVisitor(SonarComponents sonarComponents) {
     this.sonarComponents = sonarComponents;
-    this.charset = charset;
 
     ImmutableMap.Builder<AstNodeType, String> typesBuilder = ImmutableMap.builder();
     for (AstNodeType type : JavaKeyword.values()) {
@@ -85,19 +79,7 @@ public class SyntaxHighlighterVisitor extends SquidAstVisitor<LexerlessGrammar>
 
     highlighting = sonarComponents.highlightableFor(getContext().getFile()).newHighlighting();
 
-    lineStart = Lists.newArrayList();
-    final String content;
-    try {
-      content = Files.toString(getContext().getFile(), charset);
-    } catch (IOException e) {
-      throw Throwables.propagate(e);
-    }
-    lineStart.add(0);
-    for (int i = 0; i < content.length(); i++) {
-      if (content.charAt(i) == '\n' || (content.charAt(i) == '\r' && i + 1 < content.length() && content.charAt(i + 1) != '\n')) {
-        lineStart.add(i + 1);
-      }
-    }
+    source = ((JavaTree.CompilationUnitTreeImpl) astNode).source();
   }
 
   @Override
@@ -134,7 +116,7 @@ public class SyntaxHighlighterVisitor extends SquidAstVisitor<LexerlessGrammar>
    * @param column starts from 0
    */
   private int getOffset(int line, int column) {
-    return lineStart.get(line - 1) + column;
+    return source.lineStartIndex(line) + column;
   }
 
   @Override
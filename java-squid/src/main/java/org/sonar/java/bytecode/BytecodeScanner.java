@@ -19,6 +19,7 @@
  */
 package org.sonar.java.bytecode;
 
+import com.google.common.base.Preconditions;
 import org.sonar.java.bytecode.asm.AsmClass;
 import org.sonar.java.bytecode.asm.AsmClassProvider;
 import org.sonar.java.bytecode.asm.AsmClassProvider.DETAIL_LEVEL;
@@ -35,22 +36,41 @@ import org.sonar.squidbridge.indexer.SquidIndex;
 import java.io.File;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 
 public class BytecodeScanner extends CodeScanner<BytecodeVisitor> {
 
   private final SquidIndex indexer;
   private JavaResourceLocator javaResourceLocator;
+  private int readerThreads = 1;
 
   public BytecodeScanner(SquidIndex indexer, JavaResourceLocator javaResourceLocator) {
     this.indexer = indexer;
     this.javaResourceLocator = javaResourceLocator;
   }
 
+  /**
+   * Reads and parses class files on <code>threads</code> threads, ahead of their loading. Classes are still loaded, linked
+   * and visited on the calling thread and in the order of their keys, so results do not depend on the number of threads.
+   */
+  public void setReaderThreads(int threads) {
+    Preconditions.checkArgument(threads > 0, "Number of reader threads must be strictly positive: " + threads);
+    this.readerThreads = threads;
+  }
+
   public BytecodeScanner scan(Collection<File> bytecodeFilesOrDirectories) {
     ClassLoader classLoader = ClassLoaderBuilder.create(bytecodeFilesOrDirectories);
-    scanClasses(javaResourceLocator.classKeys(), new AsmClassProviderImpl(classLoader));
-    // TODO unchecked cast
-    ((SquidClassLoader) classLoader).close();
+    AsmClassProviderImpl classProvider = new AsmClassProviderImpl(classLoader);
+    if (readerThreads > 1) {
+      classProvider.setReaderThreads(readerThreads);
+    }
+    try {
+      scanClasses(javaResourceLocator.classKeys(), classProvider);
+    } finally {
+      classProvider.close();
+      // TODO unchecked cast
+      ((SquidClassLoader) classLoader).close();
+    }
     return this;
   }
 
@@ -84,8 +104,20 @@ public class BytecodeScanner extends CodeScanner<BytecodeVisitor> {
     }
   }
 
+  /**
+   * Class files of the next keys are read in advance, the number of parsed classes waiting to be loaded being bounded to limit
+   * memory consumption.
+   */
   private void loadByteCodeInformation(Collection<String> keys, AsmClassProvider classProvider) {
+    Iterator<String> keysToReadAhead = keys.iterator();
+    int readAhead = readerThreads > 1 ? 2 * readerThreads : 0;
+    for (int i = 0; i < readAhead && keysToReadAhead.hasNext(); i++) {
+      classProvider.readAhead(keysToReadAhead.next());
+    }
     for (String key : keys) {
+      if (readAhead > 0 && keysToReadAhead.hasNext()) {
+        classProvider.readAhead(keysToReadAhead.next());
+      }
       classProvider.getClass(key, DETAIL_LEVEL.STRUCTURE_AND_CALLS);
     }
   }
@@ -24,6 +24,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.java.bytecode.loader.SquidClassLoader;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collection;
@@ -38,6 +39,13 @@ public final class ClassLoaderBuilder {
   }
 
   public static ClassLoader create(Collection<File> bytecodeFilesOrDirectories) {
+    return create(bytecodeFilesOrDirectories, null);
+  }
+
+  /**
+   * @param signatureIndexDirectory see {@link SquidClassLoader#SquidClassLoader(List, File)}
+   */
+  public static ClassLoader create(Collection<File> bytecodeFilesOrDirectories, @Nullable File signatureIndexDirectory) {
     List<File> files = Lists.newArrayList();
     for (File file : bytecodeFilesOrDirectories) {
       if (file.isFile() && file.getPath().endsWith(".class")) {
@@ -56,7 +64,7 @@ public final class ClassLoaderBuilder {
     }
 
     try {
-      return new SquidClassLoader(files);
+      return new SquidClassLoader(files, signatureIndexDirectory);
     } catch (Exception e) {
       throw new IllegalStateException("Can not create ClassLoader", e);
     }
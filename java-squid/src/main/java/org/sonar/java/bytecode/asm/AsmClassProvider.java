@@ -48,6 +48,13 @@ public abstract class AsmClassProvider {
 
   public abstract AsmClass getClass(String internalName, DETAIL_LEVEL level);
 
+  /**
+   * Hints that the given class is going to be loaded, so that its bytecode can be read in advance. Does nothing by default.
+   */
+  public void readAhead(String internalName) {
+    // nothing to read in advance by default
+  }
+
   public final AsmClass getClass(String internalName) {
     return getClass(internalName, DETAIL_LEVEL.STRUCTURE_AND_CALLS);
   }
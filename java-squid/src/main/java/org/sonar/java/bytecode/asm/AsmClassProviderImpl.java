@@ -19,8 +19,14 @@
  */
 package org.sonar.java.bytecode.asm;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.io.IOUtils;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +34,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class AsmClassProviderImpl extends AsmClassProvider {
 
@@ -35,6 +46,11 @@ public class AsmClassProviderImpl extends AsmClassProvider {
 
   private final ClassLoader classLoader;
   private final Map<String, AsmClass> asmClassCache = new HashMap<String, AsmClass>();
+  /**
+   * Class files being read and parsed in advance, by internal name of class. Only accessed from the calling thread.
+   */
+  private final Map<String, Future<ClassNode>> classesReadAhead = Maps.newHashMap();
+  private ExecutorService readerExecutor;
 
   public AsmClassProviderImpl() {
     this.classLoader = Thread.currentThread().getContextClassLoader();
@@ -44,6 +60,60 @@ public class AsmClassProviderImpl extends AsmClassProvider {
     this.classLoader = classLoader;
   }
 
+  /**
+   * Reads and parses class files on <code>threads</code> threads, when they are hinted by {@link #readAhead(String)}.
+   * Parsed bytecode is still visited on the calling thread when classes are loaded, so classes are exactly the same as the
+   * ones of a sequential load. Threads are stopped by {@link #close()}.
+   */
+  public void setReaderThreads(int threads) {
+    Preconditions.checkArgument(threads > 0, "Number of reader threads must be strictly positive: " + threads);
+    Preconditions.checkState(readerExecutor == null, "Reader threads already set");
+    readerExecutor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("java-bytecode-reader-%d").setDaemon(true).build());
+  }
+
+  /**
+   * Does nothing for a class which is already read in advance, or already built with all its details.
+   */
+  @Override
+  public void readAhead(final String internalName) {
+    if (readerExecutor == null || classesReadAhead.containsKey(internalName) || isBuilt(internalName)) {
+      return;
+    }
+    classesReadAhead.put(internalName, readerExecutor.submit(new Callable<ClassNode>() {
+      @Override
+      public ClassNode call() throws IOException {
+        InputStream input = classLoader.getResourceAsStream(internalName + ".class");
+        try {
+          ClassNode classNode = new ClassNode();
+          new ClassReader(input).accept(classNode, 0);
+          return classNode;
+        } finally {
+          IOUtils.closeQuietly(input);
+        }
+      }
+    }));
+  }
+
+  private boolean isBuilt(String internalName) {
+    AsmClass asmClass = asmClassCache.get(internalName);
+    return asmClass != null && asmClass.getDetailLevel() == DETAIL_LEVEL.STRUCTURE_AND_CALLS;
+  }
+
+  @VisibleForTesting
+  boolean isReadingAhead(String internalName) {
+    return classesReadAhead.containsKey(internalName);
+  }
+
+  /**
+   * Stops the threads reading class files in advance, if any.
+   */
+  public void close() {
+    if (readerExecutor != null) {
+      readerExecutor.shutdownNow();
+    }
+    classesReadAhead.clear();
+  }
+
   @Override
   public AsmClass getClass(String internalName, DETAIL_LEVEL level) {
     if (internalName == null) {
@@ -71,9 +141,14 @@ public class AsmClassProviderImpl extends AsmClassProvider {
     try {
 
       AsmClassVisitor classVisitor = new AsmClassVisitor(this, asmClass, level);
-      input = classLoader.getResourceAsStream(asmClass.getInternalName() + ".class");
-      ClassReader asmReader = new ClassReader(input);
-      asmReader.accept(classVisitor, 0);
+      Future<ClassNode> classReadAhead = classesReadAhead.remove(asmClass.getInternalName());
+      if (classReadAhead != null) {
+        get(classReadAhead).accept(classVisitor);
+      } else {
+        input = classLoader.getResourceAsStream(asmClass.getInternalName() + ".class");
+        ClassReader asmReader = new ClassReader(input);
+        asmReader.accept(classVisitor, 0);
+      }
     } catch (IOException e) {
       LOG.warn("Class '" + asmClass.getInternalName() + "' is not accessible through the ClassLoader.");
     } catch (SecurityException e) {
@@ -85,4 +160,13 @@ public class AsmClassProviderImpl extends AsmClassProvider {
     }
   }
 
+  private static ClassNode get(Future<ClassNode> classReadAhead) throws Exception {
+    try {
+      return classReadAhead.get();
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), Exception.class);
+      throw e;
+    }
+  }
+
 }
@@ -19,6 +19,7 @@
  */
 package org.sonar.java.bytecode.asm;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
 import java.util.ArrayList;
@@ -26,7 +27,9 @@ import java.util.List;
 
 public class AsmMethod extends AsmResource {
 
-  private final String name;
+  /**
+   * Name followed by descriptor. Name is not kept apart, since graphs of large projects contain millions of methods.
+   */
   private final String key;
   private boolean inherited = false;
   private boolean empty = false;
@@ -40,28 +43,27 @@ public class AsmMethod extends AsmResource {
 
   public AsmMethod(AsmClass parent, String name, String descriptor) {
     this.parent = parent;
-    this.name = name;
     key = name + descriptor;
   }
 
   public AsmMethod(AsmClass parent, String key) {
+    Preconditions.checkArgument(key.indexOf('(') >= 0, "Key must contain a descriptor: " + key);
     this.parent = parent;
     this.key = key;
-    this.name = key.substring(0, key.indexOf('('));
   }
 
   void addThrowsOfClasses(AsmClass[] asmClasses) {
     for (AsmClass asmClass : asmClasses) {
-      addEdge(new AsmEdge(this, asmClass, SourceCodeEdgeUsage.THROWS));
+      addEdge(asmClass, SourceCodeEdgeUsage.THROWS, 0);
     }
   }
 
   public List<AsmClass> getThrows() {
     ImmutableList.Builder<AsmClass> builder = ImmutableList.builder();
 
-    for (AsmEdge edge : getOutgoingEdges()) {
-      if (edge.getUsage() == SourceCodeEdgeUsage.THROWS) {
-        builder.add((AsmClass) edge.getTo());
+    for (int i = 0; i < edgeCount(); i++) {
+      if (edgeUsage(i) == SourceCodeEdgeUsage.THROWS) {
+        builder.add((AsmClass) edgeTarget(i));
       }
     }
 
@@ -69,7 +71,7 @@ public class AsmMethod extends AsmResource {
   }
 
   public String getName() {
-    return name;
+    return key.substring(0, key.indexOf('('));
   }
 
   public String getKey() {
@@ -78,7 +80,7 @@ public class AsmMethod extends AsmResource {
 
   public String getGenericKey() {
     if (signature != null) {
-      return name + signature;
+      return getName() + signature;
     }
     return getKey();
   }
@@ -93,9 +95,9 @@ public class AsmMethod extends AsmResource {
 
   public List<AsmField> getCallsToField() {
     List<AsmField> callsToField = new ArrayList<AsmField>();
-    for (AsmEdge usage : getOutgoingEdges()) {
-      if (usage.getUsage() == SourceCodeEdgeUsage.CALLS_FIELD) {
-        callsToField.add((AsmField) usage.getTo());
+    for (int i = 0; i < edgeCount(); i++) {
+      if (edgeUsage(i) == SourceCodeEdgeUsage.CALLS_FIELD) {
+        callsToField.add((AsmField) edgeTarget(i));
       }
     }
     return callsToField;
@@ -103,9 +105,9 @@ public class AsmMethod extends AsmResource {
 
   public List<AsmMethod> getCallsToMethod() {
     List<AsmMethod> callsToMethod = new ArrayList<AsmMethod>();
-    for (AsmEdge usage : getOutgoingEdges()) {
-      if (usage.getUsage() == SourceCodeEdgeUsage.CALLS_METHOD) {
-        callsToMethod.add((AsmMethod) usage.getTo());
+    for (int i = 0; i < edgeCount(); i++) {
+      if (edgeUsage(i) == SourceCodeEdgeUsage.CALLS_METHOD) {
+        callsToMethod.add((AsmMethod) edgeTarget(i));
       }
     }
     return callsToMethod;
@@ -129,7 +131,7 @@ public class AsmMethod extends AsmResource {
   }
 
   public boolean isConstructor() {
-    return "<init>".equals(name) || "<clinit>".equals(name);
+    return key.startsWith("<init>(") || key.startsWith("<clinit>(");
   }
 
   public boolean isDefaultConstructor() {
@@ -230,7 +232,7 @@ public class AsmMethod extends AsmResource {
   }
 
   public boolean isStaticConstructor() {
-    return "<init>".equals(name);
+    return key.startsWith("<init>(");
   }
 
   public void linkTo(AsmMethod implementationLinkage) {
@@ -19,18 +19,33 @@
  */
 package org.sonar.java.bytecode.asm;
 
-import java.util.ArrayList;
+import com.google.common.base.Preconditions;
+
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 public class AsmResource {
 
+  private static final AsmResource[] NO_TARGETS = new AsmResource[0];
+  private static final int[] NO_USAGES_AND_LINES = new int[0];
+  private static final SourceCodeEdgeUsage[] USAGES = SourceCodeEdgeUsage.values();
+  private static final int USAGE_BITS = 4;
+  private static final int USAGE_MASK = (1 << USAGE_BITS) - 1;
+
   private int accessFlags;
   AsmClass parent;
   boolean used = false;
-  private final List<AsmEdge> outgoingEdges = new ArrayList<AsmEdge>();
+
+  /**
+   * Outgoing edges are not kept as {@link AsmEdge} objects, which are only created when edges are read, but in parallel arrays:
+   * target of each edge, and its usage packed with its source line number. Graphs of large projects contain millions of edges.
+   */
+  private AsmResource[] edgeTargets = NO_TARGETS;
+  private int[] edgeUsagesAndLines = NO_USAGES_AND_LINES;
+  private int edgeCount = 0;
 
   void setAccessFlags(int accessFlags) {
     this.accessFlags = accessFlags;
@@ -38,40 +53,89 @@ public class AsmResource {
 
   void addUsesOfClasses(AsmClass[] asmClasses) {
     for (AsmClass asmClass : asmClasses) {
-      addEdge(new AsmEdge(this, asmClass, SourceCodeEdgeUsage.USES));
+      addEdge(asmClass, SourceCodeEdgeUsage.USES, 0);
     }
   }
 
   public Set<AsmClass> getDistinctUsedAsmClasses() {
-    Set<AsmClass> distinctUsedAsmClasses = new HashSet<AsmClass>();
-    for (AsmEdge usage : getOutgoingEdges()) {
-      if (usage.getUsage() == SourceCodeEdgeUsage.USES) {
-        distinctUsedAsmClasses.add((AsmClass) usage.getTo());
-      }
-    }
-    return distinctUsedAsmClasses;
+    return targetsOfEdges(SourceCodeEdgeUsage.USES);
   }
 
   public Set<AsmClass> getImplementedInterfaces() {
-    Set<AsmClass> implementedInterfaces = new HashSet<AsmClass>();
-    for (AsmEdge usage : getOutgoingEdges()) {
-      if (usage.getUsage() == SourceCodeEdgeUsage.IMPLEMENTS) {
-        implementedInterfaces.add((AsmClass) usage.getTo());
+    return targetsOfEdges(SourceCodeEdgeUsage.IMPLEMENTS);
+  }
+
+  private Set<AsmClass> targetsOfEdges(SourceCodeEdgeUsage usage) {
+    Set<AsmClass> result = new HashSet<AsmClass>();
+    for (int i = 0; i < edgeCount; i++) {
+      if (edgeUsage(i) == usage) {
+        result.add((AsmClass) edgeTargets[i]);
       }
     }
-    return implementedInterfaces;
+    return result;
   }
 
   public void addEdge(AsmEdge edge) {
-    outgoingEdges.add(edge);
+    Preconditions.checkArgument(edge.getFrom() == this, "Edge must start from this resource");
+    addEdge(edge.getTo(), edge.getUsage(), edge.getSourceLineNumber());
+  }
+
+  void addEdge(AsmResource to, SourceCodeEdgeUsage usage, int sourceLineNumber) {
+    to.setUsed(true);
+    if (edgeCount == edgeTargets.length) {
+      int capacity = Math.max(4, edgeCount + (edgeCount >> 1));
+      edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+      edgeUsagesAndLines = Arrays.copyOf(edgeUsagesAndLines, capacity);
+    }
+    edgeTargets[edgeCount] = to;
+    edgeUsagesAndLines[edgeCount] = (sourceLineNumber << USAGE_BITS) | usage.ordinal();
+    edgeCount++;
+  }
+
+  /**
+   * Releases the capacity reserved for edges which have not been added, once all the edges of this resource are known.
+   */
+  void trimEdges() {
+    if (edgeCount < edgeTargets.length) {
+      edgeTargets = edgeCount == 0 ? NO_TARGETS : Arrays.copyOf(edgeTargets, edgeCount);
+      edgeUsagesAndLines = edgeCount == 0 ? NO_USAGES_AND_LINES : Arrays.copyOf(edgeUsagesAndLines, edgeCount);
+    }
   }
 
   public void clearOutogingEdges() {
-    outgoingEdges.clear();
+    edgeTargets = NO_TARGETS;
+    edgeUsagesAndLines = NO_USAGES_AND_LINES;
+    edgeCount = 0;
   }
 
+  /**
+   * @return read-only view of the outgoing edges, whose elements are created on each access
+   */
   public Collection<AsmEdge> getOutgoingEdges() {
-    return outgoingEdges;
+    return new AbstractList<AsmEdge>() {
+      @Override
+      public AsmEdge get(int index) {
+        Preconditions.checkElementIndex(index, edgeCount);
+        return new AsmEdge(AsmResource.this, edgeTargets[index], edgeUsage(index), edgeUsagesAndLines[index] >> USAGE_BITS);
+      }
+
+      @Override
+      public int size() {
+        return edgeCount;
+      }
+    };
+  }
+
+  int edgeCount() {
+    return edgeCount;
+  }
+
+  AsmResource edgeTarget(int index) {
+    return edgeTargets[index];
+  }
+
+  SourceCodeEdgeUsage edgeUsage(int index) {
+    return USAGES[edgeUsagesAndLines[index] & USAGE_MASK];
   }
 
   public AsmClass getParent() {
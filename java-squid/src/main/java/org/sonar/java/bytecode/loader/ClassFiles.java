@@ -0,0 +1,67 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.bytecode.loader;
+
+import com.google.common.collect.Maps;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+public final class ClassFiles {
+
+  private static final String CLASS_SUFFIX = ".class";
+
+  private ClassFiles() {
+    // only static methods
+  }
+
+  /**
+   * Lists the class files of directories.
+   *
+   * @return class files by class key ("org/example/Foo"), a class of several directories being taken from the first one
+   */
+  public static Map<String, File> index(List<File> directories) {
+    Map<String, File> result = Maps.newHashMap();
+    for (File directory : directories) {
+      index(directory, "", result);
+    }
+    return result;
+  }
+
+  private static void index(File dir, String path, Map<String, File> result) {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      String name = file.getName();
+      if (file.isDirectory()) {
+        index(file, path + name + "/", result);
+      } else if (name.endsWith(CLASS_SUFFIX)) {
+        String classKey = path + name.substring(0, name.length() - CLASS_SUFFIX.length());
+        if (!result.containsKey(classKey)) {
+          result.put(classKey, file);
+        }
+      }
+    }
+  }
+
+}
@@ -19,6 +19,8 @@
  */
 package org.sonar.java.bytecode.loader;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import org.apache.commons.io.IOUtils;
 
 import java.io.File;
@@ -27,16 +29,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Set;
 
 class FileSystemLoader implements Loader {
 
   private File baseDir;
+  private final Set<String> classFiles;
 
   public FileSystemLoader(File baseDir) {
     if (baseDir == null) {
       throw new IllegalArgumentException("baseDir can't be null");
     }
     this.baseDir = baseDir;
+    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+    for (String classKey : ClassFiles.index(ImmutableList.of(baseDir)).keySet()) {
+      builder.add(classKey + ".class");
+    }
+    this.classFiles = builder.build();
   }
 
   @Override
@@ -55,6 +64,14 @@ class FileSystemLoader implements Loader {
     return null;
   }
 
+  /**
+   * @return class files of the directory, listed once when this loader is created
+   */
+  @Override
+  public Set<String> classFiles() {
+    return classFiles;
+  }
+
   @Override
   public byte[] loadBytes(String name) {
     if (baseDir == null) {
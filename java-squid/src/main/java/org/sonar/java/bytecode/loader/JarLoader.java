@@ -19,8 +19,9 @@
  */
 package org.sonar.java.bytecode.loader;
 
-import org.apache.commons.io.IOUtils;
+import com.google.common.collect.ImmutableSet;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -28,12 +29,16 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
-import java.util.jar.JarFile;
-import java.util.zip.ZipEntry;
+import java.util.Set;
 
+/**
+ * Loads resources of a JAR, which is memory-mapped and indexed once, see {@link MappedZipFile}.
+ */
 class JarLoader implements Loader {
 
-  private final JarFile jarFile;
+  private static final String CLASS_SUFFIX = ".class";
+
+  private final MappedZipFile zipFile;
   private final URL jarUrl;
 
   /**
@@ -44,7 +49,7 @@ class JarLoader implements Loader {
       throw new IllegalArgumentException("file can't be null");
     }
     try {
-      jarFile = new JarFile(file);
+      zipFile = new MappedZipFile(file);
       jarUrl = new URL("jar", "", -1, file.getAbsolutePath() + "!/");
     } catch (IOException e) {
       throw new IllegalStateException("Unable to open " + file.getAbsolutePath(), e);
@@ -53,10 +58,9 @@ class JarLoader implements Loader {
 
   @Override
   public URL findResource(String name) {
-    ZipEntry entry = jarFile.getEntry(name);
-    if (entry != null) {
+    if (zipFile.names().contains(name)) {
       try {
-        return new URL(jarUrl, name, new JarEntryHandler(entry));
+        return new URL(jarUrl, name, new JarEntryHandler(name));
       } catch (MalformedURLException e) {
         return null;
       }
@@ -66,38 +70,37 @@ class JarLoader implements Loader {
 
   @Override
   public byte[] loadBytes(String name) {
-    InputStream is = null;
     try {
-      ZipEntry entry = jarFile.getEntry(name);
-      if (entry == null) {
-        return null;
-      }
-      is = jarFile.getInputStream(entry);
-      return IOUtils.toByteArray(is);
+      return zipFile.read(name);
     } catch (IOException e) {
       // TODO Godin: not sure that we should silently ignore exception here,
       // e.g. it can be thrown if file corrupted
       return null;
-    } finally {
-      IOUtils.closeQuietly(is);
     }
   }
 
   @Override
-  public void close() {
-    try {
-      jarFile.close();
-    } catch (IOException e) {
-      // ignore
+  public Set<String> classFiles() {
+    ImmutableSet.Builder<String> classFiles = ImmutableSet.builder();
+    for (String name : zipFile.names()) {
+      if (name.endsWith(CLASS_SUFFIX)) {
+        classFiles.add(name);
+      }
     }
+    return classFiles.build();
+  }
+
+  @Override
+  public void close() {
+    zipFile.close();
   }
 
   private class JarEntryHandler extends URLStreamHandler {
 
-    private ZipEntry entry;
+    private final String name;
 
-    JarEntryHandler(ZipEntry entry) {
-      this.entry = entry;
+    JarEntryHandler(String name) {
+      this.name = name;
     }
 
     @Override
@@ -110,12 +113,20 @@ class JarLoader implements Loader {
 
         @Override
         public int getContentLength() {
-          return (int) entry.getSize();
+          try {
+            return (int) zipFile.size(name);
+          } catch (IOException e) {
+            return -1;
+          }
         }
 
         @Override
         public InputStream getInputStream() throws IOException {
-          return jarFile.getInputStream(entry);
+          byte[] bytes = zipFile.read(name);
+          if (bytes == null) {
+            throw new IOException("Entry " + name + " not found in " + jarUrl);
+          }
+          return new ByteArrayInputStream(bytes);
         }
       };
     }
@@ -19,7 +19,9 @@
  */
 package org.sonar.java.bytecode.loader;
 
+import javax.annotation.CheckForNull;
 import java.net.URL;
+import java.util.Set;
 
 /**
  * Specifies resource loading behavior.
@@ -46,6 +48,13 @@ interface Loader {
    */
   byte[] loadBytes(String name);
 
+  /**
+   * @return names of the class files of this loader ("java/lang/Object.class"), or <tt>null</tt> if they are not
+   *         known in advance, in which case this loader is queried for every class
+   */
+  @CheckForNull
+  Set<String> classFiles();
+
   /**
    * Closes this loader, so that it can no longer be used to load new resources.
    * If loader is already closed, then invoking this method has no effect.
@@ -0,0 +1,309 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.bytecode.loader;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+
+import javax.annotation.CheckForNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Read-only ZIP archive, which is memory-mapped so that its entries are read without going through the streams of
+ * {@link java.util.zip.ZipFile}. Central directory is read once, and only the offset of the record of each entry is kept.
+ * Stored and deflated entries are supported, as well as ZIP64 archives, as long as the archive is smaller than 2 GB.
+ * <p/>
+ * Entries can be read concurrently. No file descriptor is held once the archive is opened.
+ */
+class MappedZipFile {
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+  private static final int LOCAL_HEADER_LENGTH = 30;
+  private static final int CENTRAL_HEADER_LENGTH = 46;
+  private static final int END_LENGTH = 22;
+  private static final int ZIP64_LOCATOR_LENGTH = 20;
+  private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+  private final String path;
+  /**
+   * Offset of the central directory record of each entry, by name. Directories are not kept.
+   */
+  private final Map<String, Integer> centralHeaders;
+  private volatile ByteBuffer data;
+
+  /**
+   * @throws IOException if the file can't be read or is not a ZIP archive
+   */
+  MappedZipFile(File file) throws IOException {
+    path = file.getAbsolutePath();
+    if (file.length() > Integer.MAX_VALUE) {
+      throw new ZipException("ZIP archive larger than 2 GB: " + path);
+    }
+    data = map(file);
+    try {
+      centralHeaders = readCentralDirectory(data);
+    } catch (IndexOutOfBoundsException e) {
+      throw new ZipException("Corrupted ZIP archive: " + path);
+    }
+  }
+
+  private static ByteBuffer map(File file) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      // mapping stays valid after the channel is closed
+      return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length()).order(ByteOrder.LITTLE_ENDIAN);
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  private Map<String, Integer> readCentralDirectory(ByteBuffer buffer) throws ZipException {
+    int end = findEnd(buffer);
+    long count = unsignedShort(buffer, end + 10);
+    long position = unsignedInt(buffer, end + 16);
+    int locator = end - ZIP64_LOCATOR_LENGTH;
+    if ((count == 0xFFFF || position == ZIP64_MAGIC) && locator >= 0 && buffer.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+      int zip64End = checkedOffset(buffer.getLong(locator + 8));
+      if (buffer.getInt(zip64End) != ZIP64_END_SIGNATURE) {
+        throw new ZipException("Invalid ZIP64 end of central directory: " + path);
+      }
+      count = buffer.getLong(zip64End + 32);
+      position = buffer.getLong(zip64End + 48);
+    }
+    Map<String, Integer> result = Maps.newHashMapWithExpectedSize((int) Math.min(count, buffer.limit() / CENTRAL_HEADER_LENGTH));
+    int offset = checkedOffset(position);
+    for (long i = 0; i < count; i++) {
+      if (buffer.getInt(offset) != CENTRAL_HEADER_SIGNATURE) {
+        throw new ZipException("Invalid central directory of " + path);
+      }
+      int nameLength = unsignedShort(buffer, offset + 28);
+      String name = string(buffer, offset + CENTRAL_HEADER_LENGTH, nameLength);
+      if (!name.endsWith("/") && !result.containsKey(name)) {
+        result.put(name, offset);
+      }
+      offset += CENTRAL_HEADER_LENGTH + nameLength + unsignedShort(buffer, offset + 30) + unsignedShort(buffer, offset + 32);
+    }
+    return result;
+  }
+
+  /**
+   * End of central directory record is the last record of the archive, but may be followed by a comment.
+   */
+  private int findEnd(ByteBuffer buffer) throws ZipException {
+    int minOffset = Math.max(0, buffer.limit() - END_LENGTH - MAX_COMMENT_LENGTH);
+    for (int offset = buffer.limit() - END_LENGTH; offset >= minOffset; offset--) {
+      if (buffer.getInt(offset) == END_SIGNATURE) {
+        return offset;
+      }
+    }
+    throw new ZipException("Not a ZIP archive: " + path);
+  }
+
+  /**
+   * @return names of the entries of this archive, except directories
+   * @throws IllegalStateException if this archive has been closed
+   */
+  Set<String> names() {
+    checkNotClosed();
+    return Collections.unmodifiableSet(centralHeaders.keySet());
+  }
+
+  /**
+   * @return uncompressed size of the entry with the given name, or -1 if there's no such entry
+   * @throws IllegalStateException if this archive has been closed
+   */
+  long size(String name) throws IOException {
+    ByteBuffer buffer = checkNotClosed();
+    Integer centralHeader = centralHeaders.get(name);
+    return centralHeader == null ? -1 : new Entry(buffer, centralHeader).size;
+  }
+
+  /**
+   * @return uncompressed content of the entry with the given name, or null if there's no such entry
+   * @throws IOException if the entry is corrupted or compressed with an unsupported method
+   * @throws IllegalStateException if this archive has been closed
+   */
+  @CheckForNull
+  byte[] read(String name) throws IOException {
+    ByteBuffer buffer = checkNotClosed();
+    Integer centralHeader = centralHeaders.get(name);
+    if (centralHeader == null) {
+      return null;
+    }
+    try {
+      return read(buffer, name, new Entry(buffer, centralHeader));
+    } catch (IndexOutOfBoundsException e) {
+      throw new ZipException("Corrupted entry " + name + " of " + path);
+    }
+  }
+
+  private byte[] read(ByteBuffer buffer, String name, Entry entry) throws IOException {
+    int localHeader = checkedOffset(entry.localHeaderOffset);
+    if (buffer.getInt(localHeader) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException("Invalid local header of entry " + name + " of " + path);
+    }
+    int dataOffset = localHeader + LOCAL_HEADER_LENGTH + unsignedShort(buffer, localHeader + 26) + unsignedShort(buffer, localHeader + 28);
+    int compressedSize = checkedOffset(entry.compressedSize);
+    int size = checkedOffset(entry.size);
+    if (entry.method == STORED) {
+      return bytes(buffer, dataOffset, size, 0);
+    } else if (entry.method == DEFLATED) {
+      // inflater requires an extra byte when data is not wrapped with a ZLIB header
+      return inflate(bytes(buffer, dataOffset, compressedSize, 1), size, name);
+    }
+    throw new ZipException("Unsupported compression method " + entry.method + " of entry " + name + " of " + path);
+  }
+
+  private byte[] inflate(byte[] compressed, int size, String name) throws ZipException {
+    byte[] result = new byte[size];
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(compressed);
+      int length = 0;
+      while (length < size) {
+        int count = inflater.inflate(result, length, size - length);
+        if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+          throw new ZipException("Truncated entry " + name + " of " + path);
+        }
+        length += count;
+      }
+      return result;
+    } catch (DataFormatException e) {
+      throw new ZipException("Corrupted entry " + name + " of " + path + ": " + e.getMessage());
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Closes this archive, so that its entries can no longer be read.
+   * If archive is already closed, then invoking this method has no effect.
+   */
+  void close() {
+    data = null;
+  }
+
+  private ByteBuffer checkNotClosed() {
+    ByteBuffer buffer = data;
+    if (buffer == null) {
+      throw new IllegalStateException("zip file closed");
+    }
+    return buffer;
+  }
+
+  private int checkedOffset(long value) throws ZipException {
+    if (value < 0 || value > Integer.MAX_VALUE) {
+      throw new ZipException("Invalid offset or size " + value + " in " + path);
+    }
+    return (int) value;
+  }
+
+  private static byte[] bytes(ByteBuffer buffer, int offset, int length, int padding) {
+    byte[] result = new byte[length + padding];
+    // duplicate, so that concurrent reads don't share a position
+    ByteBuffer slice = buffer.duplicate();
+    ((Buffer) slice).position(offset);
+    slice.get(result, 0, length);
+    return result;
+  }
+
+  private static String string(ByteBuffer buffer, int offset, int length) {
+    return new String(bytes(buffer, offset, length, 0), Charsets.UTF_8);
+  }
+
+  private static int unsignedShort(ByteBuffer buffer, int offset) {
+    return buffer.getShort(offset) & 0xFFFF;
+  }
+
+  private static long unsignedInt(ByteBuffer buffer, int offset) {
+    return buffer.getInt(offset) & ZIP64_MAGIC;
+  }
+
+  /**
+   * Fields of a central directory record, whose sizes and offset are read from the ZIP64 extra field when they don't fit in
+   * 32 bits.
+   */
+  private static class Entry {
+    private final int method;
+    private long compressedSize;
+    private long size;
+    private long localHeaderOffset;
+
+    Entry(ByteBuffer buffer, int offset) {
+      method = unsignedShort(buffer, offset + 10);
+      compressedSize = unsignedInt(buffer, offset + 20);
+      size = unsignedInt(buffer, offset + 24);
+      localHeaderOffset = unsignedInt(buffer, offset + 42);
+      if (compressedSize == ZIP64_MAGIC || size == ZIP64_MAGIC || localHeaderOffset == ZIP64_MAGIC) {
+        int extraOffset = offset + CENTRAL_HEADER_LENGTH + unsignedShort(buffer, offset + 28);
+        readZip64Extra(buffer, extraOffset, extraOffset + unsignedShort(buffer, offset + 30));
+      }
+    }
+
+    private void readZip64Extra(ByteBuffer buffer, int start, int end) {
+      int offset = start;
+      while (offset + 4 <= end) {
+        int id = unsignedShort(buffer, offset);
+        int length = unsignedShort(buffer, offset + 2);
+        if (id == ZIP64_EXTRA_ID) {
+          // values are present only for the fields which don't fit in 32 bits, in this order
+          int value = offset + 4;
+          if (size == ZIP64_MAGIC) {
+            size = buffer.getLong(value);
+            value += 8;
+          }
+          if (compressedSize == ZIP64_MAGIC) {
+            compressedSize = buffer.getLong(value);
+            value += 8;
+          }
+          if (localHeaderOffset == ZIP64_MAGIC) {
+            localHeaderOffset = buffer.getLong(value);
+          }
+          return;
+        }
+        offset += 4 + length;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,342 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.bytecode.loader;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.IOUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Loads class files of a JAR from a persistent index, which contains for each class only its signatures: flags, super types,
+ * fields, methods, generic signatures, annotations and inner classes. Code and debug information are stripped.
+ * Such loader is thus suitable for the resolution of symbols, but not for the analysis of bytecode.
+ * <p/>
+ * Index is stored in a given directory, and rebuilt when path, size or last modification date of the JAR change.
+ * Once built, index is memory-mapped so that loading a class does not require to inflate an entry of the JAR.
+ * Other resources are loaded from the JAR itself.
+ */
+class SignatureIndexLoader implements Loader {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SignatureIndexLoader.class);
+
+  private static final int MAGIC = 0x4A534958;
+  /**
+   * Must be incremented on each change of the format or of the content of the index.
+   */
+  private static final int VERSION = 1;
+  private static final String CLASS_SUFFIX = ".class";
+
+  private final File jar;
+  private final URL indexUrl;
+  private final Map<String, Entry> entries;
+  private ByteBuffer data;
+  private JarLoader jarLoader;
+  private boolean closed = false;
+
+  /**
+   * @throws IllegalStateException if an I/O error has occurred
+   */
+  public SignatureIndexLoader(File jar, File indexDirectory) {
+    if (jar == null) {
+      throw new IllegalArgumentException("file can't be null");
+    }
+    this.jar = jar;
+    File indexFile = indexFile(jar, indexDirectory);
+    try {
+      if (!isUpToDate(indexFile, jar)) {
+        build(jar, indexFile);
+      }
+      data = map(indexFile);
+      entries = readEntries(data, jar);
+      indexUrl = new URL("jar", "", -1, jar.getAbsolutePath() + "!/");
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to index " + jar.getAbsolutePath(), e);
+    }
+  }
+
+  @Override
+  public URL findResource(String name) {
+    checkNotClosed();
+    final Entry entry = entries.get(name);
+    if (entry == null) {
+      return name.endsWith(CLASS_SUFFIX) ? null : jarLoader().findResource(name);
+    }
+    try {
+      return new URL(indexUrl, name, new URLStreamHandler() {
+        @Override
+        protected URLConnection openConnection(URL u) throws IOException {
+          return new URLConnection(u) {
+            @Override
+            public void connect() {
+              // nop
+            }
+
+            @Override
+            public int getContentLength() {
+              return entry.length;
+            }
+
+            @Override
+            public InputStream getInputStream() {
+              return new ByteArrayInputStream(bytes(entry));
+            }
+          };
+        }
+      });
+    } catch (MalformedURLException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public byte[] loadBytes(String name) {
+    checkNotClosed();
+    Entry entry = entries.get(name);
+    if (entry == null) {
+      return name.endsWith(CLASS_SUFFIX) ? null : jarLoader().loadBytes(name);
+    }
+    return bytes(entry);
+  }
+
+  @Override
+  public Set<String> classFiles() {
+    checkNotClosed();
+    return Collections.unmodifiableSet(entries.keySet());
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    data = null;
+    if (jarLoader != null) {
+      jarLoader.close();
+    }
+  }
+
+  private void checkNotClosed() {
+    if (closed) {
+      throw new IllegalStateException("index closed");
+    }
+  }
+
+  private JarLoader jarLoader() {
+    if (jarLoader == null) {
+      jarLoader = new JarLoader(jar);
+    }
+    return jarLoader;
+  }
+
+  private byte[] bytes(Entry entry) {
+    byte[] result = new byte[entry.length];
+    ByteBuffer buffer = data.duplicate();
+    ((Buffer) buffer).position(entry.offset);
+    buffer.get(result);
+    return result;
+  }
+
+  static File indexFile(File jar, File indexDirectory) {
+    String path = jar.getAbsolutePath();
+    return new File(indexDirectory, jar.getName() + "-" + Integer.toHexString(path.hashCode()) + ".idx");
+  }
+
+  private static boolean isUpToDate(File indexFile, File jar) {
+    if (!indexFile.isFile()) {
+      return false;
+    }
+    RandomAccessFile file = null;
+    try {
+      file = new RandomAccessFile(indexFile, "r");
+      return file.readInt() == MAGIC
+        && file.readInt() == VERSION
+        && file.readLong() == jar.length()
+        && file.readLong() == jar.lastModified()
+        && file.readUTF().equals(jar.getAbsolutePath());
+    } catch (IOException e) {
+      LOG.debug("Unable to read index " + indexFile.getAbsolutePath(), e);
+      return false;
+    } finally {
+      IOUtils.closeQuietly(file);
+    }
+  }
+
+  /**
+   * Index is written in a temporary file, which is then moved, so that concurrent analyses never read an incomplete index.
+   */
+  private static void build(File jar, File indexFile) throws IOException {
+    LOG.debug("Indexing signatures of " + jar.getAbsolutePath());
+    List<String> names = Lists.newArrayList();
+    List<byte[]> classes = Lists.newArrayList();
+    JarFile jarFile = new JarFile(jar);
+    try {
+      Enumeration<JarEntry> jarEntries = jarFile.entries();
+      while (jarEntries.hasMoreElements()) {
+        JarEntry jarEntry = jarEntries.nextElement();
+        if (!jarEntry.isDirectory() && jarEntry.getName().endsWith(CLASS_SUFFIX)) {
+          byte[] signatures = signatures(jarFile, jarEntry);
+          if (signatures != null) {
+            names.add(jarEntry.getName());
+            classes.add(signatures);
+          }
+        }
+      }
+    } finally {
+      jarFile.close();
+    }
+
+    File indexDirectory = indexFile.getParentFile();
+    if (!indexDirectory.isDirectory() && !indexDirectory.mkdirs()) {
+      throw new IOException("Unable to create directory " + indexDirectory.getAbsolutePath());
+    }
+    File tmpFile = File.createTempFile(indexFile.getName(), ".tmp", indexDirectory);
+    OutputStream outputStream = new FileOutputStream(tmpFile);
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(jar.length());
+      out.writeLong(jar.lastModified());
+      out.writeUTF(jar.getAbsolutePath());
+      out.writeInt(names.size());
+      for (int i = 0; i < names.size(); i++) {
+        out.writeUTF(names.get(i));
+        out.writeInt(classes.get(i).length);
+      }
+      for (byte[] bytes : classes) {
+        out.write(bytes);
+      }
+      out.flush();
+    } finally {
+      IOUtils.closeQuietly(outputStream);
+    }
+    try {
+      Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      if (tmpFile.exists() && !tmpFile.delete()) {
+        LOG.debug("Unable to delete " + tmpFile.getAbsolutePath());
+      }
+    }
+  }
+
+  @Nullable
+  private static byte[] signatures(JarFile jarFile, JarEntry jarEntry) throws IOException {
+    InputStream inputStream = jarFile.getInputStream(jarEntry);
+    try {
+      ClassReader classReader = new ClassReader(inputStream);
+      ClassWriter classWriter = new ClassWriter(0);
+      classReader.accept(classWriter, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+      return classWriter.toByteArray();
+    } catch (RuntimeException e) {
+      // not a valid class file
+      LOG.debug("Unable to read " + jarEntry.getName(), e);
+      return null;
+    } finally {
+      IOUtils.closeQuietly(inputStream);
+    }
+  }
+
+  private static MappedByteBuffer map(File indexFile) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+    try {
+      // mapping stays valid after the channel is closed
+      return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+    } finally {
+      file.close();
+    }
+  }
+
+  private static Map<String, Entry> readEntries(ByteBuffer data, File jar) throws IOException {
+    ByteBuffer buffer = data.duplicate();
+    // magic, version, size and last modification date have been checked by isUpToDate
+    ((Buffer) buffer).position(4 + 4 + 8 + 8);
+    readUTF(buffer);
+    int count = buffer.getInt();
+    String[] names = new String[count];
+    int[] lengths = new int[count];
+    for (int i = 0; i < count; i++) {
+      names[i] = readUTF(buffer);
+      lengths[i] = buffer.getInt();
+    }
+    Map<String, Entry> result = Maps.newHashMapWithExpectedSize(count);
+    int offset = buffer.position();
+    for (int i = 0; i < count; i++) {
+      result.put(names[i], new Entry(offset, lengths[i]));
+      offset += lengths[i];
+    }
+    if (offset != buffer.limit()) {
+      throw new IOException("Corrupted index of " + jar.getAbsolutePath());
+    }
+    return result;
+  }
+
+  /**
+   * Reads a string written by {@link DataOutputStream#writeUTF(String)}. Class names never use the special encodings of
+   * modified UTF-8 (null character and supplementary characters), so they can be decoded as standard UTF-8.
+   */
+  private static String readUTF(ByteBuffer buffer) {
+    int length = buffer.getShort() & 0xFFFF;
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  private static class Entry {
+    private final int offset;
+    private final int length;
+
+    Entry(int offset, int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+}
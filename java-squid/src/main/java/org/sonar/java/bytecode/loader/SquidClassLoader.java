@@ -20,6 +20,11 @@
 package org.sonar.java.bytecode.loader;
 
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
 
 import java.io.Closeable;
 import java.io.File;
@@ -28,18 +33,43 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Class loader, which is able to load classes from a list of JAR files and directories.
  */
 public class SquidClassLoader extends ClassLoader implements Closeable {
 
+  private static final Logger LOG = LoggerFactory.getLogger(SquidClassLoader.class);
+
+  private static final String CLASS_SUFFIX = ".class";
+
   private final List<Loader> loaders;
 
+  /**
+   * Position in {@link #loaders} of the first loader containing each class file, among the loaders whose class files are known
+   * in advance, so that looking a class up does not query every JAR of the classpath.
+   * Other loaders, at positions {@link #unindexedLoaders}, are queried for every class.
+   */
+  private final Map<String, Integer> loaderByClassFile = Maps.newHashMap();
+  private final List<Integer> unindexedLoaders = new ArrayList<Integer>();
+  private boolean closed = false;
+
   /**
    * @param files ordered list of files and directories from which to load classes and resources
    */
   public SquidClassLoader(List<File> files) {
+    this(files, null);
+  }
+
+  /**
+   * @param files ordered list of files and directories from which to load classes and resources
+   * @param signatureIndexDirectory if not null, classes of JAR files are loaded from persistent indexes stored in this directory,
+   *                                and contain only signatures, see {@link SignatureIndexLoader}. Such classes can be read as resources,
+   *                                but can't be defined by {@link #loadClass(String)}.
+   */
+  public SquidClassLoader(List<File> files, @Nullable File signatureIndexDirectory) {
     super(null);
     loaders = new ArrayList<Loader>();
     for (File file : files) {
@@ -47,16 +77,73 @@ public class SquidClassLoader extends ClassLoader implements Closeable {
         if (file.isDirectory()) {
           loaders.add(new FileSystemLoader(file));
         } else if (file.getName().endsWith(".jar")) {
-          loaders.add(new JarLoader(file));
+          loaders.add(createJarLoader(file, signatureIndexDirectory));
+        }
+      }
+    }
+    indexClassFiles();
+  }
+
+  private void indexClassFiles() {
+    for (int i = 0; i < loaders.size(); i++) {
+      Set<String> classFiles = loaders.get(i).classFiles();
+      if (classFiles == null) {
+        unindexedLoaders.add(i);
+      } else {
+        for (String classFile : classFiles) {
+          if (!loaderByClassFile.containsKey(classFile)) {
+            loaderByClassFile.put(classFile, i);
+          }
         }
       }
     }
   }
 
+  /**
+   * @return loaders which may contain the given resource, in classpath order, so that a class is looked up only in the first
+   *         JAR containing it and in the loaders which are not indexed
+   */
+  private List<Loader> loadersFor(String resourceName) {
+    checkNotClosed();
+    if (!resourceName.endsWith(CLASS_SUFFIX)) {
+      return loaders;
+    }
+    Integer indexedLoader = loaderByClassFile.get(resourceName);
+    List<Loader> result = new ArrayList<Loader>(unindexedLoaders.size() + 1);
+    for (int unindexedLoader : unindexedLoaders) {
+      if (indexedLoader != null && indexedLoader < unindexedLoader) {
+        result.add(loaders.get(indexedLoader));
+        indexedLoader = null;
+      }
+      result.add(loaders.get(unindexedLoader));
+    }
+    if (indexedLoader != null) {
+      result.add(loaders.get(indexedLoader));
+    }
+    return result;
+  }
+
+  private void checkNotClosed() {
+    if (closed) {
+      throw new IllegalStateException("Class loader closed");
+    }
+  }
+
+  private static Loader createJarLoader(File file, @Nullable File signatureIndexDirectory) {
+    if (signatureIndexDirectory != null) {
+      try {
+        return new SignatureIndexLoader(file, signatureIndexDirectory);
+      } catch (IllegalStateException e) {
+        LOG.warn("Unable to use index of signatures for " + file.getAbsolutePath() + ", classes will be read from the JAR", e);
+      }
+    }
+    return new JarLoader(file);
+  }
+
   @Override
   protected Class findClass(String name) throws ClassNotFoundException {
     String resourceName = name.replace('.', '/') + ".class";
-    for (Loader loader : loaders) {
+    for (Loader loader : loadersFor(resourceName)) {
       byte[] classBytes = loader.loadBytes(resourceName);
       if (classBytes != null) {
         // TODO Godin: definePackage ?
@@ -68,7 +155,7 @@ public class SquidClassLoader extends ClassLoader implements Closeable {
 
   @Override
   public URL findResource(String name) {
-    for (Loader loader : loaders) {
+    for (Loader loader : loadersFor(name)) {
       URL url = loader.findResource(name);
       if (url != null) {
         return url;
@@ -79,7 +166,9 @@ public class SquidClassLoader extends ClassLoader implements Closeable {
 
   @Override
   protected Enumeration<URL> findResources(String name) throws IOException {
+    checkNotClosed();
     List<URL> result = new ArrayList<URL>();
+    // only the first loader containing a class file is indexed, so all loaders are queried, but this method is seldom used
     for (Loader loader : loaders) {
       URL url = loader.findResource(name);
       if (url != null) {
@@ -93,10 +182,14 @@ public class SquidClassLoader extends ClassLoader implements Closeable {
    * Closes this class loader, so that it can no longer be used to load new classes or resources.
    * Any classes or resources that are already loaded, are still accessible.
    *
+   * Any classes or resources that are not already loaded can't be found anymore: attempts throw an <tt>IllegalStateException</tt>.
+   *
    * If class loader is already closed, then invoking this method has no effect.
    */
   @Override
   public void close() {
+    closed = true;
+    loaderByClassFile.clear();
     for (Loader loader : loaders) {
       loader.close();
     }
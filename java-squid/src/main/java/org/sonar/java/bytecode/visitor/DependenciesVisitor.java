@@ -28,11 +28,17 @@ import org.sonar.plugins.java.api.JavaResourceLocator;
 
 import javax.annotation.Nullable;
 
+/**
+ * Records the dependencies between files found in bytecode. They are only added to the graph by {@link #completeGraph()},
+ * along with the dependencies between packages.
+ */
 public class DependenciesVisitor extends BytecodeVisitor {
 
   @Nullable
   private Resource fromResource;
   private final DirectedGraph<Resource, Dependency> graph;
+  private final FileDependencies fileDependencies = new FileDependencies();
+  private int dependenciesInGraph = 0;
   private ResourceMapping resourceMapping;
 
   public DependenciesVisitor(DirectedGraph<Resource, Dependency> graph) {
@@ -54,32 +60,41 @@ public class DependenciesVisitor extends BytecodeVisitor {
   public void visitEdge(AsmEdge edge) {
     AsmClass toAsmClass = edge.getTargetAsmClass();
     Resource toResource = getResource(toAsmClass);
-    Dependency fileEdge = createDependency(fromResource, toResource, null);
-    if (fromResource != null && toResource != null) {
-      createDependency(fromResource.getParent(), toResource.getParent(), fileEdge);
+    if (canWeLinkNodes(fromResource, toResource)) {
+      fileDependencies.add(fromResource, toResource);
     }
   }
 
-
-  private Dependency createDependency(@Nullable Resource from, @Nullable Resource to, @Nullable Dependency subDependency) {
-    Dependency dependency = null;
-    if (canWeLinkNodes(from, to)) {
-      dependency = graph.getEdge(from, to);
-      if (dependency == null) {
-        dependency = new Dependency(from, to).setUsage("USES");
-        dependency.setWeight(1);
-        graph.addEdge(dependency);
-      }
-      if (subDependency != null && !resourceMapping.getSubDependencies(dependency).contains(subDependency)) {
-        resourceMapping.addSubDependency(dependency, subDependency);
-        dependency.setWeight(dependency.getWeight() + 1);
-        subDependency.setParent(dependency);
+  /**
+   * Adds the dependencies between files recorded since the last call to the graph. Each of them is a sub-dependency of the
+   * dependency between their packages, if any, whose weight is one plus the number of its sub-dependencies.
+   */
+  public void completeGraph() {
+    for (int i = dependenciesInGraph; i < fileDependencies.size(); i++) {
+      Resource from = fileDependencies.from(i);
+      Resource to = fileDependencies.to(i);
+      Dependency fileEdge = createDependency(from, to);
+      if (canWeLinkNodes(from.getParent(), to.getParent())) {
+        Dependency packageEdge = graph.getEdge(from.getParent(), to.getParent());
+        if (packageEdge == null) {
+          packageEdge = createDependency(from.getParent(), to.getParent());
+        }
+        resourceMapping.addSubDependency(packageEdge, fileEdge);
+        packageEdge.setWeight(packageEdge.getWeight() + 1);
+        fileEdge.setParent(packageEdge);
       }
     }
+    dependenciesInGraph = fileDependencies.size();
+  }
+
+  private Dependency createDependency(Resource from, Resource to) {
+    Dependency dependency = new Dependency(from, to).setUsage("USES");
+    dependency.setWeight(1);
+    graph.addEdge(dependency);
     return dependency;
   }
 
-  private boolean canWeLinkNodes(@Nullable Resource from, @Nullable Resource to) {
+  private static boolean canWeLinkNodes(@Nullable Resource from, @Nullable Resource to) {
     return from != null && to != null && !from.equals(to);
   }
 
@@ -0,0 +1,131 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.bytecode.visitor;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.api.resources.Resource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Distinct dependencies between files, in the order in which they are first recorded. Files are numbered, and dependencies are
+ * kept as pairs of numbers, deduplicated by an open-addressing hash set of the pairs packed in longs: recording a dependency
+ * takes constant time, whatever the number of dependencies of its files.
+ */
+class FileDependencies {
+
+  private static final long EMPTY = 0L;
+
+  private final Map<Resource, Integer> idsByFile = Maps.newHashMap();
+  private final List<Resource> files = Lists.newArrayList();
+
+  /**
+   * Hash set of the pairs, where a pair is never {@link #EMPTY} since a file never depends on itself.
+   */
+  private long[] pairs = new long[64];
+  private int[] froms = new int[16];
+  private int[] tos = new int[16];
+  private int size = 0;
+
+  /**
+   * @return true if this dependency was not already recorded
+   */
+  boolean add(Resource from, Resource to) {
+    int fromId = id(from);
+    int toId = id(to);
+    if (fromId == toId) {
+      throw new IllegalArgumentException("A file can't depend on itself: " + from);
+    }
+    if (!addPair(((long) fromId << 32) | toId)) {
+      return false;
+    }
+    if (size == froms.length) {
+      froms = Arrays.copyOf(froms, size * 2);
+      tos = Arrays.copyOf(tos, size * 2);
+    }
+    froms[size] = fromId;
+    tos[size] = toId;
+    size++;
+    return true;
+  }
+
+  int size() {
+    return size;
+  }
+
+  Resource from(int index) {
+    return files.get(froms[index]);
+  }
+
+  Resource to(int index) {
+    return files.get(tos[index]);
+  }
+
+  private int id(Resource file) {
+    Integer id = idsByFile.get(file);
+    if (id == null) {
+      id = files.size();
+      idsByFile.put(file, id);
+      files.add(file);
+    }
+    return id;
+  }
+
+  private boolean addPair(long pair) {
+    // table is kept at most half full
+    if (2 * (size + 1) > pairs.length) {
+      rehash(pairs.length * 2);
+    }
+    int mask = pairs.length - 1;
+    int slot = hash(pair) & mask;
+    while (pairs[slot] != EMPTY) {
+      if (pairs[slot] == pair) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    pairs[slot] = pair;
+    return true;
+  }
+
+  private void rehash(int capacity) {
+    long[] oldPairs = pairs;
+    pairs = new long[capacity];
+    int mask = capacity - 1;
+    for (long pair : oldPairs) {
+      if (pair != EMPTY) {
+        int slot = hash(pair) & mask;
+        while (pairs[slot] != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+        pairs[slot] = pair;
+      }
+    }
+  }
+
+  private static int hash(long pair) {
+    long mixed = pair * 0x9E3779B97F4A7C15L;
+    return (int) (mixed ^ (mixed >>> 32));
+  }
+
+}
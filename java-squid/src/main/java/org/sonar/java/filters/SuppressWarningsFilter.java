@@ -20,8 +20,6 @@
 package org.sonar.java.filters;
 
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.batch.IssueFilter;
 import org.sonar.api.issue.batch.IssueFilterChain;
@@ -41,45 +39,26 @@ import java.util.Map;
  */
 public class SuppressWarningsFilter implements IssueFilter {
 
-  private final Map<String, Multimap<Integer, String>> suppressWarningsLinesByResource = Maps.newHashMap();
+  private final Map<String, SuppressWarningsIndex> suppressWarningsByResource = Maps.newHashMap();
 
-  public void addComponent(String componentKey, Multimap<Integer, String> warningLines) {
-    suppressWarningsLinesByResource.put(componentKey, warningLines);
+  /**
+   * @param suppressWarnings ranges covered by each <code>@SuppressWarnings</code> annotation of the component
+   */
+  public void addComponent(String componentKey, Collection<SuppressWarningsRange> suppressWarnings) {
+    suppressWarningsByResource.put(componentKey, new SuppressWarningsIndex(suppressWarnings));
   }
 
   @Override
   public boolean accept(Issue issue, IssueFilterChain chain) {
-    for (String warning : getWarningsByLine(issue)) {
-      if (issueShouldNotBeReported(warning, issue)) {
-        return false;
-      }
-    }
-    return chain.accept(issue);
-  }
-
-  private Collection<String> getWarningsByLine(Issue issue) {
     Integer line = issue.line();
-    String componentKey = issue.componentKey();
-    if (line != null && suppressWarningsLinesByResource.containsKey(componentKey)) {
-      return suppressWarningsLinesByResource.get(componentKey).get(line);
-    }
-    return Sets.newTreeSet();
-  }
-
-  private boolean issueShouldNotBeReported(String warning, Issue issue) {
-    RuleKey ruleKey = issue.ruleKey();
-    return (warningIsRuleKey(warning, ruleKey) || "all".equals(warning)) && !isSuppressWarningRule(ruleKey);
-  }
-
-  private boolean warningIsRuleKey(String warning, RuleKey ruleKey) {
-    try {
-      return ruleKey.equals(RuleKey.parse(warning));
-    } catch (IllegalArgumentException e) {
+    SuppressWarningsIndex index = suppressWarningsByResource.get(issue.componentKey());
+    if (line != null && index != null && !isSuppressWarningRule(issue.ruleKey()) && index.suppresses(line, issue.ruleKey())) {
       return false;
     }
+    return chain.accept(issue);
   }
 
-  private boolean isSuppressWarningRule(RuleKey ruleKey) {
+  private static boolean isSuppressWarningRule(RuleKey ruleKey) {
     return "S1309".equals(ruleKey.rule());
   }
 }
@@ -0,0 +1,127 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.filters;
+
+import com.google.common.collect.ImmutableSet;
+import org.sonar.api.rule.RuleKey;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Set;
+
+/**
+ * Interval tree of the <code>@SuppressWarnings</code> annotations of a component, whose warnings are parsed once.
+ * Ranges are sorted by start line, and each node of the implicit balanced tree over this array holds the greatest end line
+ * of its subtree, so that the ranges covering a line are found in O(log n) without expanding them line by line.
+ */
+class SuppressWarningsIndex {
+
+  private static final Comparator<SuppressWarningsRange> BY_START_LINE = new Comparator<SuppressWarningsRange>() {
+    @Override
+    public int compare(SuppressWarningsRange range1, SuppressWarningsRange range2) {
+      return Integer.compare(range1.startLine(), range2.startLine());
+    }
+  };
+
+  private final int[] startLines;
+  private final int[] endLines;
+  private final int[] maxEndLines;
+  private final boolean[] suppressAll;
+  private final Set<RuleKey>[] suppressedRules;
+
+  @SuppressWarnings("unchecked")
+  SuppressWarningsIndex(Collection<SuppressWarningsRange> ranges) {
+    SuppressWarningsRange[] sortedRanges = ranges.toArray(new SuppressWarningsRange[ranges.size()]);
+    Arrays.sort(sortedRanges, BY_START_LINE);
+    int size = sortedRanges.length;
+    startLines = new int[size];
+    endLines = new int[size];
+    maxEndLines = new int[size];
+    suppressAll = new boolean[size];
+    suppressedRules = new Set[size];
+    for (int i = 0; i < size; i++) {
+      SuppressWarningsRange range = sortedRanges[i];
+      startLines[i] = range.startLine();
+      endLines[i] = range.endLine();
+      ImmutableSet.Builder<RuleKey> rules = ImmutableSet.builder();
+      for (String warning : range.warnings()) {
+        if ("all".equals(warning)) {
+          suppressAll[i] = true;
+        } else {
+          RuleKey ruleKey = parseRuleKey(warning);
+          if (ruleKey != null) {
+            rules.add(ruleKey);
+          }
+        }
+      }
+      suppressedRules[i] = rules.build();
+    }
+    computeMaxEndLines(0, size);
+  }
+
+  private static RuleKey parseRuleKey(String warning) {
+    try {
+      return RuleKey.parse(warning);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private int computeMaxEndLines(int from, int to) {
+    if (from >= to) {
+      return Integer.MIN_VALUE;
+    }
+    int middle = (from + to) >>> 1;
+    int max = Math.max(endLines[middle], Math.max(computeMaxEndLines(from, middle), computeMaxEndLines(middle + 1, to)));
+    maxEndLines[middle] = max;
+    return max;
+  }
+
+  /**
+   * @return true if a range covering the line suppresses all warnings or the given rule
+   */
+  boolean suppresses(int line, RuleKey ruleKey) {
+    return suppresses(0, startLines.length, line, ruleKey);
+  }
+
+  private boolean suppresses(int from, int to, int line, RuleKey ruleKey) {
+    if (from >= to) {
+      return false;
+    }
+    int middle = (from + to) >>> 1;
+    if (maxEndLines[middle] < line) {
+      // no range of this subtree ends after the line
+      return false;
+    }
+    if (suppresses(from, middle, line, ruleKey)) {
+      return true;
+    }
+    if (startLines[middle] > line) {
+      // this range and the ones of the right subtree start after the line
+      return false;
+    }
+    if (endLines[middle] >= line && (suppressAll[middle] || suppressedRules[middle].contains(ruleKey))) {
+      return true;
+    }
+    return suppresses(middle + 1, to, line, ruleKey);
+  }
+
+}
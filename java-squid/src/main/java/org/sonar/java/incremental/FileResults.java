@@ -0,0 +1,515 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.incremental;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.PersistenceMode;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.source.Highlightable;
+import org.sonar.api.source.Symbol;
+import org.sonar.api.source.Symbolizable;
+import org.sonar.java.LineSet;
+import org.sonar.java.SonarComponents;
+import org.sonar.java.filters.SuppressWarningsRange;
+import org.sonar.plugins.java.api.JavaCheck;
+import org.sonar.squidbridge.api.CheckMessage;
+import org.sonar.squidbridge.api.SourceFile;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything the analysis of a file produced, stored in the {@link ResultsCache} so that it can be replayed when the file
+ * is not analyzed again: lines data, highlighting, symbol table, measures, issues of AST checks, lines with NOSONAR tags,
+ * classes and methods declared by the file, and what is needed to know whether its dependencies changed.
+ */
+public class FileResults {
+
+  private final String path;
+  private final boolean test;
+  private final byte[] contentHash;
+
+  private byte[] signatureHash = new byte[0];
+  private final Set<String> declaredTypes = Sets.newHashSet();
+  private final Set<String> identifiers = Sets.newHashSet();
+
+  boolean linesSaved;
+  final List<LineValue> lineValues = Lists.newArrayList();
+  boolean highlighted;
+  final List<HighlightedText> highlightings = Lists.newArrayList();
+  boolean symbolized;
+  final List<SymbolReferences> symbols = Lists.newArrayList();
+  private final List<MeasureValue> measures = Lists.newArrayList();
+  private final List<Issue> issues = Lists.newArrayList();
+  private final LineSet noSonarLines = new LineSet();
+
+  private final List<String> classKeys = Lists.newArrayList();
+  private final Map<String, Integer> methodStartLines = Maps.newHashMap();
+  private final List<SuppressWarningsRange> suppressWarnings = Lists.newArrayList();
+
+  public FileResults(String path, boolean test, byte[] contentHash) {
+    this.path = path;
+    this.test = test;
+    this.contentHash = contentHash;
+  }
+
+  public String path() {
+    return path;
+  }
+
+  public boolean isTest() {
+    return test;
+  }
+
+  public byte[] contentHash() {
+    return contentHash;
+  }
+
+  /**
+   * Hash of the declarations of the file, bodies of methods and initializers excluded. Empty when unknown.
+   */
+  public byte[] signatureHash() {
+    return signatureHash;
+  }
+
+  /**
+   * Simple names of the types declared by the file.
+   */
+  public Set<String> declaredTypes() {
+    return declaredTypes;
+  }
+
+  /**
+   * Names of all the identifiers used by the file, which over-approximate the types it depends on.
+   */
+  public Set<String> identifiers() {
+    return identifiers;
+  }
+
+  public void setSignature(byte[] signatureHash, Collection<String> declaredTypes, Collection<String> identifiers) {
+    this.signatureHash = signatureHash;
+    this.declaredTypes.clear();
+    this.declaredTypes.addAll(declaredTypes);
+    this.identifiers.clear();
+    this.identifiers.addAll(identifiers);
+  }
+
+  public FileLinesContext record(FileLinesContext fileLinesContext) {
+    return new RecordingPerspectives.RecordingFileLinesContext(fileLinesContext, this);
+  }
+
+  public Highlightable record(Highlightable highlightable) {
+    return new RecordingPerspectives.RecordingHighlightable(highlightable, this);
+  }
+
+  public Symbolizable record(Symbolizable symbolizable) {
+    return new RecordingPerspectives.RecordingSymbolizable(symbolizable, this);
+  }
+
+  /**
+   * Saves again the lines data, highlighting and symbol table of the file, if they were saved by its analysis.
+   */
+  public void replayPerspectives(File file, SonarComponents sonarComponents) {
+    if (linesSaved) {
+      replayLines(sonarComponents.fileLinesContextFor(file));
+    }
+    if (highlighted) {
+      replayHighlighting(sonarComponents.highlightableFor(file));
+    }
+    if (symbolized) {
+      replaySymbols(sonarComponents.symbolizableFor(file));
+    }
+  }
+
+  private void replayLines(FileLinesContext fileLinesContext) {
+    for (LineValue lineValue : lineValues) {
+      if (lineValue.intValue != null) {
+        fileLinesContext.setIntValue(lineValue.metricKey, lineValue.line, lineValue.intValue);
+      } else {
+        fileLinesContext.setStringValue(lineValue.metricKey, lineValue.line, lineValue.stringValue);
+      }
+    }
+    fileLinesContext.save();
+  }
+
+  private void replayHighlighting(Highlightable highlightable) {
+    Highlightable.HighlightingBuilder highlighting = highlightable.newHighlighting();
+    for (HighlightedText highlightedText : highlightings) {
+      highlighting.highlight(highlightedText.startOffset, highlightedText.endOffset, highlightedText.typeOfText);
+    }
+    highlighting.done();
+  }
+
+  private void replaySymbols(Symbolizable symbolizable) {
+    Symbolizable.SymbolTableBuilder symbolTableBuilder = symbolizable.newSymbolTableBuilder();
+    for (SymbolReferences symbolReferences : symbols) {
+      Symbol symbol = symbolTableBuilder.newSymbol(symbolReferences.startOffset, symbolReferences.endOffset);
+      for (int reference : symbolReferences.references) {
+        symbolTableBuilder.newReference(symbol, reference);
+      }
+    }
+    symbolizable.setSymbolTable(symbolTableBuilder.build());
+  }
+
+  public void addMeasure(Measure measure) {
+    measures.add(new MeasureValue(measure.getMetricKey(), measure.getValue(), measure.getData(), measure.getPersistenceMode()));
+  }
+
+  /**
+   * @param metrics metrics of the measures, by key
+   */
+  public List<Measure> measures(Map<String, Metric> metrics) {
+    ImmutableList.Builder<Measure> result = ImmutableList.builder();
+    for (MeasureValue measureValue : measures) {
+      Metric metric = metrics.get(measureValue.metricKey);
+      if (metric == null) {
+        throw new IllegalStateException("Unknown metric: " + measureValue.metricKey);
+      }
+      Measure measure = new Measure(metric);
+      measure.setValue(measureValue.value);
+      measure.setData(measureValue.data);
+      measure.setPersistenceMode(measureValue.persistenceMode);
+      result.add(measure);
+    }
+    return result.build();
+  }
+
+  /**
+   * Records the issues and the lines with NOSONAR tags of a file, once all the AST checks have been executed.
+   */
+  public void recordIssues(SourceFile sourceFile, SonarComponents sonarComponents) {
+    issues.clear();
+    for (CheckMessage checkMessage : sourceFile.getCheckMessages()) {
+      RuleKey ruleKey = sonarComponents.ruleKey((JavaCheck) checkMessage.getCheck());
+      if (ruleKey == null) {
+        throw new IllegalStateException("Cannot find rule key for instance of " + checkMessage.getCheck().getClass());
+      }
+      issues.add(new Issue(ruleKey.toString(), checkMessage.getLine(), checkMessage.formatDefaultMessage(), checkMessage.getCost()));
+    }
+    noSonarLines.clear();
+    noSonarLines.addAll(new LineSet(sourceFile.getNoSonarTagLines()));
+  }
+
+  public void replayIssues(SourceFile sourceFile, SonarComponents sonarComponents) {
+    for (Issue issue : issues) {
+      JavaCheck check = sonarComponents.checkOf(RuleKey.parse(issue.ruleKey));
+      if (check != null) {
+        CheckMessage checkMessage = new CheckMessage(check, issue.message);
+        if (issue.line != null) {
+          checkMessage.setLine(issue.line);
+        }
+        if (issue.cost != null) {
+          checkMessage.setCost(issue.cost);
+        }
+        sourceFile.log(checkMessage);
+      }
+    }
+    sourceFile.addNoSonarTagLines(noSonarLines.toSet());
+  }
+
+  public void setClasses(Collection<String> classKeys, Map<String, Integer> methodStartLines, List<SuppressWarningsRange> suppressWarnings) {
+    this.classKeys.clear();
+    this.classKeys.addAll(classKeys);
+    this.methodStartLines.clear();
+    this.methodStartLines.putAll(methodStartLines);
+    this.suppressWarnings.clear();
+    this.suppressWarnings.addAll(suppressWarnings);
+  }
+
+  public List<String> classKeys() {
+    return classKeys;
+  }
+
+  public Map<String, Integer> methodStartLines() {
+    return methodStartLines;
+  }
+
+  public List<SuppressWarningsRange> suppressWarnings() {
+    return suppressWarnings;
+  }
+
+  void write(DataOutput out) throws IOException {
+    out.writeUTF(path);
+    out.writeBoolean(test);
+    writeBytes(out, contentHash);
+    writeBytes(out, signatureHash);
+    writeStrings(out, declaredTypes);
+    writeStrings(out, identifiers);
+
+    out.writeBoolean(linesSaved);
+    out.writeInt(lineValues.size());
+    for (LineValue lineValue : lineValues) {
+      out.writeUTF(lineValue.metricKey);
+      out.writeInt(lineValue.line);
+      writeNullableInt(out, lineValue.intValue);
+      writeNullableString(out, lineValue.stringValue);
+    }
+    out.writeBoolean(highlighted);
+    out.writeInt(highlightings.size());
+    for (HighlightedText highlightedText : highlightings) {
+      out.writeInt(highlightedText.startOffset);
+      out.writeInt(highlightedText.endOffset);
+      out.writeUTF(highlightedText.typeOfText);
+    }
+    out.writeBoolean(symbolized);
+    out.writeInt(symbols.size());
+    for (SymbolReferences symbolReferences : symbols) {
+      out.writeInt(symbolReferences.startOffset);
+      out.writeInt(symbolReferences.endOffset);
+      out.writeInt(symbolReferences.references.size());
+      for (int reference : symbolReferences.references) {
+        out.writeInt(reference);
+      }
+    }
+    out.writeInt(measures.size());
+    for (MeasureValue measureValue : measures) {
+      out.writeUTF(measureValue.metricKey);
+      writeNullableDouble(out, measureValue.value);
+      writeNullableString(out, measureValue.data);
+      out.writeUTF(measureValue.persistenceMode.name());
+    }
+    out.writeInt(issues.size());
+    for (Issue issue : issues) {
+      out.writeUTF(issue.ruleKey);
+      writeNullableInt(out, issue.line);
+      out.writeUTF(issue.message);
+      writeNullableDouble(out, issue.cost);
+    }
+    writeLines(out, noSonarLines);
+
+    writeStrings(out, classKeys);
+    out.writeInt(methodStartLines.size());
+    for (Map.Entry<String, Integer> entry : methodStartLines.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(entry.getValue());
+    }
+    out.writeInt(suppressWarnings.size());
+    for (SuppressWarningsRange range : suppressWarnings) {
+      out.writeInt(range.startLine());
+      out.writeInt(range.endLine());
+      writeStrings(out, range.warnings());
+    }
+  }
+
+  static FileResults read(DataInput in) throws IOException {
+    FileResults results = new FileResults(in.readUTF(), in.readBoolean(), readBytes(in));
+    results.signatureHash = readBytes(in);
+    results.declaredTypes.addAll(readStrings(in));
+    results.identifiers.addAll(readStrings(in));
+
+    results.linesSaved = in.readBoolean();
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      results.lineValues.add(new LineValue(in.readUTF(), in.readInt(), readNullableInt(in), readNullableString(in)));
+    }
+    results.highlighted = in.readBoolean();
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      results.highlightings.add(new HighlightedText(in.readInt(), in.readInt(), in.readUTF()));
+    }
+    results.symbolized = in.readBoolean();
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      SymbolReferences symbolReferences = new SymbolReferences(in.readInt(), in.readInt());
+      int references = in.readInt();
+      for (int j = 0; j < references; j++) {
+        symbolReferences.references.add(in.readInt());
+      }
+      results.symbols.add(symbolReferences);
+    }
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      results.measures.add(new MeasureValue(in.readUTF(), readNullableDouble(in), readNullableString(in), PersistenceMode.valueOf(in.readUTF())));
+    }
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      results.issues.add(new Issue(in.readUTF(), readNullableInt(in), in.readUTF(), readNullableDouble(in)));
+    }
+    readLines(in, results.noSonarLines);
+
+    results.classKeys.addAll(readStrings(in));
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      results.methodStartLines.put(in.readUTF(), in.readInt());
+    }
+    count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      results.suppressWarnings.add(new SuppressWarningsRange(in.readInt(), in.readInt(), readStrings(in)));
+    }
+    return results;
+  }
+
+  private static void writeLines(DataOutput out, LineSet lines) throws IOException {
+    out.writeInt(lines.count());
+    for (int line = lines.nextLine(0); line >= 0; line = lines.nextLine(line + 1)) {
+      out.writeInt(line);
+    }
+  }
+
+  private static void readLines(DataInput in, LineSet lines) throws IOException {
+    int count = in.readInt();
+    for (int i = 0; i < count; i++) {
+      lines.add(in.readInt());
+    }
+  }
+
+  private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static void writeStrings(DataOutput out, Collection<String> strings) throws IOException {
+    out.writeInt(strings.size());
+    for (String string : strings) {
+      out.writeUTF(string);
+    }
+  }
+
+  private static List<String> readStrings(DataInput in) throws IOException {
+    int count = in.readInt();
+    List<String> result = Lists.newArrayListWithCapacity(count);
+    for (int i = 0; i < count; i++) {
+      result.add(in.readUTF());
+    }
+    return result;
+  }
+
+  private static void writeNullableInt(DataOutput out, @Nullable Integer value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeInt(value);
+    }
+  }
+
+  @CheckForNull
+  private static Integer readNullableInt(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readInt() : null;
+  }
+
+  private static void writeNullableDouble(DataOutput out, @Nullable Double value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeDouble(value);
+    }
+  }
+
+  @CheckForNull
+  private static Double readNullableDouble(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readDouble() : null;
+  }
+
+  private static void writeNullableString(DataOutput out, @Nullable String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  @CheckForNull
+  private static String readNullableString(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  static class LineValue {
+    private final String metricKey;
+    private final int line;
+    private final Integer intValue;
+    private final String stringValue;
+
+    LineValue(String metricKey, int line, @Nullable Integer intValue, @Nullable String stringValue) {
+      this.metricKey = metricKey;
+      this.line = line;
+      this.intValue = intValue;
+      this.stringValue = stringValue;
+    }
+  }
+
+  static class HighlightedText {
+    private final int startOffset;
+    private final int endOffset;
+    private final String typeOfText;
+
+    HighlightedText(int startOffset, int endOffset, String typeOfText) {
+      this.startOffset = startOffset;
+      this.endOffset = endOffset;
+      this.typeOfText = typeOfText;
+    }
+  }
+
+  static class SymbolReferences {
+    private final int startOffset;
+    private final int endOffset;
+    final List<Integer> references = Lists.newArrayList();
+
+    SymbolReferences(int startOffset, int endOffset) {
+      this.startOffset = startOffset;
+      this.endOffset = endOffset;
+    }
+  }
+
+  private static class MeasureValue {
+    private final String metricKey;
+    private final Double value;
+    private final String data;
+    private final PersistenceMode persistenceMode;
+
+    MeasureValue(String metricKey, @Nullable Double value, @Nullable String data, PersistenceMode persistenceMode) {
+      this.metricKey = metricKey;
+      this.value = value;
+      this.data = data;
+      this.persistenceMode = persistenceMode;
+    }
+  }
+
+  private static class Issue {
+    private final String ruleKey;
+    private final Integer line;
+    private final String message;
+    private final Double cost;
+
+    Issue(String ruleKey, @Nullable Integer line, String message, @Nullable Double cost) {
+      this.ruleKey = ruleKey;
+      this.line = line;
+      this.message = message;
+      this.cost = cost;
+    }
+  }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.incremental;
+
+import com.google.common.collect.Maps;
+import org.sonar.api.component.Component;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.source.Highlightable;
+import org.sonar.api.source.Symbol;
+import org.sonar.api.source.Symbolizable;
+
+import java.util.Map;
+
+/**
+ * Decorators of the perspectives used to save lines data, highlighting and symbol tables, which record in a {@link FileResults}
+ * what is saved.
+ */
+final class RecordingPerspectives {
+
+  private RecordingPerspectives() {
+  }
+
+  static class RecordingFileLinesContext implements FileLinesContext {
+
+    private final FileLinesContext delegate;
+    private final FileResults results;
+
+    RecordingFileLinesContext(FileLinesContext delegate, FileResults results) {
+      this.delegate = delegate;
+      this.results = results;
+    }
+
+    @Override
+    public void setIntValue(String metricKey, int line, int value) {
+      delegate.setIntValue(metricKey, line, value);
+      results.lineValues.add(new FileResults.LineValue(metricKey, line, value, null));
+    }
+
+    @Override
+    public Integer getIntValue(String metricKey, int line) {
+      return delegate.getIntValue(metricKey, line);
+    }
+
+    @Override
+    public void setStringValue(String metricKey, int line, String value) {
+      delegate.setStringValue(metricKey, line, value);
+      results.lineValues.add(new FileResults.LineValue(metricKey, line, null, value));
+    }
+
+    @Override
+    public String getStringValue(String metricKey, int line) {
+      return delegate.getStringValue(metricKey, line);
+    }
+
+    @Override
+    public void save() {
+      delegate.save();
+      results.linesSaved = true;
+    }
+  }
+
+  static class RecordingHighlightable implements Highlightable {
+
+    private final Highlightable delegate;
+    private final FileResults results;
+
+    RecordingHighlightable(Highlightable delegate, FileResults results) {
+      this.delegate = delegate;
+      this.results = results;
+    }
+
+    @Override
+    public HighlightingBuilder newHighlighting() {
+      final HighlightingBuilder builder = delegate.newHighlighting();
+      results.highlightings.clear();
+      return new HighlightingBuilder() {
+        @Override
+        public HighlightingBuilder highlight(int startOffset, int endOffset, String typeOfText) {
+          builder.highlight(startOffset, endOffset, typeOfText);
+          results.highlightings.add(new FileResults.HighlightedText(startOffset, endOffset, typeOfText));
+          return this;
+        }
+
+        @Override
+        public void done() {
+          builder.done();
+          results.highlighted = true;
+        }
+      };
+    }
+
+    @Override
+    public Component component() {
+      return delegate.component();
+    }
+  }
+
+  static class RecordingSymbolizable implements Symbolizable {
+
+    private final Symbolizable delegate;
+    private final FileResults results;
+
+    RecordingSymbolizable(Symbolizable delegate, FileResults results) {
+      this.delegate = delegate;
+      this.results = results;
+    }
+
+    @Override
+    public SymbolTableBuilder newSymbolTableBuilder() {
+      final SymbolTableBuilder builder = delegate.newSymbolTableBuilder();
+      final Map<Symbol, FileResults.SymbolReferences> references = Maps.newIdentityHashMap();
+      results.symbols.clear();
+      return new SymbolTableBuilder() {
+        @Override
+        public Symbol newSymbol(int fromOffset, int toOffset) {
+          Symbol symbol = builder.newSymbol(fromOffset, toOffset);
+          FileResults.SymbolReferences symbolReferences = new FileResults.SymbolReferences(fromOffset, toOffset);
+          references.put(symbol, symbolReferences);
+          results.symbols.add(symbolReferences);
+          return symbol;
+        }
+
+        @Override
+        public void newReference(Symbol symbol, int fromOffset) {
+          builder.newReference(symbol, fromOffset);
+          references.get(symbol).references.add(fromOffset);
+        }
+
+        @Override
+        public SymbolTable build() {
+          return builder.build();
+        }
+      };
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable symbolTable) {
+      delegate.setSymbolTable(symbolTable);
+      results.symbolized = true;
+    }
+
+    @Override
+    public Component component() {
+      return delegate.component();
+    }
+  }
+
+}
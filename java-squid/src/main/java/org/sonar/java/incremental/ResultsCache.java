@@ -0,0 +1,307 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.incremental;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.impl.Parser;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.java.ast.parser.JavaParser;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.sslr.parser.LexerlessGrammar;
+
+import javax.annotation.CheckForNull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Results of the previous analysis of each file, used to analyze only the files which changed, or which depend on a file
+ * whose declarations changed. Results of other files are replayed.
+ * <p/>
+ * A file is unchanged when its content hash is the one of the previous analysis. Cache is discarded as a whole when its
+ * fingerprint, which must cover everything else which can change the results (rules and their parameters, classpath,
+ * settings, version of the analyzer), differs.
+ * <p/>
+ * Changed files which were already analyzed are parsed before the analysis, to compare their declarations with the
+ * previous ones. Dependencies are tracked by names: an unchanged file is analyzed again when one of its identifiers is
+ * the name of a type declared by a file whose declarations changed, or by a file which is itself analyzed again.
+ */
+public class ResultsCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ResultsCache.class);
+
+  private static final int MAGIC = 0x4A535243;
+  /**
+   * Must be incremented on each change of the format or of the content of the cache.
+   */
+  private static final int VERSION = 3;
+
+  private final File cacheFile;
+  private final byte[] fingerprint;
+  private final Charset charset;
+  private final Map<String, FileResults> previousResults;
+  private final Map<String, FileResults> results = Maps.newLinkedHashMap();
+  private final Map<String, FileResults> recording = Maps.newHashMap();
+
+  /**
+   * @param fingerprint everything which can change the results of the analysis, except the content of the files
+   */
+  public ResultsCache(File cacheFile, String fingerprint, Charset charset) {
+    this.cacheFile = cacheFile;
+    this.fingerprint = digest(fingerprint.getBytes(Charsets.UTF_8));
+    this.charset = charset;
+    this.previousResults = load(cacheFile, this.fingerprint);
+  }
+
+  /**
+   * Determines the files to analyze. Must be called once, with all the files of the analysis, before any of them is scanned.
+   */
+  public void computeChanges(Iterable<File> sourceFiles, Iterable<File> testFiles) {
+    List<FileResults> changed = Lists.newArrayList();
+    Map<String, FileResults> unchanged = Maps.newLinkedHashMap();
+    computeHashes(sourceFiles, false, changed, unchanged);
+    computeHashes(testFiles, true, changed, unchanged);
+
+    if (!unchanged.isEmpty()) {
+      Set<String> changedTypes = Sets.newHashSet();
+      for (FileResults previous : previousResults.values()) {
+        if (!results.containsKey(previous.path())) {
+          // deleted file
+          changedTypes.addAll(previous.declaredTypes());
+        }
+      }
+      Parser<LexerlessGrammar> parser = JavaParser.createParser(charset);
+      for (FileResults fileResults : changed) {
+        changedTypes.addAll(changedTypes(parser, fileResults));
+      }
+      invalidateDependencies(unchanged, changedTypes);
+    }
+    for (Map.Entry<String, FileResults> entry : results.entrySet()) {
+      FileResults fileResults = entry.getValue();
+      if (!unchanged.containsKey(entry.getKey())) {
+        if (fileResults == previousResults.get(entry.getKey())) {
+          // unchanged file which depends on a changed one
+          fileResults = new FileResults(fileResults.path(), fileResults.isTest(), fileResults.contentHash());
+          entry.setValue(fileResults);
+        }
+        recording.put(entry.getKey(), fileResults);
+      }
+    }
+    previousResults.clear();
+    LOG.info(unchanged.size() + "/" + results.size() + " files are unchanged, their results are replayed");
+  }
+
+  private void computeHashes(Iterable<File> files, boolean test, List<FileResults> changed, Map<String, FileResults> unchanged) {
+    for (File file : files) {
+      String path = file.getAbsolutePath();
+      byte[] contentHash = contentHash(file);
+      FileResults previous = previousResults.get(path);
+      if (previous != null && previous.isTest() == test && Arrays.equals(previous.contentHash(), contentHash)) {
+        unchanged.put(path, previous);
+        results.put(path, previous);
+      } else {
+        FileResults fileResults = new FileResults(path, test, contentHash);
+        changed.add(fileResults);
+        results.put(path, fileResults);
+      }
+    }
+  }
+
+  /**
+   * @return names of the types whose declarations may have changed with the content of the file
+   */
+  private Set<String> changedTypes(Parser<LexerlessGrammar> parser, FileResults fileResults) {
+    FileResults previous = previousResults.get(fileResults.path());
+    Set<String> changedTypes = Sets.newHashSet();
+    if (previous != null) {
+      changedTypes.addAll(previous.declaredTypes());
+    }
+    try {
+      AstNode tree = parser.parse(new File(fileResults.path()));
+      SignatureVisitor.computeSignature((CompilationUnitTree) tree, fileResults);
+    } catch (RuntimeException e) {
+      // will be reported by the analysis
+      LOG.debug("Unable to parse " + fileResults.path(), e);
+      return changedTypes;
+    }
+    if (previous == null || previous.signatureHash().length == 0 || !Arrays.equals(previous.signatureHash(), fileResults.signatureHash())) {
+      changedTypes.addAll(fileResults.declaredTypes());
+    } else {
+      changedTypes.clear();
+    }
+    return changedTypes;
+  }
+
+  private static void invalidateDependencies(Map<String, FileResults> unchanged, Set<String> changedTypes) {
+    boolean invalidated = true;
+    while (invalidated) {
+      invalidated = false;
+      for (FileResults fileResults : Lists.newArrayList(unchanged.values())) {
+        if (!Collections.disjoint(fileResults.identifiers(), changedTypes)) {
+          unchanged.remove(fileResults.path());
+          changedTypes.addAll(fileResults.declaredTypes());
+          invalidated = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return false if the file must be analyzed
+   */
+  public boolean isUnchanged(File file) {
+    String path = file.getAbsolutePath();
+    return results.containsKey(path) && !recording.containsKey(path);
+  }
+
+  /**
+   * @return results of an unchanged file, to be replayed
+   */
+  public FileResults resultsFor(File file) {
+    FileResults fileResults = results.get(file.getAbsolutePath());
+    if (fileResults == null || !isUnchanged(file)) {
+      throw new IllegalStateException("No results to replay for " + file.getAbsolutePath());
+    }
+    return fileResults;
+  }
+
+  /**
+   * @return results in which the analysis of the file must be recorded, or null if the file is not analyzed
+   */
+  @CheckForNull
+  public FileResults recordingFor(File file) {
+    return recording.get(file.getAbsolutePath());
+  }
+
+  /**
+   * Saves the results of all the files of this analysis. Files which are not part of this analysis are forgotten.
+   */
+  public void save() {
+    File directory = cacheFile.getAbsoluteFile().getParentFile();
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Unable to create directory " + directory.getAbsolutePath());
+      }
+      File tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", directory);
+      try {
+        write(tmpFile);
+        java.nio.file.Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        if (tmpFile.exists() && !tmpFile.delete()) {
+          LOG.debug("Unable to delete " + tmpFile.getAbsolutePath());
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to save results of the analysis in " + cacheFile.getAbsolutePath(), e);
+    }
+  }
+
+  private void write(File file) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(fingerprint.length);
+      out.write(fingerprint);
+      out.writeInt(results.size());
+      for (FileResults fileResults : results.values()) {
+        fileResults.write(out);
+      }
+      out.close();
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  private static Map<String, FileResults> load(File cacheFile, byte[] fingerprint) {
+    Map<String, FileResults> result = Maps.newHashMap();
+    if (!cacheFile.isFile()) {
+      return result;
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        LOG.info("Results of previous analysis are ignored, as they have been stored by another version");
+        return result;
+      }
+      byte[] previousFingerprint = new byte[in.readInt()];
+      in.readFully(previousFingerprint);
+      if (!Arrays.equals(fingerprint, previousFingerprint)) {
+        LOG.info("Results of previous analysis are ignored, as rules, classpath or settings changed");
+        return result;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        FileResults fileResults = FileResults.read(in);
+        result.put(fileResults.path(), fileResults);
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to read results of previous analysis from " + cacheFile.getAbsolutePath(), e);
+      result.clear();
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    return result;
+  }
+
+  private static byte[] contentHash(File file) {
+    try {
+      return Files.getDigest(file, newDigest());
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static byte[] digest(byte[] bytes) {
+    return newDigest().digest(bytes);
+  }
+
+  static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+}
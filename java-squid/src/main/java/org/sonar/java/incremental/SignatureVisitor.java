@@ -0,0 +1,128 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.incremental;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.sonar.sslr.api.AstNode;
+import org.sonar.java.ast.parser.JavaLexer;
+import org.sonar.plugins.java.api.JavaFileScanner;
+import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.tree.BaseTreeVisitor;
+import org.sonar.plugins.java.api.tree.BlockTree;
+import org.sonar.plugins.java.api.tree.ClassTree;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.IdentifierTree;
+import org.sonar.plugins.java.api.tree.MethodTree;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import java.security.MessageDigest;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Records in the {@link ResultsCache} the signature of each analyzed file: the types it declares, the identifiers it uses,
+ * and a hash of its tokens outside of the bodies of methods and initializers. A file whose content changed without
+ * changing this hash can't change the results of the files which use it.
+ */
+public class SignatureVisitor implements JavaFileScanner {
+
+  private final ResultsCache resultsCache;
+
+  public SignatureVisitor(ResultsCache resultsCache) {
+    this.resultsCache = resultsCache;
+  }
+
+  @Override
+  public void scanFile(JavaFileScannerContext context) {
+    FileResults results = resultsCache.recordingFor(context.getFile());
+    if (results != null) {
+      computeSignature(context.getTree(), results);
+    }
+  }
+
+  static void computeSignature(CompilationUnitTree tree, FileResults results) {
+    NamesCollector namesCollector = new NamesCollector();
+    tree.accept(namesCollector);
+    results.setSignature(signatureHash((AstNode) tree, namesCollector.bodies), namesCollector.declaredTypes, namesCollector.identifiers);
+  }
+
+  private static byte[] signatureHash(AstNode compilationUnit, Set<Tree> bodies) {
+    MessageDigest digest = ResultsCache.newDigest();
+    Deque<AstNode> nodes = Lists.newLinkedList();
+    nodes.push(compilationUnit);
+    while (!nodes.isEmpty()) {
+      AstNode node = nodes.pop();
+      if (bodies.contains(node) || node.is(JavaLexer.SPACING)) {
+        continue;
+      }
+      if (node.hasChildren()) {
+        List<AstNode> children = node.getChildren();
+        for (int i = children.size() - 1; i >= 0; i--) {
+          nodes.push(children.get(i));
+        }
+      } else if (node.hasToken()) {
+        digest.update(node.getTokenValue().getBytes(Charsets.UTF_8));
+        digest.update((byte) 0);
+      }
+    }
+    return digest.digest();
+  }
+
+  private static class NamesCollector extends BaseTreeVisitor {
+
+    private final Set<String> declaredTypes = Sets.newHashSet();
+    private final Set<String> identifiers = Sets.newHashSet();
+    private final Set<Tree> bodies = Sets.newIdentityHashSet();
+
+    @Override
+    public void visitClass(ClassTree tree) {
+      if (tree.simpleName() != null) {
+        declaredTypes.add(tree.simpleName().name());
+      }
+      super.visitClass(tree);
+    }
+
+    @Override
+    public void visitMethod(MethodTree tree) {
+      if (tree.block() != null) {
+        bodies.add(tree.block());
+      }
+      super.visitMethod(tree);
+    }
+
+    @Override
+    public void visitBlock(BlockTree tree) {
+      if (tree.is(Tree.Kind.INITIALIZER, Tree.Kind.STATIC_INITIALIZER)) {
+        bodies.add(tree);
+      }
+      super.visitBlock(tree);
+    }
+
+    @Override
+    public void visitIdentifier(IdentifierTree tree) {
+      identifiers.add(tree.name());
+      super.visitIdentifier(tree);
+    }
+  }
+
+}
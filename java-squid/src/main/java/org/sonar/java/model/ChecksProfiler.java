@@ -0,0 +1,299 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.model;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.plugins.java.api.JavaFileScanner;
+import org.sonar.plugins.java.api.JavaFileScannerContext;
+
+import javax.annotation.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Measures wall time, CPU time and allocated bytes of each {@link JavaFileScanner} executed by {@link VisitorsBridge}, in
+ * total and for the files on which it was the slowest. CPU time and allocated bytes are -1 when the JVM can't measure them.
+ * Scanners are executed sequentially on a thread, so that what is measured on this thread is what the scanner consumed.
+ */
+public class ChecksProfiler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ChecksProfiler.class);
+
+  private static final int SLOWEST_FILES = 10;
+
+  private static final Ordering<Measure> BY_WALL_TIME = new Ordering<Measure>() {
+    @Override
+    public int compare(Measure left, Measure right) {
+      return Long.compare(left.wallTime, right.wallTime);
+    }
+  };
+
+  private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+  private final boolean cpuTimeSupported;
+  private final Method allocatedBytesMethod;
+  private final boolean allocatedBytesSupported;
+  private final Map<String, CheckProfile> profiles = Maps.newHashMap();
+
+  public ChecksProfiler() {
+    this(true, true);
+  }
+
+  /**
+   * For tests, to simulate a JVM which can't measure CPU time or allocated bytes.
+   */
+  @VisibleForTesting
+  ChecksProfiler(boolean measureCpuTime, boolean measureAllocatedBytes) {
+    cpuTimeSupported = measureCpuTime && threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+    allocatedBytesMethod = measureAllocatedBytes ? allocatedBytesMethod(threadMXBean) : null;
+    allocatedBytesSupported = allocatedBytesMethod != null;
+  }
+
+  /**
+   * Allocated bytes are only available from the extension of {@link ThreadMXBean} by HotSpot, which is not part of the Java API.
+   */
+  @CheckForNull
+  private static Method allocatedBytesMethod(ThreadMXBean threadMXBean) {
+    try {
+      Class<?> hotSpotThreadMXBean = Class.forName("com.sun.management.ThreadMXBean");
+      if (hotSpotThreadMXBean.isInstance(threadMXBean)
+        && (Boolean) hotSpotThreadMXBean.getMethod("isThreadAllocatedMemorySupported").invoke(threadMXBean)
+        && (Boolean) hotSpotThreadMXBean.getMethod("isThreadAllocatedMemoryEnabled").invoke(threadMXBean)) {
+        return hotSpotThreadMXBean.getMethod("getThreadAllocatedBytes", long.class);
+      }
+    } catch (ReflectiveOperationException e) {
+      LOG.debug("Allocated bytes can't be measured", e);
+    }
+    return null;
+  }
+
+  public void scanFile(JavaFileScanner scanner, JavaFileScannerContext context) {
+    long threadId = Thread.currentThread().getId();
+    long cpuTime = cpuTime();
+    long allocatedBytes = allocatedBytes(threadId);
+    long wallTime = System.nanoTime();
+    try {
+      scanner.scanFile(context);
+    } finally {
+      wallTime = System.nanoTime() - wallTime;
+      cpuTime = cpuTimeSupported ? cpuTime() - cpuTime : -1;
+      allocatedBytes = allocatedBytesSupported ? allocatedBytes(threadId) - allocatedBytes : -1;
+      profileOf(scanner).add(new Measure(context.getFile().getPath(), wallTime, cpuTime, allocatedBytes));
+    }
+  }
+
+  private long cpuTime() {
+    return cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : -1;
+  }
+
+  private long allocatedBytes(long threadId) {
+    if (!allocatedBytesSupported) {
+      return -1;
+    }
+    try {
+      return (Long) allocatedBytesMethod.invoke(threadMXBean, threadId);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private synchronized CheckProfile profileOf(JavaFileScanner scanner) {
+    String name = scanner.getClass().getName();
+    CheckProfile profile = profiles.get(name);
+    if (profile == null) {
+      profile = new CheckProfile(name);
+      profiles.put(name, profile);
+    }
+    return profile;
+  }
+
+  /**
+   * @return profiles of all the scanners, the slowest first
+   */
+  public synchronized List<CheckProfile> profiles() {
+    List<CheckProfile> result = Lists.newArrayList(profiles.values());
+    Collections.sort(result, new Comparator<CheckProfile>() {
+      @Override
+      public int compare(CheckProfile left, CheckProfile right) {
+        return BY_WALL_TIME.compare(right.total, left.total);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * @return human readable report, the slowest scanners first, with "n/a" for the measures the JVM can't provide
+   */
+  public String report() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("%12s %12s %12s %8s  %s%n", "wall (ms)", "CPU (ms)", "alloc (MB)", "files", "scanner (slowest file)"));
+    for (CheckProfile profile : profiles()) {
+      Measure total = profile.total;
+      long allocatedMegabytes = total.allocatedBytes < 0 ? -1 : (total.allocatedBytes / (1024 * 1024));
+      sb.append(String.format("%12d %12s %12s %8d  %s", millis(total.wallTime), orNotAvailable(millis(total.cpuTime)), orNotAvailable(allocatedMegabytes),
+        profile.files, profile.name));
+      List<Measure> slowestFiles = profile.slowestFiles();
+      if (!slowestFiles.isEmpty()) {
+        sb.append(String.format(" (%s: %d ms)", slowestFiles.get(0).file, millis(slowestFiles.get(0).wallTime)));
+      }
+      sb.append(String.format("%n"));
+    }
+    return sb.toString();
+  }
+
+  private static long millis(long nanos) {
+    return nanos < 0 ? -1 : nanos / 1000000;
+  }
+
+  private static String orNotAvailable(long value) {
+    return value < 0 ? "n/a" : Long.toString(value);
+  }
+
+  public void writeJson(File file) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"checks\":[");
+    boolean firstProfile = true;
+    for (CheckProfile profile : profiles()) {
+      if (!firstProfile) {
+        sb.append(',');
+      }
+      firstProfile = false;
+      sb.append("{\"check\":");
+      appendString(sb, profile.name);
+      sb.append(",\"files\":").append(profile.files).append(',');
+      appendMeasure(sb, profile.total);
+      sb.append(",\"slowestFiles\":[");
+      boolean firstFile = true;
+      for (Measure measure : profile.slowestFiles()) {
+        if (!firstFile) {
+          sb.append(',');
+        }
+        firstFile = false;
+        sb.append("{\"file\":");
+        appendString(sb, measure.file);
+        sb.append(',');
+        appendMeasure(sb, measure);
+        sb.append('}');
+      }
+      sb.append("]}");
+    }
+    sb.append("]}");
+    Files.createParentDirs(file);
+    Files.write(sb, file, Charsets.UTF_8);
+  }
+
+  private static void appendMeasure(StringBuilder sb, Measure measure) {
+    sb.append("\"wallTimeNanos\":").append(measure.wallTime)
+      .append(",\"cpuTimeNanos\":").append(measure.cpuTime)
+      .append(",\"allocatedBytes\":").append(measure.allocatedBytes);
+  }
+
+  private static void appendString(StringBuilder sb, String value) {
+    sb.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < ' ') {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    sb.append('"');
+  }
+
+  public static class CheckProfile {
+
+    private final String name;
+    private final Measure total;
+    private int files;
+    private final PriorityQueue<Measure> slowestFiles = new PriorityQueue<Measure>(SLOWEST_FILES + 1, BY_WALL_TIME);
+
+    CheckProfile(String name) {
+      this.name = name;
+      this.total = new Measure(null, 0, 0, 0);
+    }
+
+    void add(Measure measure) {
+      files++;
+      total.wallTime += measure.wallTime;
+      total.cpuTime = measure.cpuTime < 0 ? -1 : (total.cpuTime + measure.cpuTime);
+      total.allocatedBytes = measure.allocatedBytes < 0 ? -1 : (total.allocatedBytes + measure.allocatedBytes);
+      slowestFiles.add(measure);
+      if (slowestFiles.size() > SLOWEST_FILES) {
+        slowestFiles.poll();
+      }
+    }
+
+    public String name() {
+      return name;
+    }
+
+    public int files() {
+      return files;
+    }
+
+    public long wallTimeNanos() {
+      return total.wallTime;
+    }
+
+    public long cpuTimeNanos() {
+      return total.cpuTime;
+    }
+
+    public long allocatedBytes() {
+      return total.allocatedBytes;
+    }
+
+    List<Measure> slowestFiles() {
+      return BY_WALL_TIME.reverse().sortedCopy(slowestFiles);
+    }
+  }
+
+  private static class Measure {
+    private final String file;
+    private long wallTime;
+    private long cpuTime;
+    private long allocatedBytes;
+
+    Measure(String file, long wallTime, long cpuTime, long allocatedBytes) {
+      this.file = file;
+      this.wallTime = wallTime;
+      this.cpuTime = cpuTime;
+      this.allocatedBytes = allocatedBytes;
+    }
+  }
+
+}
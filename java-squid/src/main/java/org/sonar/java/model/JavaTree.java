@@ -28,6 +28,7 @@ import org.sonar.java.ast.parser.AstNodeReflector;
 import org.sonar.java.ast.parser.TypeUnionListTreeImpl;
 import org.sonar.java.model.declaration.AnnotationTreeImpl;
 import org.sonar.java.model.expression.TypeArgumentListTreeImpl;
+import org.sonar.java.parser.sslr.Input;
 import org.sonar.plugins.java.api.tree.AnnotationTree;
 import org.sonar.plugins.java.api.tree.ArrayTypeTree;
 import org.sonar.plugins.java.api.tree.CompilationUnitTree;
@@ -160,6 +161,7 @@ public abstract class JavaTree extends AstNode implements Tree {
     private final List<ImportClauseTree> imports;
     private final List<Tree> types;
     private final List<AnnotationTree> packageAnnotations;
+    private Input source;
 
     public CompilationUnitTreeImpl(@Nullable ExpressionTree packageName, List<ImportClauseTree> imports,
                                    List<Tree> types, List<AnnotationTree> packageAnnotations, List<AstNode> children) {
@@ -184,6 +186,17 @@ public abstract class JavaTree extends AstNode implements Tree {
       return packageAnnotations;
     }
 
+    /**
+     * @return characters of the file, decoded once by the parser, with the index of the start of each line
+     */
+    public Input source() {
+      return source;
+    }
+
+    public void setSource(Input source) {
+      this.source = source;
+    }
+
     @Nullable
     @Override
     public ExpressionTree packageName() {
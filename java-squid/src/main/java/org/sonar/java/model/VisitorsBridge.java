@@ -31,6 +31,9 @@ import org.sonar.java.CharsetAwareVisitor;
 import org.sonar.java.SonarComponents;
 import org.sonar.java.ast.visitors.ComplexityVisitor;
 import org.sonar.java.ast.visitors.SonarSymbolTableVisitor;
+import org.sonar.java.ast.visitors.SubscriptionDispatcher;
+import org.sonar.java.resolve.BytecodeCompleter;
+import org.sonar.java.resolve.ParametrizedTypeCache;
 import org.sonar.java.resolve.SemanticModel;
 import org.sonar.plugins.java.api.JavaCheck;
 import org.sonar.plugins.java.api.JavaFileScanner;
@@ -60,10 +63,14 @@ public class VisitorsBridge extends SquidAstVisitor<LexerlessGrammar> implements
   private static final Logger LOG = LoggerFactory.getLogger(VisitorsBridge.class);
 
   private final List<JavaFileScanner> scanners;
+  private List<JavaFileScanner> executedScanners;
   private final SonarComponents sonarComponents;
   private SemanticModel semanticModel;
   private List<File> projectClasspath;
+  private BytecodeCompleter bytecodeCompleter;
+  private File signatureIndexDirectory;
   private boolean analyseAccessors;
+  private ChecksProfiler checksProfiler;
 
   @VisibleForTesting
   public VisitorsBridge(JavaFileScanner visitor) {
@@ -91,6 +98,14 @@ public class VisitorsBridge extends SquidAstVisitor<LexerlessGrammar> implements
     this.analyseAccessors = analyseAccessors;
   }
 
+  public void setSignatureIndexDirectory(@Nullable File signatureIndexDirectory) {
+    this.signatureIndexDirectory = signatureIndexDirectory;
+  }
+
+  public void setChecksProfiler(@Nullable ChecksProfiler checksProfiler) {
+    this.checksProfiler = checksProfiler;
+  }
+
   @Override
   public void setCharset(Charset charset) {
     for (JavaFileScanner scanner : scanners) {
@@ -107,7 +122,7 @@ public class VisitorsBridge extends SquidAstVisitor<LexerlessGrammar> implements
       CompilationUnitTree tree = (CompilationUnitTree) astNode;
       if (isNotJavaLangOrSerializable()) {
         try {
-          semanticModel = SemanticModel.createFor(tree, getProjectClasspath());
+          semanticModel = SemanticModel.createFor(tree, getBytecodeCompleter());
         } catch (Exception e) {
           LOG.error("Unable to create symbol table for : " + getContext().getFile().getAbsolutePath(), e);
           return;
@@ -117,16 +132,39 @@ public class VisitorsBridge extends SquidAstVisitor<LexerlessGrammar> implements
         SemanticModel.handleMissingTypes(tree);
       }
       JavaFileScannerContext context = new DefaultJavaFileScannerContext(tree, (SourceFile) getContext().peekSourceCode(), getContext().getFile(), semanticModel, analyseAccessors);
-      for (JavaFileScanner scanner : scanners) {
-        scanner.scanFile(context);
+      for (JavaFileScanner scanner : executedScanners()) {
+        if (checksProfiler == null) {
+          scanner.scanFile(context);
+        } else {
+          checksProfiler.scanFile(scanner, context);
+        }
       }
       if (semanticModel != null) {
-        // Close class loader after all the checks.
+        // Release symbols of this file after all the checks.
         semanticModel.done();
       }
     }
   }
 
+  /**
+   * Subscription visitors are dispatched in a single walk of each tree, unless checks are profiled. Built on first use,
+   * as subscriptions may depend on parameters of rules.
+   */
+  private List<JavaFileScanner> executedScanners() {
+    if (executedScanners == null) {
+      executedScanners = checksProfiler == null ? SubscriptionDispatcher.dispatch(scanners) : scanners;
+    }
+    return executedScanners;
+  }
+
+  @Override
+  public void destroy() {
+    if (bytecodeCompleter != null) {
+      bytecodeCompleter.done();
+      bytecodeCompleter = null;
+    }
+  }
+
   private boolean isNotJavaLangOrSerializable() {
     String[] path = getContext().peekSourceCode().getName().split(Pattern.quote(File.separator));
     boolean isJavaLang = path.length > 3 && "java".equals(path[path.length - 3]) && "lang".equals(path[path.length - 2]);
@@ -136,8 +174,14 @@ public class VisitorsBridge extends SquidAstVisitor<LexerlessGrammar> implements
     return !(isJavaLang || isJavaLangAnnotation || isSerializable);
   }
 
-  private List<File> getProjectClasspath() {
-    return projectClasspath;
+  /**
+   * Symbols read from bytecode are shared by all the files analyzed by this bridge.
+   */
+  private BytecodeCompleter getBytecodeCompleter() {
+    if (bytecodeCompleter == null) {
+      bytecodeCompleter = new BytecodeCompleter(projectClasspath, new ParametrizedTypeCache(), signatureIndexDirectory);
+    }
+    return bytecodeCompleter;
   }
 
   private void createSonarSymbolTable(CompilationUnitTree tree) {
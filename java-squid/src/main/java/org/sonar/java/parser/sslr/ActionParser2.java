@@ -35,6 +35,7 @@ import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
 import org.sonar.java.ast.parser.AstNodeSanitizer;
+import org.sonar.java.model.JavaTree;
 import org.sonar.sslr.grammar.GrammarRuleKey;
 import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
 import org.sonar.sslr.internal.matchers.InputBuffer;
@@ -142,6 +143,9 @@ public class ActionParser2 extends Parser {
 
     AstNode astNode = syntaxTreeCreator.create(result.getParseTreeRoot(), input);
     astNodeSanitzer.sanitize(astNode);
+    if (astNode instanceof JavaTree.CompilationUnitTreeImpl) {
+      ((JavaTree.CompilationUnitTreeImpl) astNode).setSource(input);
+    }
     return astNode;
   }
 
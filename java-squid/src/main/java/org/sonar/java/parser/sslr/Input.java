@@ -82,10 +82,21 @@ public class Input {
     return i >= 0 ? i + 2 : -i;
   }
 
-  private int lineStartIndex(int line) {
+  /**
+   * @param line starts from 1
+   * @return index of the first character of the line
+   */
+  public int lineStartIndex(int line) {
     return line == 1 ? 0 : newLineIndexes[line - 2];
   }
 
+  /**
+   * @return number of lines, the last one being empty when the input ends with a new line
+   */
+  public int lines() {
+    return newLineIndexes.length + 1;
+  }
+
   /**
    * New lines are: \n, \r\n (in which case true is returned for the \n) and \r alone.
    */
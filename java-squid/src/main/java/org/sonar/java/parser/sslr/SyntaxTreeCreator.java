@@ -22,12 +22,15 @@ package org.sonar.java.parser.sslr;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.api.Trivia;
 import com.sonar.sslr.api.Trivia.TriviaKind;
+import net.sf.cglib.reflect.FastClass;
+import net.sf.cglib.reflect.FastMethod;
 import org.sonar.java.parser.sslr.ActionParser2.GrammarBuilderInterceptor;
 import org.sonar.sslr.grammar.GrammarRuleKey;
 import org.sonar.sslr.internal.grammar.MutableParsingRule;
@@ -35,10 +38,13 @@ import org.sonar.sslr.internal.matchers.ParseNode;
 import org.sonar.sslr.internal.vm.TokenExpression;
 import org.sonar.sslr.internal.vm.TriviaExpression;
 
+import javax.annotation.Nullable;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class SyntaxTreeCreator<T> {
 
@@ -68,6 +74,11 @@ public class SyntaxTreeCreator<T> {
 
   private final Object treeFactory;
   private final GrammarBuilderInterceptor mapping;
+  private final FastClass treeFactoryClass;
+  /**
+   * What to do with each rule, computed once so that creating a node requires a single lookup and no reflection.
+   */
+  private final Map<MutableParsingRule, RuleAction> ruleActions = Maps.newIdentityHashMap();
 
   private final Token.Builder tokenBuilder = Token.builder();
   private final List<Trivia> trivias = Lists.newArrayList();
@@ -77,6 +88,7 @@ public class SyntaxTreeCreator<T> {
   public SyntaxTreeCreator(Object treeFactory, GrammarBuilderInterceptor mapping) {
     this.treeFactory = treeFactory;
     this.mapping = mapping;
+    this.treeFactoryClass = FastClass.create(treeFactory.getClass());
   }
 
   public T create(ParseNode node, Input input) {
@@ -95,72 +107,110 @@ public class SyntaxTreeCreator<T> {
 
   private Object visitNonTerminal(ParseNode node) {
     MutableParsingRule rule = (MutableParsingRule) node.getMatcher();
-    GrammarRuleKey ruleKey = rule.getRuleKey();
-
-    if (mapping.hasMethodForRuleKey(ruleKey)) {
-      // TODO Drop useless intermediate nodes
-      Preconditions.checkState(node.getChildren().size() == 1);
-      return visit(node.getChildren().get(0));
-    }
-
-    if (mapping.isOptionalRule(ruleKey)) {
-      Preconditions.checkState(node.getChildren().size() <= 1);
-      if (node.getChildren().isEmpty()) {
-        return Optional.absent();
-      } else {
-        return Optional.of(visit(node.getChildren().get(0)));
-      }
+    RuleAction action = ruleActions.get(rule);
+    if (action == null) {
+      action = ruleAction(rule);
+      ruleActions.put(rule, action);
     }
-
     List<ParseNode> children = node.getChildren();
-    List<Object> convertedChildren = Lists.newArrayList();
-    for (ParseNode child : children) {
-      Object result = visit(child);
-      if (result != null) {
-        convertedChildren.add(result);
-      }
-    }
 
-    if (mapping.isOneOrMoreRule(ruleKey)) {
-      return Lists.newArrayList(convertedChildren);
+    switch (action.kind) {
+      case DELEGATE:
+        // TODO Drop useless intermediate nodes
+        Preconditions.checkState(children.size() == 1);
+        return visit(children.get(0));
+      case OPTIONAL:
+        Preconditions.checkState(children.size() <= 1);
+        if (children.isEmpty()) {
+          return Optional.absent();
+        } else {
+          return Optional.of(visit(children.get(0)));
+        }
+      case ONE_OR_MORE:
+        return convertChildren(children);
+      case ZERO_OR_MORE:
+        List<Object> convertedChildren = convertChildren(children);
+        return convertedChildren.isEmpty() ? Optional.absent() : Optional.of(convertedChildren);
+      case TREE_FACTORY:
+        return invoke(action, children);
+      default:
+        return createAstNode(rule, node, children);
     }
+  }
 
-    if (mapping.isZeroOrMoreRule(ruleKey)) {
-      return convertedChildren.isEmpty() ? Optional.absent() : Optional.of(Lists.newArrayList(convertedChildren));
+  private RuleAction ruleAction(MutableParsingRule rule) {
+    GrammarRuleKey ruleKey = rule.getRuleKey();
+    if (mapping.hasMethodForRuleKey(ruleKey)) {
+      return new RuleAction(RuleKind.DELEGATE, null, 0);
+    } else if (mapping.isOptionalRule(ruleKey)) {
+      return new RuleAction(RuleKind.OPTIONAL, null, 0);
+    } else if (mapping.isOneOrMoreRule(ruleKey)) {
+      return new RuleAction(RuleKind.ONE_OR_MORE, null, 0);
+    } else if (mapping.isZeroOrMoreRule(ruleKey)) {
+      return new RuleAction(RuleKind.ZERO_OR_MORE, null, 0);
     }
-
     Method method = mapping.actionForRuleKey(ruleKey);
     if (method == null) {
-      Token token = null;
+      return new RuleAction(RuleKind.AST_NODE, null, 0);
+    }
+    return new RuleAction(RuleKind.TREE_FACTORY, treeFactoryClass.getMethod(method), method.getParameterTypes().length);
+  }
 
-      for (Object child : convertedChildren) {
-        if (child instanceof AstNode && ((AstNode) child).hasToken()) {
-          token = ((AstNode) child).getToken();
-          break;
-        }
-      }
-      AstNode astNode = new AstNode(rule.getRealAstNodeType(), rule.getName(), token);
-      for (Object child : convertedChildren) {
-        astNode.addChild((AstNode) child);
+  private List<Object> convertChildren(List<ParseNode> children) {
+    List<Object> result = new ArrayList<Object>(children.size());
+    for (ParseNode child : children) {
+      Object converted = visit(child);
+      if (converted != null) {
+        result.add(converted);
       }
-
-      astNode.setFromIndex(node.getStartIndex());
-      astNode.setToIndex(node.getEndIndex());
-
-      return astNode;
     }
+    return result;
+  }
 
+  private Object invoke(RuleAction action, List<ParseNode> children) {
+    Object[] arguments = new Object[action.arity];
+    int i = 0;
+    for (ParseNode child : children) {
+      Object converted = visit(child);
+      if (converted != null) {
+        Preconditions.checkState(i < arguments.length, "Too many arguments for %s", action.method);
+        arguments[i] = converted;
+        i++;
+      }
+    }
+    Preconditions.checkState(i == arguments.length, "Too few arguments for %s", action.method);
     try {
-      return method.invoke(treeFactory, convertedChildren.toArray(new Object[convertedChildren.size()]));
-    } catch (IllegalAccessException e) {
-      throw Throwables.propagate(e);
-    } catch (IllegalArgumentException e) {
-      throw Throwables.propagate(e);
+      return action.method.invoke(treeFactory, arguments);
     } catch (InvocationTargetException e) {
       throw Throwables.propagate(e);
     }
   }
 
+  private AstNode createAstNode(MutableParsingRule rule, ParseNode node, List<ParseNode> children) {
+    Object[] convertedChildren = new Object[children.size()];
+    int size = 0;
+    Token token = null;
+    for (ParseNode child : children) {
+      Object converted = visit(child);
+      if (converted != null) {
+        if (token == null && converted instanceof AstNode && ((AstNode) converted).hasToken()) {
+          token = ((AstNode) converted).getToken();
+        }
+        convertedChildren[size] = converted;
+        size++;
+      }
+    }
+    AstNode astNode = new AstNode(rule.getRealAstNodeType(), rule.getName(), token);
+    for (int i = 0; i < size; i++) {
+      astNode.addChild((AstNode) convertedChildren[i]);
+    }
+
+    astNode.setFromIndex(node.getStartIndex());
+    astNode.setToIndex(node.getEndIndex());
+
+    return astNode;
+  }
+
   private AstNode visitTerminal(ParseNode node) {
     if (node.getMatcher() instanceof TriviaExpression) {
       TriviaExpression ruleMatcher = (TriviaExpression) node.getMatcher();
@@ -206,4 +256,20 @@ public class SyntaxTreeCreator<T> {
     tokenBuilder.setValueAndOriginalValue(value);
   }
 
+  private enum RuleKind {
+    DELEGATE, OPTIONAL, ONE_OR_MORE, ZERO_OR_MORE, TREE_FACTORY, AST_NODE
+  }
+
+  private static class RuleAction {
+    private final RuleKind kind;
+    private final FastMethod method;
+    private final int arity;
+
+    RuleAction(RuleKind kind, @Nullable FastMethod method, int arity) {
+      this.kind = kind;
+      this.method = method;
+      this.arity = arity;
+    }
+  }
+
 }
@@ -21,9 +21,11 @@ package org.sonar.java.resolve;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Closeables;
+import com.google.common.io.Resources;
 import org.apache.commons.lang.StringUtils;
 import org.objectweb.asm.ClassReader;
 import org.slf4j.Logger;
@@ -34,10 +36,13 @@ import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.net.URL;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class BytecodeCompleter implements JavaSymbol.Completer {
 
@@ -47,35 +52,105 @@ public class BytecodeCompleter implements JavaSymbol.Completer {
       Flags.INTERFACE | Flags.ANNOTATION | Flags.ENUM |
       Flags.STATIC | Flags.FINAL | Flags.SYNCHRONIZED | Flags.VOLATILE | Flags.TRANSIENT | Flags.VARARGS | Flags.NATIVE |
       Flags.ABSTRACT | Flags.STRICTFP | Flags.DEPRECATED;
+  private static final int MAX_CLASS_FILES = 1000;
 
   private Symbols symbols;
   private final List<File> projectClasspath;
   private final ParametrizedTypeCache parametrizedTypeCache;
+  @Nullable
+  private final File signatureIndexDirectory;
 
   /**
-   * Indexed by flat name.
+   * Classes read from jar files, indexed by flat name.
+   * Such classes can not reference classes of the analyzed sources, so they are completed once and shared by all the files
+   * analyzed with this completer.
    */
   private final Map<String, JavaSymbol.TypeJavaSymbol> classes = new HashMap<String, JavaSymbol.TypeJavaSymbol>();
+
+  /**
+   * Classes declared in the file being analyzed, and classes read from directories of the classpath (typically the output
+   * of the project itself, which can reference classes of the file being analyzed), indexed by flat name.
+   * Discarded by {@link #endOfFile()}.
+   */
+  private final Map<String, JavaSymbol.TypeJavaSymbol> fileClasses = new HashMap<String, JavaSymbol.TypeJavaSymbol>();
   private final Map<String, JavaSymbol.PackageJavaSymbol> packages = new HashMap<String, JavaSymbol.PackageJavaSymbol>();
 
+  /**
+   * Names of classes which are not on the classpath, typically looked up in each package imported on demand for each simple
+   * name of a file. The classpath does not change during analysis, so they are never found afterwards, but can still be
+   * declared in a file being analyzed, and are thus looked up in {@link #fileClasses} before.
+   */
+  private final Set<String> classesNotFound = new HashSet<String>();
+
+  /**
+   * Content of class files which have been read and not completed yet, such as the ones read by {@link #loadClass(String)}
+   * to check their name, or which can be completed again, such as classes read from directories, indexed by flat name.
+   * Each class file is thus read once while it is in this cache, which is bounded, least recently used class files being
+   * discarded first. Names of the classes of these files have been checked, or come from other class files.
+   */
+  private final Map<String, byte[]> classFiles = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+      return size() > MAX_CLASS_FILES;
+    }
+  };
+
+  /**
+   * Greater than zero while a shared class is being created or completed: every class it references must then be shared as well.
+   */
+  private int sharedCompletions = 0;
+
   private ClassLoader classLoader;
 
   public BytecodeCompleter(List<File> projectClasspath, ParametrizedTypeCache parametrizedTypeCache) {
+    this(projectClasspath, parametrizedTypeCache, null);
+  }
+
+  /**
+   * @param signatureIndexDirectory if not null, signatures of classes from JAR files are read from persistent indexes stored in this directory
+   */
+  public BytecodeCompleter(List<File> projectClasspath, ParametrizedTypeCache parametrizedTypeCache, @Nullable File signatureIndexDirectory) {
     this.projectClasspath = projectClasspath;
     this.parametrizedTypeCache = parametrizedTypeCache;
+    this.signatureIndexDirectory = signatureIndexDirectory;
   }
 
   public void init(Symbols symbols) {
     this.symbols = symbols;
   }
 
+  /**
+   * Predefined symbols, created on first call and then shared by all the files analyzed with this completer.
+   */
+  public Symbols symbols() {
+    if (symbols == null) {
+      new Symbols(this);
+    }
+    return symbols;
+  }
+
+  public ParametrizedTypeCache parametrizedTypeCache() {
+    return parametrizedTypeCache;
+  }
+
   public JavaSymbol.TypeJavaSymbol registerClass(JavaSymbol.TypeJavaSymbol classSymbol) {
     String flatName = formFullName(classSymbol);
-    Preconditions.checkState(!classes.containsKey(flatName), "Registering class 2 times : " + flatName);
-    classes.put(flatName, classSymbol);
+    Preconditions.checkState(!fileClasses.containsKey(flatName), "Registering class 2 times : " + flatName);
+    fileClasses.put(flatName, classSymbol);
     return classSymbol;
   }
 
+  @Nullable
+  private JavaSymbol.TypeJavaSymbol lookupClass(String flatName) {
+    if (sharedCompletions == 0) {
+      JavaSymbol.TypeJavaSymbol symbol = fileClasses.get(flatName);
+      if (symbol != null) {
+        return symbol;
+      }
+    }
+    return classes.get(flatName);
+  }
+
   @Override
   public void complete(JavaSymbol symbol) {
     LOG.debug("Completing symbol : " + symbol.name);
@@ -84,36 +159,56 @@ public class BytecodeCompleter implements JavaSymbol.Completer {
       symbol.owner.complete();
     }
     String bytecodeName = formFullName(symbol);
-    JavaSymbol.TypeJavaSymbol classSymbol = getClassSymbol(bytecodeName);
-    Preconditions.checkState(classSymbol == symbol);
-
-    InputStream inputStream = null;
-    ClassReader classReader = null;
+    boolean shared = classes.get(bytecodeName) == symbol;
+    Preconditions.checkState(shared || fileClasses.get(bytecodeName) == symbol);
+    if (shared) {
+      sharedCompletions++;
+    }
     try {
-      inputStream = inputStreamFor(bytecodeName);
-      if(inputStream != null) {
-        classReader = new ClassReader(inputStream);
-      }
-    } catch (IOException e) {
-      throw Throwables.propagate(e);
+      readClass(bytecodeName, (JavaSymbol.TypeJavaSymbol) symbol, shared);
     } finally {
-      Closeables.closeQuietly(inputStream);
+      if (shared) {
+        sharedCompletions--;
+      }
     }
-    if (classReader != null) {
-      classReader.accept(
-          new BytecodeVisitor(this, symbols, (JavaSymbol.TypeJavaSymbol) symbol, parametrizedTypeCache),
-          ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG);
+  }
+
+  /**
+   * @param shared if true, the class is completed only once, so that its class file is not kept in cache
+   */
+  private void readClass(String bytecodeName, JavaSymbol.TypeJavaSymbol symbol, boolean shared) {
+    byte[] bytes = shared ? classFiles.remove(bytecodeName) : classFiles.get(bytecodeName);
+    if (bytes == null) {
+      URL resource = resourceFor(bytecodeName);
+      if (resource == null) {
+        return;
+      }
+      bytes = readBytes(resource);
+      if (!shared) {
+        classFiles.put(bytecodeName, bytes);
+      }
     }
+    new ClassReader(bytes).accept(
+        new BytecodeVisitor(this, symbols, symbol, parametrizedTypeCache),
+        ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG);
   }
 
   @Nullable
-  private InputStream inputStreamFor(String fullname) {
-    return getClassLoader().getResourceAsStream(Convert.bytecodeName(fullname) + ".class");
+  private URL resourceFor(String flatName) {
+    return getClassLoader().getResource(Convert.bytecodeName(flatName) + ".class");
+  }
+
+  private static byte[] readBytes(URL resource) {
+    try {
+      return Resources.toByteArray(resource);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
   }
 
   private ClassLoader getClassLoader() {
     if (classLoader == null) {
-      classLoader = ClassLoaderBuilder.create(projectClasspath);
+      classLoader = ClassLoaderBuilder.create(projectClasspath, signatureIndexDirectory);
     }
     return classLoader;
   }
@@ -145,30 +240,55 @@ public class BytecodeCompleter implements JavaSymbol.Completer {
   // FIXME(Godin): or parameter must be renamed, or should not receive flat name, in a former case - first transformation in this method seems useless
   JavaSymbol.TypeJavaSymbol getClassSymbol(String bytecodeName, int flags) {
     String flatName = Convert.flatName(bytecodeName);
-    JavaSymbol.TypeJavaSymbol symbol = classes.get(flatName);
+    JavaSymbol.TypeJavaSymbol symbol = lookupClass(flatName);
     if (symbol == null) {
-      String shortName = Convert.shortName(flatName);
-      String packageName = Convert.packagePart(flatName);
-      String enclosingClassName = Convert.enclosingClassName(shortName);
-      if (StringUtils.isNotEmpty(enclosingClassName)) {
-        //handle innerClasses
-        symbol = new JavaSymbol.TypeJavaSymbol(filterBytecodeFlags(flags), Convert.innerClassName(shortName), getClassSymbol(Convert.fullName(packageName, enclosingClassName)));
-      } else {
-        symbol = new JavaSymbol.TypeJavaSymbol(filterBytecodeFlags(flags), shortName, enterPackage(packageName));
-      }
-      symbol.members = new Scope(symbol);
-      symbol.typeParameters = new Scope(symbol);
-
-      // (Godin): IOException will happen without this condition in case of missing class:
-      if (getClassLoader().getResource(Convert.bytecodeName(flatName) + ".class") != null) {
-        symbol.completer = this;
-      } else {
-        LOG.error("Class not found: " + bytecodeName);
-        ((JavaType.ClassJavaType) symbol.type).interfaces = ImmutableList.of();
-        ((JavaType.ClassJavaType) symbol.type).supertype = Symbols.unknownType;
-      }
+      symbol = enterClass(flatName, flags, resourceFor(flatName));
+    }
+    return symbol;
+  }
 
+  private JavaSymbol.TypeJavaSymbol enterClass(String flatName, int flags, @Nullable URL resource) {
+    boolean shared = sharedCompletions > 0 || (resource != null && !"file".equals(resource.getProtocol()));
+    if (shared) {
+      sharedCompletions++;
+    }
+    JavaSymbol.TypeJavaSymbol symbol;
+    try {
+      symbol = createClassSymbol(flatName, flags, resource != null);
+    } finally {
+      if (shared) {
+        sharedCompletions--;
+      }
+    }
+    if (shared) {
       classes.put(flatName, symbol);
+    } else {
+      fileClasses.put(flatName, symbol);
+    }
+    return symbol;
+  }
+
+  private JavaSymbol.TypeJavaSymbol createClassSymbol(String flatName, int flags, boolean exists) {
+    JavaSymbol.TypeJavaSymbol symbol;
+    String shortName = Convert.shortName(flatName);
+    String packageName = Convert.packagePart(flatName);
+    String enclosingClassName = Convert.enclosingClassName(shortName);
+    if (StringUtils.isNotEmpty(enclosingClassName)) {
+      //handle innerClasses
+      symbol = new JavaSymbol.TypeJavaSymbol(filterBytecodeFlags(flags), Convert.innerClassName(shortName), getClassSymbol(Convert.fullName(packageName, enclosingClassName)));
+    } else {
+      symbol = new JavaSymbol.TypeJavaSymbol(filterBytecodeFlags(flags), shortName, enterPackage(packageName));
+    }
+    symbol.members = new Scope(symbol);
+    symbol.typeParameters = new Scope(symbol);
+
+    // (Godin): IOException will happen without this condition in case of missing class:
+    if (exists) {
+      symbol.completer = this;
+    } else {
+      LOG.error("Class not found: " + flatName);
+      ((JavaType.ClassJavaType) symbol.type).interfaces = ImmutableList.of();
+      ((JavaType.ClassJavaType) symbol.type).supertype = Symbols.unknownType;
     }
     return symbol;
   }
@@ -186,32 +306,30 @@ public class BytecodeCompleter implements JavaSymbol.Completer {
    */
   // TODO(Godin): Method name is misleading because of lazy loading.
   public JavaSymbol loadClass(String fullname) {
-    JavaSymbol.TypeJavaSymbol symbol = classes.get(fullname);
+    JavaSymbol.TypeJavaSymbol symbol = lookupClass(fullname);
     if (symbol != null) {
       return symbol;
     }
-
-    // TODO(Godin): pull out conversion of name from the next method to avoid unnecessary conversion afterwards:
-    InputStream inputStream = inputStreamFor(fullname);
-    String bytecodeName = Convert.bytecodeName(fullname);
-
-    if (inputStream == null) {
+    if (classesNotFound.contains(fullname)) {
       return new Resolve.JavaSymbolNotFound();
     }
 
-    try {
-      ClassReader classReader = new ClassReader(inputStream);
-      String className = classReader.getClassName();
-      if (!className.equals(bytecodeName)) {
+    URL resource = resourceFor(fullname);
+    if (resource == null) {
+      classesNotFound.add(fullname);
+      return new Resolve.JavaSymbolNotFound();
+    }
+    byte[] bytes = classFiles.get(fullname);
+    if (bytes == null) {
+      bytes = readBytes(resource);
+      if (!new ClassReader(bytes).getClassName().equals(Convert.bytecodeName(fullname))) {
+        classesNotFound.add(fullname);
         return new Resolve.JavaSymbolNotFound();
       }
-    } catch (IOException e) {
-      throw Throwables.propagate(e);
-    } finally {
-      Closeables.closeQuietly(inputStream);
+      // kept to be completed without reading the class file again
+      classFiles.put(fullname, bytes);
     }
-
-    return getClassSymbol(fullname);
+    return enterClass(fullname, 0, resource);
   }
 
   public JavaSymbol.PackageJavaSymbol enterPackage(String fullname) {
@@ -226,6 +344,60 @@ public class BytecodeCompleter implements JavaSymbol.Completer {
     return result;
   }
 
+  /**
+   * Discards symbols of the file which has been analyzed, so that none of them can be reached from the analysis of another file:
+   * classes of the file and classes read from directories, packages members, parametrized types using them.
+   * Usages of shared symbols are reset by {@link SemanticModel#done()}.
+   */
+  public void endOfFile() {
+    for (JavaSymbol.TypeJavaSymbol fileClass : fileClasses.values()) {
+      JavaSymbol owner = fileClass.owner();
+      if (owner.isKind(JavaSymbol.PCK) && !(((JavaSymbol.PackageJavaSymbol) owner).members instanceof Scope.StarImportScope)) {
+        // members of packages only matter for the compilation unit declared in them, see FirstPass
+        ((JavaSymbol.PackageJavaSymbol) owner).members = null;
+      }
+    }
+    parametrizedTypeCache.retainAll(new Predicate<JavaType>() {
+      @Override
+      public boolean apply(JavaType type) {
+        return isShared(type);
+      }
+    });
+    fileClasses.clear();
+  }
+
+  /**
+   * @return true if given symbol is not related to the file being analyzed, and thus can be kept from one file to another
+   */
+  public boolean isShared(JavaSymbol symbol) {
+    JavaSymbol topLevel = symbol;
+    while (topLevel.owner() != null && !topLevel.owner().isKind(JavaSymbol.PCK)) {
+      topLevel = topLevel.owner();
+    }
+    if (topLevel.owner() == null) {
+      return false;
+    }
+    if (!topLevel.isKind(JavaSymbol.TYP) || topLevel.owner() == Symbols.rootPackage) {
+      // packages and predefined symbols
+      return true;
+    }
+    return fileClasses.get(formFullName(topLevel)) != topLevel;
+  }
+
+  private boolean isShared(JavaType type) {
+    if (type instanceof JavaType.ArrayJavaType) {
+      return isShared(((JavaType.ArrayJavaType) type).elementType);
+    }
+    if (type instanceof JavaType.ParametrizedTypeJavaType) {
+      for (JavaType substitutedType : ((JavaType.ParametrizedTypeJavaType) type).typeSubstitution.substitutedTypes()) {
+        if (!isShared(substitutedType)) {
+          return false;
+        }
+      }
+    }
+    return type.symbol == null || isShared(type.symbol);
+  }
+
   public void done() {
     if (classLoader != null && classLoader instanceof Closeable) {
       Closeables.closeQuietly((Closeable) classLoader);
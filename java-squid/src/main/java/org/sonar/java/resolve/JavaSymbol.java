@@ -249,6 +249,10 @@ public class JavaSymbol implements Symbol {
     return usages;
   }
 
+  void clearUsages() {
+    usages.clear();
+  }
+
   @Nullable
   @Override
   public Tree declaration() {
@@ -286,6 +290,9 @@ public class JavaSymbol implements Symbol {
     Scope typeParameters;
     List<JavaType.TypeVariableJavaType> typeVariableTypes;
     ClassTree declaration;
+    private Set<JavaType.ClassJavaType> superTypes;
+    private Set<JavaType.ClassJavaType> interfacesOfType;
+    private Set<String> superTypeNames;
 
     public TypeJavaSymbol(int flags, String name, JavaSymbol owner) {
       super(TYP, flags, name, owner);
@@ -328,29 +335,58 @@ public class JavaSymbol implements Symbol {
 
     /**
      * Includes superclass and super interface hierarchy.
+     * The closure is computed on first call, which completes this symbol and its supertypes, and reused afterwards: supertypes
+     * assigned after this call, as done for anonymous classes during attribution, must be followed by {@link #invalidateSuperTypes()}.
      * @return list of classTypes.
      */
     public Set<JavaType.ClassJavaType> superTypes() {
-      ImmutableSet.Builder<JavaType.ClassJavaType> types = ImmutableSet.builder();
-      JavaType.ClassJavaType superClassType = (JavaType.ClassJavaType) this.superClass();
-      types.addAll(this.interfacesOfType());
-      while (superClassType != null) {
-        types.add(superClassType);
-        TypeJavaSymbol superClassSymbol = superClassType.getSymbol();
-        types.addAll(superClassSymbol.interfacesOfType());
-        superClassType = (JavaType.ClassJavaType) superClassSymbol.superClass();
+      if (superTypes == null) {
+        ImmutableSet.Builder<JavaType.ClassJavaType> types = ImmutableSet.builder();
+        types.addAll(this.interfacesOfType());
+        JavaType.ClassJavaType superClassType = (JavaType.ClassJavaType) this.superClass();
+        if (superClassType != null) {
+          types.add(superClassType);
+          types.addAll(superClassType.getSymbol().superTypes());
+        }
+        superTypes = types.build();
+      }
+      return superTypes;
+    }
+
+    /**
+     * @return true if the fully qualified name of one of the {@link #superTypes()} is the given one, with a hash lookup
+     */
+    public boolean hasSuperType(String fullyQualifiedName) {
+      if (superTypeNames == null) {
+        ImmutableSet.Builder<String> names = ImmutableSet.builder();
+        for (JavaType.ClassJavaType superType : superTypes()) {
+          names.add(superType.getSymbol().getFullyQualifiedName());
+        }
+        superTypeNames = names.build();
       }
-      return types.build();
+      return superTypeNames.contains(fullyQualifiedName);
+    }
+
+    /**
+     * Discards the closure of supertypes, which is computed again on next call to {@link #superTypes()}.
+     */
+    void invalidateSuperTypes() {
+      superTypes = null;
+      interfacesOfType = null;
+      superTypeNames = null;
     }
 
     private Set<JavaType.ClassJavaType> interfacesOfType() {
-      ImmutableSet.Builder<JavaType.ClassJavaType> builder = ImmutableSet.builder();
-      for (JavaType interfaceType : getInterfaces()) {
-        JavaType.ClassJavaType classType = (JavaType.ClassJavaType) interfaceType;
-        builder.add(classType);
-        builder.addAll(classType.getSymbol().interfacesOfType());
+      if (interfacesOfType == null) {
+        ImmutableSet.Builder<JavaType.ClassJavaType> builder = ImmutableSet.builder();
+        for (JavaType interfaceType : getInterfaces()) {
+          JavaType.ClassJavaType classType = (JavaType.ClassJavaType) interfaceType;
+          builder.add(classType);
+          builder.addAll(classType.getSymbol().interfacesOfType());
+        }
+        interfacesOfType = builder.build();
       }
-      return builder.build();
+      return interfacesOfType;
     }
 
     @Override
@@ -223,7 +223,7 @@ public class JavaType implements Type {
 
     @Override
     public boolean isSubtypeOf(String fullyQualifiedName) {
-      return isTagged(BOT) || is(fullyQualifiedName) || superTypeContains(fullyQualifiedName);
+      return isTagged(BOT) || is(fullyQualifiedName) || getSymbol().hasSuperType(fullyQualifiedName);
     }
 
     @Override
@@ -236,16 +236,7 @@ public class JavaType implements Type {
       }
       if (superType.isClass()) {
         ClassJavaType superClassType = (ClassJavaType) superType;
-        return this.equals(superClassType) || superTypeContains(superClassType.fullyQualifiedName());
-      }
-      return false;
-    }
-
-    private boolean superTypeContains(String fullyQualifiedName) {
-      for (ClassJavaType classType : symbol.superTypes()) {
-        if (classType.is(fullyQualifiedName)) {
-          return true;
-        }
+        return this.equals(superClassType) || getSymbol().hasSuperType(superClassType.fullyQualifiedName());
       }
       return false;
     }
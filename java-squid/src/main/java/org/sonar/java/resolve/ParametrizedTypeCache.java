@@ -19,8 +19,12 @@
  */
 package org.sonar.java.resolve;
 
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 
+import java.util.Iterator;
 import java.util.Map;
 
 public class ParametrizedTypeCache {
@@ -41,4 +45,18 @@ public class ParametrizedTypeCache {
     return typeCache.get(symbol).get(typeSubstitution);
   }
 
+  /**
+   * Removes cached types not matching given predicate.
+   */
+  public void retainAll(Predicate<JavaType> predicate) {
+    Iterator<Map<TypeSubstitution, JavaType.ParametrizedTypeJavaType>> symbolIterator = typeCache.values().iterator();
+    while (symbolIterator.hasNext()) {
+      Map<TypeSubstitution, JavaType.ParametrizedTypeJavaType> types = symbolIterator.next();
+      Iterables.removeIf(types.values(), Predicates.not(predicate));
+      if (types.isEmpty()) {
+        symbolIterator.remove();
+      }
+    }
+  }
+
 }
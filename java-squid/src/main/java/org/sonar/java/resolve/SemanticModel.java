@@ -51,28 +51,52 @@ public class SemanticModel {
   private final BiMap<Tree, Resolve.Env> envs = HashBiMap.create();
   private final Map<Tree, Tree> parentLink = Maps.newHashMap();
   private BytecodeCompleter bytecodeCompleter;
+  private boolean ownsBytecodeCompleter = false;
 
   public static SemanticModel createFor(CompilationUnitTree tree, List<File> projectClasspath) {
-    ParametrizedTypeCache parametrizedTypeCache = new ParametrizedTypeCache();
-    BytecodeCompleter bytecodeCompleter = new BytecodeCompleter(projectClasspath, parametrizedTypeCache);
-    Symbols symbols = new Symbols(bytecodeCompleter);
+    SemanticModel semanticModel = createFor(tree, new BytecodeCompleter(projectClasspath, new ParametrizedTypeCache()));
+    semanticModel.ownsBytecodeCompleter = true;
+    return semanticModel;
+  }
+
+  /**
+   * Creates semantic model of a file, using symbols of classes read from bytecode which might have been completed during analysis
+   * of previous files with the same <code>bytecodeCompleter</code>. {@link #done()} must be invoked once the model is not used anymore.
+   */
+  public static SemanticModel createFor(CompilationUnitTree tree, BytecodeCompleter bytecodeCompleter) {
+    ParametrizedTypeCache parametrizedTypeCache = bytecodeCompleter.parametrizedTypeCache();
+    Symbols symbols = bytecodeCompleter.symbols();
     SemanticModel semanticModel = new SemanticModel();
     semanticModel.bytecodeCompleter = bytecodeCompleter;
     semanticModel.createParentLink((JavaTree) tree);
+    boolean created = false;
     try {
       Resolve resolve = new Resolve(symbols, bytecodeCompleter, parametrizedTypeCache);
       TypeAndReferenceSolver typeAndReferenceSolver = new TypeAndReferenceSolver(semanticModel, symbols, resolve, parametrizedTypeCache);
       new FirstPass(semanticModel, symbols, resolve, parametrizedTypeCache, typeAndReferenceSolver).visitCompilationUnit(tree);
       typeAndReferenceSolver.visitCompilationUnit(tree);
       new LabelsVisitor(semanticModel).visitCompilationUnit(tree);
+      created = true;
     } finally {
       handleMissingTypes(tree);
+      if (!created) {
+        semanticModel.done();
+      }
     }
     return semanticModel;
   }
 
-  public void done(){
-    bytecodeCompleter.done();
+  public void done() {
+    // usages recorded on shared symbols belong to this file only
+    for (Symbol symbol : usagesTree.keySet()) {
+      if (bytecodeCompleter.isShared((JavaSymbol) symbol)) {
+        ((JavaSymbol) symbol).clearUsages();
+      }
+    }
+    bytecodeCompleter.endOfFile();
+    if (ownsBytecodeCompleter) {
+      bytecodeCompleter.done();
+    }
   }
 
   /**
@@ -547,6 +547,7 @@ public class TypeAndReferenceSolver extends BaseTreeVisitor {
     if(classBody != null) {
       scan(classBody);
       ((JavaType.ClassJavaType) classBody.symbol().type()).supertype = getType(newClassTree.identifier());
+      ((JavaSymbol.TypeJavaSymbol) classBody.symbol()).invalidateSuperTypes();
     }
     resolveConstructorSymbol(tree.simpleName(), semanticModel.getEnv(tree), getParameterTypes(newClassTree.arguments()));
   }
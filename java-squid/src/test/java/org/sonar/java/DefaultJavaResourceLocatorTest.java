@@ -25,6 +25,7 @@ import org.junit.Test;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.ProjectFileSystem;
+import org.sonar.java.bytecode.loader.ClassFiles;
 import org.sonar.java.filters.SuppressWarningsFilter;
 import org.sonar.java.model.VisitorsBridge;
 
@@ -40,10 +41,17 @@ public class DefaultJavaResourceLocatorTest {
 
   @BeforeClass
   public static void setup() {
+    DefaultJavaResourceLocator jrl = createJavaResourceLocator();
+    JavaAstScanner.scanSingleFile(new File("src/test/java/org/sonar/java/DefaultJavaResourceLocatorTest.java"), new VisitorsBridge(jrl));
+    javaResourceLocator = jrl;
+  }
+
+  private static DefaultJavaResourceLocator createJavaResourceLocator() {
     Project project = mock(Project.class);
     ProjectFileSystem pfs = mock(ProjectFileSystem.class);
     JavaClasspath javaClasspath = mock(JavaClasspath.class);
     when(javaClasspath.getBinaryDirs()).thenReturn(Lists.newArrayList(new File("target/test-classes")));
+    when(javaClasspath.getClassFiles()).thenReturn(ClassFiles.index(Lists.newArrayList(new File("target/test-classes"))));
     when(javaClasspath.getElements()).thenReturn(Lists.newArrayList(new File("target/test-classes")));
     File baseDir = new File("src/test/java");
     when(project.getFileSystem()).thenReturn(pfs);
@@ -51,8 +59,7 @@ public class DefaultJavaResourceLocatorTest {
     SensorContext sensorContext = mock(SensorContext.class);
     DefaultJavaResourceLocator jrl = new DefaultJavaResourceLocator(project, javaClasspath, new SuppressWarningsFilter());
     jrl.setSensorContext(sensorContext);
-    JavaAstScanner.scanSingleFile(new File("src/test/java/org/sonar/java/DefaultJavaResourceLocatorTest.java"), new VisitorsBridge(jrl));
-    javaResourceLocator = jrl;
+    return jrl;
   }
 
   @Test
@@ -68,6 +75,16 @@ public class DefaultJavaResourceLocatorTest {
   @Test
   public void class_keys() throws Exception {
     assertThat(javaResourceLocator.classKeys()).hasSize(5);
+    assertThat(javaResourceLocator.classKeys()).isSameAs(javaResourceLocator.classKeys());
+  }
+
+  @Test
+  public void class_keys_should_be_updated_by_new_files() throws Exception {
+    DefaultJavaResourceLocator jrl = createJavaResourceLocator();
+    JavaAstScanner.scanSingleFile(new File("src/test/java/org/sonar/java/DefaultJavaResourceLocatorTest.java"), new VisitorsBridge(jrl));
+    assertThat(jrl.classKeys()).hasSize(5);
+    JavaAstScanner.scanSingleFile(new File("src/test/java/org/sonar/java/LineSetTest.java"), new VisitorsBridge(jrl));
+    assertThat(jrl.classKeys()).hasSize(6).contains("org/sonar/java/LineSetTest");
   }
 
   @Test
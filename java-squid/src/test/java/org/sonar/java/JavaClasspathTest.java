@@ -31,6 +31,7 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 
 import java.io.File;
+import java.util.Map;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.junit.Assert.fail;
@@ -241,6 +242,16 @@ public class JavaClasspathTest {
     assertThat(javaClasspath.getElements()).isEmpty();
   }
 
+  @Test
+  public void class_files_of_binary_dirs_should_be_listed_once() {
+    settings.setProperty(JavaClasspathProperties.SONAR_JAVA_BINARIES, "bin");
+    javaClasspath = createJavaClasspath();
+    Map<String, File> classFiles = javaClasspath.getClassFiles();
+    assertThat(classFiles.keySet()).containsOnly("LambdaExpressions");
+    assertThat(classFiles.get("LambdaExpressions")).isEqualTo(new File(javaClasspath.getBinaryDirs().get(0), "LambdaExpressions.class"));
+    assertThat(javaClasspath.getClassFiles()).isSameAs(classFiles);
+  }
+
   @Test
   public void invalid_sonar_java_binaries_should_fail_analysis() {
     settings.setProperty(JavaClasspathProperties.SONAR_JAVA_BINARIES, "dummyDir");
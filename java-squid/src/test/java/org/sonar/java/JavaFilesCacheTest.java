@@ -19,7 +19,6 @@
  */
 package org.sonar.java;
 
-import com.google.common.collect.Lists;
 import org.junit.Test;
 import org.sonar.java.model.VisitorsBridge;
 
@@ -54,13 +53,16 @@ public class JavaFilesCacheTest {
     assertThat(javaFilesCache.methodStartLines.keySet()).contains("org/sonar/java/JavaFilesCacheTest#method_start_lines_mapping()V");
     assertThat(javaFilesCache.methodStartLines.keySet()).contains("org/sonar/java/JavaFilesCacheTest$A#method()V");
     assertThat(javaFilesCache.methodStartLines.keySet()).contains("org/sonar/java/JavaFilesCacheTest#resource_file_mapping()V");
-    assertThat(javaFilesCache.suppressWarningLines.keySet()).hasSize(13);
-    for (Integer line : Lists.newArrayList(68, 69, 73, 74, 75, 76, 77, 78, 79, 80, 81, 82, 83)) {
-      assertThat(javaFilesCache.suppressWarningLines.get(line)).contains("all");
-    }
-    for (Integer line : Lists.newArrayList(77, 78, 79, 80, 81)) {
-      assertThat(javaFilesCache.suppressWarningLines.get(line)).contains("foo", "bar");
-    }
+    assertThat(javaFilesCache.suppressWarnings).hasSize(3);
+    assertThat(javaFilesCache.suppressWarnings.get(0).startLine()).isEqualTo(70);
+    assertThat(javaFilesCache.suppressWarnings.get(0).endLine()).isEqualTo(71);
+    assertThat(javaFilesCache.suppressWarnings.get(1).startLine()).isEqualTo(75);
+    assertThat(javaFilesCache.suppressWarnings.get(1).endLine()).isEqualTo(85);
+    assertThat(javaFilesCache.suppressWarnings.get(2).startLine()).isEqualTo(79);
+    assertThat(javaFilesCache.suppressWarnings.get(2).endLine()).isEqualTo(83);
+    assertThat(javaFilesCache.suppressWarnings.get(0).warnings()).containsOnly("all");
+    assertThat(javaFilesCache.suppressWarnings.get(1).warnings()).containsOnly("all");
+    assertThat(javaFilesCache.suppressWarnings.get(2).warnings()).containsOnly("foo", "bar");
   }
 
   static class A {
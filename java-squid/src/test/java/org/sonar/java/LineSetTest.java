@@ -0,0 +1,109 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LineSetTest {
+
+  @Test
+  public void add_and_contains() {
+    LineSet lines = new LineSet();
+    assertThat(lines.isEmpty()).isTrue();
+    lines.add(1);
+    lines.add(64);
+    lines.add(1000);
+    lines.add(64);
+    assertThat(lines.isEmpty()).isFalse();
+    assertThat(lines.count()).isEqualTo(3);
+    assertThat(lines.contains(1)).isTrue();
+    assertThat(lines.contains(64)).isTrue();
+    assertThat(lines.contains(1000)).isTrue();
+    assertThat(lines.contains(0)).isFalse();
+    assertThat(lines.contains(63)).isFalse();
+    assertThat(lines.contains(5000)).isFalse();
+    assertThat(lines.contains(-1)).isFalse();
+  }
+
+  @Test
+  public void add_range() {
+    LineSet lines = new LineSet();
+    lines.addRange(3, 5);
+    assertThat(lines.toSet()).containsOnly(3, 4, 5);
+
+    lines = new LineSet();
+    lines.addRange(60, 200);
+    assertThat(lines.count()).isEqualTo(141);
+    assertThat(lines.contains(59)).isFalse();
+    assertThat(lines.contains(60)).isTrue();
+    assertThat(lines.contains(128)).isTrue();
+    assertThat(lines.contains(200)).isTrue();
+    assertThat(lines.contains(201)).isFalse();
+
+    lines = new LineSet();
+    lines.addRange(64, 127);
+    assertThat(lines.count()).isEqualTo(64);
+    lines.addRange(10, 9);
+    assertThat(lines.count()).isEqualTo(64);
+  }
+
+  @Test
+  public void add_all() {
+    LineSet lines = new LineSet(ImmutableList.of(1, 2));
+    lines.addAll(new LineSet(ImmutableList.of(2, 300)));
+    assertThat(lines.toSet()).containsOnly(1, 2, 300);
+  }
+
+  @Test
+  public void next_line() {
+    LineSet lines = new LineSet(ImmutableList.of(5, 70, 300));
+    assertThat(lines.nextLine(0)).isEqualTo(5);
+    assertThat(lines.nextLine(5)).isEqualTo(5);
+    assertThat(lines.nextLine(6)).isEqualTo(70);
+    assertThat(lines.nextLine(71)).isEqualTo(300);
+    assertThat(lines.nextLine(301)).isEqualTo(-1);
+    assertThat(lines.nextLine(10000)).isEqualTo(-1);
+  }
+
+  @Test
+  public void clear() {
+    LineSet lines = new LineSet(ImmutableList.of(5, 70));
+    lines.clear();
+    assertThat(lines.isEmpty()).isTrue();
+    assertThat(lines.count()).isEqualTo(0);
+  }
+
+  @Test
+  public void equals_ignores_capacity() {
+    LineSet lines = new LineSet(ImmutableList.of(5));
+    LineSet other = new LineSet(ImmutableList.of(5, 500));
+    assertThat(lines).isNotEqualTo(other);
+    other.clear();
+    other.add(5);
+    assertThat(lines).isEqualTo(other);
+    assertThat(lines.hashCode()).isEqualTo(other.hashCode());
+    assertThat(lines.toString()).isEqualTo("[5]");
+    assertThat(lines).isNotEqualTo("[5]");
+  }
+
+}
@@ -20,9 +20,12 @@
 package org.sonar.java.ast;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.impl.Parser;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.junit.Rule;
@@ -37,9 +40,13 @@ import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
 import org.sonar.sslr.parser.LexerlessGrammar;
 import org.sonar.sslr.parser.ParserAdapter;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.List;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 public class AstScannerTest {
@@ -118,6 +125,38 @@ public class AstScannerTest {
     scanner.scan(ImmutableList.of(new File("src/test/resources/AstScannerNoParseError.txt")));
   }
 
+  @Test
+  public void should_visit_files_in_order_when_parsing_in_parallel() {
+    FileRecorder listener = spy(new FileRecorder());
+
+    AstScanner scanner = new AstScanner(new ParserAdapter<LexerlessGrammar>(Charsets.UTF_8, FakeGrammar.builder().build()));
+    scanner.setParserThreads(3, new Supplier<Parser<LexerlessGrammar>>() {
+      @Override
+      public Parser<LexerlessGrammar> get() {
+        return new ParserAdapter<LexerlessGrammar>(Charsets.UTF_8, FakeGrammar.builder().build());
+      }
+    });
+    scanner.withSquidAstVisitor(listener);
+
+    List<File> files = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      files.add(new File("src/test/resources/AstScannerNoParseError.txt"));
+      files.add(new File("src/test/resources/AstScannerParseError.txt"));
+    }
+    scanner.scan(files);
+
+    assertThat(listener.visitedFiles).isEqualTo(files);
+    verify(listener, times(10)).processRecognitionException(Mockito.any(RecognitionException.class));
+  }
+
+  @Test
+  public void should_not_accept_non_positive_number_of_parser_threads() {
+    AstScanner scanner = new AstScanner(new ParserAdapter<LexerlessGrammar>(Charsets.UTF_8, FakeGrammar.builder().build()));
+
+    thrown.expect(IllegalArgumentException.class);
+    scanner.setParserThreads(0, null);
+  }
+
   private static class FakeAuditListener extends SquidAstVisitor<LexerlessGrammar> implements AstScannerExceptionHandler {
 
     @Override
@@ -130,6 +169,17 @@ public class AstScannerTest {
 
   }
 
+  private static class FileRecorder extends FakeAuditListener {
+
+    private final List<File> visitedFiles = Lists.newArrayList();
+
+    @Override
+    public void visitFile(@Nullable AstNode astNode) {
+      visitedFiles.add(getContext().getFile());
+    }
+
+  }
+
   private static enum FakeGrammar implements GrammarRuleKey {
     ROOT;
 
@@ -21,7 +21,10 @@ package org.sonar.java.ast.visitors;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.FileLinesContext;
@@ -34,10 +37,14 @@ import java.io.File;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 public class FileLinesVisitorTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   @Test
   public void lines_of_code_data() {
     SonarComponents sonarComponents = mock(SonarComponents.class);
@@ -88,4 +95,23 @@ public class FileLinesVisitorTest {
     verify(context).save();
   }
 
+  @Test
+  public void parse_error() throws Exception {
+    SonarComponents sonarComponents = mock(SonarComponents.class);
+    FileLinesContext context = mock(FileLinesContext.class);
+    when(sonarComponents.fileLinesContextFor(Mockito.any(File.class))).thenReturn(context);
+    File file = temp.newFile();
+    Files.write("class A {\n  void foo(\n}\n", file, Charsets.UTF_8);
+
+    AstScanner scanner = JavaAstScanner.create(new JavaConfiguration(Charsets.UTF_8), new FileLinesVisitor(sonarComponents, Charsets.UTF_8));
+    scanner.scan(ImmutableList.of(file));
+
+    for (int line = 1; line <= 3; line++) {
+      verify(context).setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, 0);
+      verify(context).setIntValue(CoreMetrics.COMMENT_LINES_DATA_KEY, line, 0);
+    }
+    verify(context).save();
+    verifyNoMoreInteractions(context);
+  }
+
 }
@@ -0,0 +1,136 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.ast.visitors;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.sonar.sslr.impl.Parser;
+import org.junit.Test;
+import org.sonar.java.ast.parser.JavaParser;
+import org.sonar.java.model.JavaTree;
+import org.sonar.plugins.java.api.JavaFileScanner;
+import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.SyntaxToken;
+import org.sonar.plugins.java.api.tree.SyntaxTrivia;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SubscriptionDispatcherTest {
+
+  private final Parser p = JavaParser.createParser(Charsets.UTF_8);
+
+  @Test
+  public void dispatched_visitors_are_called_as_when_scanned_alone() {
+    JavaFileScannerContext context = context("class A { /* comment */ void foo() { int i = 0; class B { void bar() {} } } }");
+    List<RecordingVisitor> alone = visitors();
+    for (RecordingVisitor visitor : alone) {
+      visitor.scanFile(context);
+    }
+    List<RecordingVisitor> dispatched = visitors();
+    new SubscriptionDispatcher(ImmutableList.<SubscriptionVisitor>copyOf(dispatched)).scanFile(context);
+
+    for (int i = 0; i < alone.size(); i++) {
+      assertThat(dispatched.get(i).calls).isEqualTo(alone.get(i).calls);
+      assertThat(dispatched.get(i).calls).isNotEmpty();
+      assertThat(dispatched.get(i).context).isSameAs(context);
+    }
+  }
+
+  @Test
+  public void only_visitors_relying_on_default_walk_are_dispatched() {
+    JavaFileScanner other = mock(JavaFileScanner.class);
+    RecordingVisitor first = new RecordingVisitor(Tree.Kind.CLASS);
+    RecordingVisitor second = new RecordingVisitor(Tree.Kind.METHOD);
+    SubscriptionVisitor walking = new RecordingVisitor(Tree.Kind.CLASS) {
+      @Override
+      protected void scanTree(Tree tree) {
+        super.scanTree(tree);
+      }
+    };
+    assertThat(SubscriptionDispatcher.canBeDispatched(first)).isTrue();
+    assertThat(SubscriptionDispatcher.canBeDispatched(walking)).isFalse();
+    assertThat(SubscriptionDispatcher.canBeDispatched(other)).isFalse();
+
+    List<JavaFileScanner> scanners = SubscriptionDispatcher.dispatch(ImmutableList.of(other, first, walking, second));
+    assertThat(scanners).hasSize(3);
+    assertThat(scanners.get(0)).isSameAs(other);
+    assertThat(((SubscriptionDispatcher) scanners.get(1)).visitors()).containsExactly(first, second);
+    assertThat(scanners.get(2)).isSameAs(walking);
+
+    assertThat(SubscriptionDispatcher.dispatch(ImmutableList.<JavaFileScanner>of(other, first))).containsExactly(other, first);
+  }
+
+  private JavaFileScannerContext context(String source) {
+    JavaFileScannerContext context = mock(JavaFileScannerContext.class);
+    when(context.getTree()).thenReturn((CompilationUnitTree) p.parse(source));
+    return context;
+  }
+
+  private static List<RecordingVisitor> visitors() {
+    return ImmutableList.of(
+      new RecordingVisitor(Tree.Kind.CLASS, Tree.Kind.METHOD),
+      new RecordingVisitor(Tree.Kind.METHOD, Tree.Kind.VARIABLE, Tree.Kind.METHOD),
+      new RecordingVisitor(Tree.Kind.TOKEN),
+      new RecordingVisitor(Tree.Kind.TRIVIA, Tree.Kind.CLASS));
+  }
+
+  private static class RecordingVisitor extends SubscriptionVisitor {
+
+    private final List<Tree.Kind> nodesToVisit;
+    private final List<String> calls = Lists.newArrayList();
+
+    RecordingVisitor(Tree.Kind... nodesToVisit) {
+      this.nodesToVisit = ImmutableList.copyOf(nodesToVisit);
+    }
+
+    @Override
+    public List<Tree.Kind> nodesToVisit() {
+      return nodesToVisit;
+    }
+
+    @Override
+    public void visitNode(Tree tree) {
+      calls.add("visit " + ((JavaTree) tree).getKind());
+    }
+
+    @Override
+    public void leaveNode(Tree tree) {
+      calls.add("leave " + ((JavaTree) tree).getKind());
+    }
+
+    @Override
+    public void visitToken(SyntaxToken syntaxToken) {
+      calls.add("token " + syntaxToken.text());
+    }
+
+    @Override
+    public void visitTrivia(SyntaxTrivia syntaxTrivia) {
+      calls.add("trivia " + syntaxTrivia.comment());
+    }
+  }
+
+}
@@ -19,17 +19,26 @@
  */
 package org.sonar.java.bytecode.asm;
 
+import com.google.common.collect.Lists;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.sonar.java.bytecode.ClassLoaderBuilder;
 import org.sonar.java.bytecode.asm.AsmClassProvider.DETAIL_LEVEL;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
 
 public class AsmClassProviderImplTest {
 
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   private AsmClassProviderImpl asmClassProviderImpl = new AsmClassProviderImpl();
 
   @Test
@@ -102,6 +111,55 @@ public class AsmClassProviderImplTest {
     throw new IllegalArgumentException();
   }
 
+  @Test
+  public void classes_read_ahead_are_the_same_as_classes_read_on_demand() {
+    AsmClassProviderImpl readingAhead = new AsmClassProviderImpl(ClassLoaderBuilder.create(new File("src/test/files/bytecode/bin/")));
+    readingAhead.setReaderThreads(2);
+    AsmClassProviderImpl readingOnDemand = new AsmClassProviderImpl(ClassLoaderBuilder.create(new File("src/test/files/bytecode/bin/")));
+    List<String> classes = Arrays.asList("tags/Line", "tags/File", "tags/TagName", "java/lang/Integer", "tags/Unknown");
+    for (String internalName : classes) {
+      readingAhead.readAhead(internalName);
+    }
+    for (String internalName : classes) {
+      assertThat(describe(readingAhead.getClass(internalName))).isEqualTo(describe(readingOnDemand.getClass(internalName)));
+    }
+    readingAhead.close();
+  }
+
+  @Test
+  public void classes_already_built_are_not_read_ahead() {
+    AsmClassProviderImpl readingAhead = new AsmClassProviderImpl(ClassLoaderBuilder.create(new File("src/test/files/bytecode/bin/")));
+    readingAhead.setReaderThreads(2);
+    readingAhead.getClass("tags/Line", DETAIL_LEVEL.STRUCTURE_AND_CALLS);
+    readingAhead.getClass("tags/File", DETAIL_LEVEL.STRUCTURE);
+
+    readingAhead.readAhead("tags/Line");
+    readingAhead.readAhead("tags/File");
+
+    assertThat(readingAhead.isReadingAhead("tags/Line")).isFalse();
+    assertThat(readingAhead.isReadingAhead("tags/File")).isTrue();
+    readingAhead.close();
+  }
+
+  private static List<String> describe(AsmClass asmClass) {
+    AsmClass superClass = asmClass.getSuperClass();
+    List<String> result = Lists.newArrayList(asmClass.getDetailLevel() + " " + (superClass == null ? null : superClass.getInternalName()));
+    for (AsmMethod method : asmClass.getMethods()) {
+      result.add(method + " " + method.isBodyLoaded() + " " + method.getOutgoingEdges().size() + " " + method.getThrows());
+    }
+    for (AsmField field : asmClass.getFields()) {
+      result.add(field + " " + field.getOutgoingEdges().size());
+    }
+    Collections.sort(result);
+    return result;
+  }
+
+  @Test
+  public void reader_threads_must_be_positive() {
+    thrown.expect(IllegalArgumentException.class);
+    asmClassProviderImpl.setReaderThreads(0);
+  }
+
   @Test
   public void testPersonalClassLoader() {
     asmClassProviderImpl = new AsmClassProviderImpl(ClassLoaderBuilder.create(new File("src/test/files/bytecode/bin/")));
@@ -19,6 +19,7 @@
  */
 package org.sonar.java.bytecode.asm;
 
+import com.google.common.collect.Iterables;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.sonar.java.bytecode.ClassLoaderBuilder;
@@ -52,6 +53,39 @@ public class AsmMethodTest {
     assertThat(method.getThrows()).containsExactly(class1, class2);
   }
 
+  @Test
+  public void outgoing_edges() {
+    AsmMethod method = new AsmMethod(stringClass, "toString()Ljava/lang/String;");
+    AsmMethod calledMethod = new AsmMethod(numberClass, "intValue()I");
+    AsmField calledField = new AsmField(numberClass, "value");
+    for (int line = 1; line <= 10; line++) {
+      method.addEdge(calledMethod, SourceCodeEdgeUsage.CALLS_METHOD, line);
+    }
+    method.addEdge(new AsmEdge(method, calledField, SourceCodeEdgeUsage.CALLS_FIELD, 42));
+    method.trimEdges();
+
+    assertThat(calledMethod.isUsed()).isTrue();
+    assertThat(calledField.isUsed()).isTrue();
+    assertThat(method.getOutgoingEdges()).hasSize(11);
+    AsmEdge edge = Iterables.getLast(method.getOutgoingEdges());
+    assertThat(edge.getFrom()).isSameAs(method);
+    assertThat(edge.getTo()).isSameAs(calledField);
+    assertThat(edge.getUsage()).isEqualTo(SourceCodeEdgeUsage.CALLS_FIELD);
+    assertThat(edge.getSourceLineNumber()).isEqualTo(42);
+    assertThat(Iterables.get(method.getOutgoingEdges(), 9).getSourceLineNumber()).isEqualTo(10);
+    assertThat(method.getCallsToMethod()).hasSize(10);
+    assertThat(method.getCallsToField()).containsExactly(calledField);
+
+    method.clearOutogingEdges();
+    assertThat(method.getOutgoingEdges()).isEmpty();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void edges_must_start_from_their_resource() {
+    AsmMethod method = new AsmMethod(stringClass, "toString()Ljava/lang/String;");
+    method.addEdge(new AsmEdge(stringClass, numberClass, SourceCodeEdgeUsage.USES));
+  }
+
   @Test
   public void testAsmMethod() {
     AsmMethod method = new AsmMethod(new AsmClass("java/lang/String"), "toString()Ljava/lang/String;");
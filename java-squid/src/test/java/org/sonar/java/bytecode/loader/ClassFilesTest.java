@@ -0,0 +1,56 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.bytecode.loader;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ClassFilesTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void class_files_should_be_taken_from_first_directory() throws Exception {
+    File first = temp.newFolder("first");
+    File second = temp.newFolder("second");
+    File firstClass = new File(first, "org/example/Foo.class");
+    File secondClass = new File(second, "org/example/Foo.class");
+    File otherClass = new File(second, "org/example/Bar.class");
+    for (File file : ImmutableList.of(firstClass, secondClass, otherClass)) {
+      assertThat(file.getParentFile().mkdirs() || file.getParentFile().isDirectory()).isTrue();
+      assertThat(file.createNewFile()).isTrue();
+    }
+    assertThat(new File(second, "org/example/readme.txt").createNewFile()).isTrue();
+
+    Map<String, File> classFiles = ClassFiles.index(ImmutableList.of(first, second, new File(first, "missing")));
+    assertThat(classFiles.keySet()).containsOnly("org/example/Foo", "org/example/Bar");
+    assertThat(classFiles.get("org/example/Foo")).isEqualTo(firstClass);
+    assertThat(classFiles.get("org/example/Bar")).isEqualTo(otherClass);
+  }
+
+}
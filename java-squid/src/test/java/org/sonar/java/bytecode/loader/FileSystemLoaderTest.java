@@ -61,6 +61,15 @@ public class FileSystemLoaderTest {
     loader.findResource("tags/TagName.class");
   }
 
+  @Test
+  public void class_files() {
+    FileSystemLoader loader = new FileSystemLoader(new File("src/test/files/bytecode/bin/tags/impl"));
+    assertThat(loader.classFiles()).hasSize(3);
+    loader = new FileSystemLoader(new File("src/test/files/bytecode/bin/"));
+    assertThat(loader.classFiles()).hasSize(18).contains("LambdaExpressions.class", "tags/TagName.class");
+    loader.close();
+  }
+
   @Test
   public void testLoadBytes() throws Exception {
     File dir = new File("src/test/files/bytecode/bin/");
@@ -88,6 +88,13 @@ public class JarLoaderTest {
     loader.loadBytes("META-INF/MANIFEST.MF");
   }
 
+  @Test
+  public void class_files() {
+    JarLoader loader = new JarLoader(new File("src/test/files/bytecode/lib/hello.jar"));
+    assertThat(loader.classFiles()).containsOnly("org/sonar/tests/Hello.class");
+    loader.close();
+  }
+
   @Test
   public void closeCanBeCalledMultipleTimes() throws Exception {
     File jar = new File("src/test/files/bytecode/lib/hello.jar");
@@ -0,0 +1,112 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.bytecode.loader;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MappedZipFileTest {
+
+  private static final String CONTENT = Strings.repeat("compressible content ", 1000);
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void read_stored_and_deflated_entries() throws Exception {
+    File file = temp.newFile("entries.zip");
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+    try {
+      out.putNextEntry(new ZipEntry("dir/"));
+      out.putNextEntry(new ZipEntry("dir/deflated.txt"));
+      out.write(CONTENT.getBytes(Charsets.UTF_8));
+      out.putNextEntry(storedEntry("dir/stored.txt", CONTENT.getBytes(Charsets.UTF_8)));
+      out.write(CONTENT.getBytes(Charsets.UTF_8));
+      out.putNextEntry(new ZipEntry("empty.txt"));
+      out.setComment("archive comment");
+    } finally {
+      out.close();
+    }
+
+    MappedZipFile zipFile = new MappedZipFile(file);
+    assertThat(zipFile.names()).containsOnly("dir/deflated.txt", "dir/stored.txt", "empty.txt");
+    assertThat(new String(zipFile.read("dir/deflated.txt"), Charsets.UTF_8)).isEqualTo(CONTENT);
+    assertThat(new String(zipFile.read("dir/stored.txt"), Charsets.UTF_8)).isEqualTo(CONTENT);
+    assertThat(zipFile.read("empty.txt")).isEmpty();
+    assertThat(zipFile.read("dir/")).isNull();
+    assertThat(zipFile.read("unknown")).isNull();
+    assertThat(zipFile.size("dir/deflated.txt")).isEqualTo(CONTENT.length());
+    assertThat(zipFile.size("unknown")).isEqualTo(-1);
+
+    zipFile.close();
+    zipFile.close();
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("zip file closed");
+    zipFile.read("dir/stored.txt");
+  }
+
+  @Test
+  public void read_jar() throws Exception {
+    MappedZipFile zipFile = new MappedZipFile(new File("src/test/files/bytecode/lib/hello.jar"));
+    assertThat(zipFile.names()).contains("META-INF/MANIFEST.MF", "org/sonar/tests/Hello.class");
+    assertThat(new String(zipFile.read("META-INF/MANIFEST.MF"), Charsets.UTF_8)).contains("Manifest-Version: 1.0");
+  }
+
+  @Test
+  public void not_a_zip_archive() throws Exception {
+    thrown.expect(ZipException.class);
+    thrown.expectMessage("Not a ZIP archive");
+    new MappedZipFile(new File("src/test/files/bytecode/src/tags/TagName.java"));
+  }
+
+  @Test
+  public void empty_file() throws Exception {
+    thrown.expect(ZipException.class);
+    new MappedZipFile(temp.newFile("empty.zip"));
+  }
+
+  private static ZipEntry storedEntry(String name, byte[] content) throws IOException {
+    ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(content.length);
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    entry.setCrc(crc.getValue());
+    return entry;
+  }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.bytecode.loader;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SignatureIndexLoaderTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File jar;
+  private File indexDirectory;
+
+  @Before
+  public void setUp() throws Exception {
+    jar = temp.newFile("hello.jar");
+    Files.copy(new File("src/test/files/bytecode/lib/hello.jar"), jar);
+    indexDirectory = new File(temp.getRoot(), "index");
+  }
+
+  @Test
+  public void shouldThrowIllegalArgumentException() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("file can't be null");
+    new SignatureIndexLoader(null, indexDirectory);
+  }
+
+  @Test
+  public void should_load_signatures_of_classes() throws Exception {
+    SignatureIndexLoader loader = new SignatureIndexLoader(jar, indexDirectory);
+    assertThat(SignatureIndexLoader.indexFile(jar, indexDirectory).isFile()).isTrue();
+
+    assertThat(loader.loadBytes("org/sonar/tests/NotFound.class")).isNull();
+    byte[] bytes = loader.loadBytes("org/sonar/tests/Hello.class");
+    assertThat(bytes).isNotNull();
+    assertThat(bytes.length).isLessThan(new JarLoader(jar).loadBytes("org/sonar/tests/Hello.class").length);
+
+    final boolean[] hasCode = {false};
+    new ClassReader(bytes).accept(new ClassVisitor(Opcodes.ASM5) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        return new MethodVisitor(Opcodes.ASM5) {
+          @Override
+          public void visitCode() {
+            hasCode[0] = true;
+          }
+        };
+      }
+    }, 0);
+    assertThat(hasCode[0]).isFalse();
+
+    URL url = loader.findResource("org/sonar/tests/Hello.class");
+    assertThat(url.toString()).endsWith("hello.jar!/org/sonar/tests/Hello.class");
+    InputStream is = url.openStream();
+    try {
+      assertThat(IOUtils.toByteArray(is)).isEqualTo(bytes);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+    loader.close();
+  }
+
+  @Test
+  public void should_load_other_resources_from_jar() throws Exception {
+    SignatureIndexLoader loader = new SignatureIndexLoader(jar, indexDirectory);
+
+    assertThat(loader.findResource("notfound")).isNull();
+    assertThat(loader.loadBytes("notfound")).isNull();
+
+    URL url = loader.findResource("META-INF/MANIFEST.MF");
+    assertThat(url.toString()).endsWith("hello.jar!/META-INF/MANIFEST.MF");
+    ByteArrayInputStream is = new ByteArrayInputStream(loader.loadBytes("META-INF/MANIFEST.MF"));
+    assertThat(IOUtils.readLines(is)).contains("Manifest-Version: 1.0");
+    loader.close();
+  }
+
+  @Test
+  public void should_reuse_up_to_date_index() throws Exception {
+    new SignatureIndexLoader(jar, indexDirectory).close();
+    File indexFile = SignatureIndexLoader.indexFile(jar, indexDirectory);
+    long lastModified = indexFile.lastModified() - 10000;
+    indexFile.setLastModified(lastModified);
+
+    new SignatureIndexLoader(jar, indexDirectory).close();
+    assertThat(indexFile.lastModified()).isEqualTo(lastModified);
+
+    jar.setLastModified(jar.lastModified() - 10000);
+    SignatureIndexLoader loader = new SignatureIndexLoader(jar, indexDirectory);
+    assertThat(indexFile.lastModified()).isNotEqualTo(lastModified);
+    assertThat(loader.loadBytes("org/sonar/tests/Hello.class")).isNotNull();
+    loader.close();
+  }
+
+  @Test
+  public void should_rebuild_corrupted_index() throws Exception {
+    indexDirectory.mkdirs();
+    File indexFile = SignatureIndexLoader.indexFile(jar, indexDirectory);
+    Files.write(new byte[] {1, 2, 3}, indexFile);
+
+    SignatureIndexLoader loader = new SignatureIndexLoader(jar, indexDirectory);
+    assertThat(loader.loadBytes("org/sonar/tests/Hello.class")).isNotNull();
+    loader.close();
+  }
+
+  @Test
+  public void closeCanBeCalledMultipleTimes() throws Exception {
+    SignatureIndexLoader loader = new SignatureIndexLoader(jar, indexDirectory);
+    loader.loadBytes("META-INF/MANIFEST.MF");
+    loader.close();
+    loader.close();
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("index closed");
+    loader.loadBytes("org/sonar/tests/Hello.class");
+  }
+
+  @Test
+  public void testCorruptedJar() {
+    File file = new File("src/test/files/bytecode/src/tags/TagName.java");
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Unable to index " + file.getAbsolutePath());
+    new SignatureIndexLoader(file, indexDirectory);
+  }
+
+}
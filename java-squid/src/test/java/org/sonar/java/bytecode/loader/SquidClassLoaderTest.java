@@ -25,6 +25,7 @@ import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.util.Arrays;
@@ -37,6 +38,9 @@ public class SquidClassLoaderTest {
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private SquidClassLoader classLoader;
 
   @After
@@ -70,6 +74,18 @@ public class SquidClassLoaderTest {
     classLoader.loadClass("foo.Unknown");
   }
 
+  @Test
+  public void createFromJarWithSignatureIndex() throws Exception {
+    File jar = new File("src/test/files/bytecode/lib/hello.jar");
+    File indexDirectory = temp.newFolder();
+    classLoader = new SquidClassLoader(Arrays.asList(jar), indexDirectory);
+
+    assertThat(classLoader.getResourceAsStream("org/sonar/tests/Hello.class")).isNotNull();
+    assertThat(classLoader.getResource("org/sonar/tests/Hello.class")).isNotNull();
+    assertThat(classLoader.getResource("META-INF/MANIFEST.MF")).isNotNull();
+    assertThat(indexDirectory.list()).hasSize(1);
+  }
+
   @Test
   public void unknownJarIsIgnored() throws Exception {
     File jar = new File("src/test/files/bytecode/lib/unknown.jar");
@@ -101,6 +117,21 @@ public class SquidClassLoaderTest {
     classLoader.loadClass("tags.Unknown");
   }
 
+  @Test
+  public void classes_are_looked_up_in_loaders_of_their_package() throws Exception {
+    File jar = new File("src/test/files/bytecode/lib/hello.jar");
+    File dir = new File("src/test/files/bytecode/bin/");
+    classLoader = new SquidClassLoader(Arrays.asList(jar, dir, jar));
+
+    assertThat(Iterators.forEnumeration(classLoader.findResources("org/sonar/tests/Hello.class"))).hasSize(2);
+    assertThat(Iterators.forEnumeration(classLoader.findResources("tags/TagName.class"))).hasSize(1);
+    assertThat(Iterators.forEnumeration(classLoader.findResources("META-INF/MANIFEST.MF"))).hasSize(2);
+    assertThat(classLoader.loadClass("tags.TagName")).isNotNull();
+    assertThat(classLoader.loadClass("org.sonar.tests.Hello")).isNotNull();
+    assertThat(classLoader.findResource("org/sonar/tests/Unknown.class")).isNull();
+    assertThat(classLoader.findResource("unknown/Unknown.class")).isNull();
+  }
+
   @Test
   public void testFindResource() throws Exception {
     File dir = new File("src/test/files/bytecode/bin/");
@@ -118,6 +149,17 @@ public class SquidClassLoaderTest {
     assertThat(Iterators.forEnumeration(classLoader.findResources("notfound"))).hasSize(0);
   }
 
+  @Test
+  public void resources_can_not_be_found_once_closed() throws Exception {
+    File jar = new File("src/test/files/bytecode/lib/hello.jar");
+    classLoader = new SquidClassLoader(Arrays.asList(jar));
+    classLoader.close();
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Class loader closed");
+    classLoader.findResource("unknown/Unknown.class");
+  }
+
   @Test
   public void closeCanBeCalledMultipleTimes() throws Exception {
     File jar = new File("src/test/files/bytecode/lib/hello.jar");
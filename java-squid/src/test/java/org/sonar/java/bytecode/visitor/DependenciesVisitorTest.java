@@ -19,16 +19,71 @@
  */
 package org.sonar.java.bytecode.visitor;
 
+import org.junit.Before;
 import org.junit.Test;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.resources.File;
+import org.sonar.api.resources.Resource;
 import org.sonar.graph.DirectedGraph;
+import org.sonar.java.bytecode.asm.AsmClass;
+import org.sonar.java.bytecode.asm.AsmEdge;
+import org.sonar.plugins.java.api.JavaResourceLocator;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class DependenciesVisitorTest {
 
+  private final DirectedGraph<Resource, Dependency> graph = new DirectedGraph<Resource, Dependency>();
+  private final ResourceMapping resourceMapping = new ResourceMapping();
+  private final JavaResourceLocator javaResourceLocator = mock(JavaResourceLocator.class);
+  private final DependenciesVisitor visitor = new DependenciesVisitor(graph);
+
+  private final File a1 = new File("a/A1.java");
+  private final File a2 = new File("a/A2.java");
+  private final File b1 = new File("b/B1.java");
+  private final File b2 = new File("b/B2.java");
+
+  @Before
+  public void setUp() {
+    when(javaResourceLocator.getResourceMapping()).thenReturn(resourceMapping);
+    when(javaResourceLocator.findResourceByClassName("a/A1")).thenReturn(a1);
+    when(javaResourceLocator.findResourceByClassName("a/A2")).thenReturn(a2);
+    when(javaResourceLocator.findResourceByClassName("b/B1")).thenReturn(b1);
+    when(javaResourceLocator.findResourceByClassName("b/B2")).thenReturn(b2);
+    visitor.setJavaResourceLocator(javaResourceLocator);
+  }
+
   @Test
-  public void testName() throws Exception {
+  public void dependencies_between_files_and_packages() {
+    visit("a/A1", "a/A2", "b/B1", "b/B1", "b/B2", "a/A1", "unknown/Unknown");
+    visit("a/A2", "b/B1");
+    visit("b/B1", "a/A1");
+    assertThat(graph.getEdges(graph.getVertices())).isEmpty();
+
+    visitor.completeGraph();
+    visitor.completeGraph();
+
+    assertThat(graph.getEdge(a1, a2).getWeight()).isEqualTo(1);
+    assertThat(graph.getEdge(a1, b1).getWeight()).isEqualTo(1);
+    assertThat(graph.getEdge(a1, a1)).isNull();
+    Dependency packageEdge = graph.getEdge(a1.getParent(), b1.getParent());
+    assertThat(packageEdge.getWeight()).isEqualTo(4);
+    assertThat(resourceMapping.getSubDependencies(packageEdge)).containsOnly(graph.getEdge(a1, b1), graph.getEdge(a1, b2), graph.getEdge(a2, b1));
+    assertThat(graph.getEdge(a1, b1).getParent()).isSameAs(packageEdge);
+    assertThat(graph.getEdge(b1.getParent(), a1.getParent()).getWeight()).isEqualTo(2);
+    assertThat(graph.getEdge(a1, a2).getParent()).isNull();
+  }
+
+  private void visit(String className, String... targetClassNames) {
+    AsmClass asmClass = new AsmClass(className);
+    visitor.visitClass(asmClass);
+    for (String targetClassName : targetClassNames) {
+      AsmEdge edge = mock(AsmEdge.class);
+      when(edge.getTargetAsmClass()).thenReturn(new AsmClass(targetClassName));
+      visitor.visitEdge(edge);
+    }
   }
 
 }
@@ -0,0 +1,58 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.bytecode.visitor;
+
+import org.junit.Test;
+import org.sonar.api.resources.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FileDependenciesTest {
+
+  private final FileDependencies dependencies = new FileDependencies();
+
+  @Test
+  public void dependencies_are_recorded_once_in_order() {
+    File[] files = new File[100];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = new File("p/F" + i + ".java");
+    }
+    for (int round = 0; round < 2; round++) {
+      for (int i = 0; i < files.length; i++) {
+        for (int j = 0; j < files.length; j++) {
+          if (i != j) {
+            assertThat(dependencies.add(files[i], files[j])).isEqualTo(round == 0);
+          }
+        }
+      }
+    }
+    assertThat(dependencies.size()).isEqualTo(100 * 99);
+    assertThat(dependencies.from(0)).isEqualTo(files[0]);
+    assertThat(dependencies.to(0)).isEqualTo(files[1]);
+    assertThat(dependencies.from(100 * 99 - 1)).isEqualTo(files[99]);
+    assertThat(dependencies.to(100 * 99 - 1)).isEqualTo(files[98]);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void file_can_not_depend_on_itself() {
+    dependencies.add(new File("p/F.java"), new File("p/F.java"));
+  }
+
+}
@@ -19,14 +19,16 @@
  */
 package org.sonar.java.filters;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.batch.IssueFilterChain;
 import org.sonar.api.rule.RuleKey;
 
+import java.util.List;
+
 import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 import static org.mockito.Matchers.isA;
@@ -50,10 +52,10 @@ public class SuppressWarningsFilterTest {
     when(issue.componentKey()).thenReturn(COMPONENT_KEY);
     when(issue.ruleKey()).thenReturn(RuleKey.of("squid", "firstIssue"));
 
-    Multimap<Integer, String> suppressWarningLines = HashMultimap.create();
-    addWarning(suppressWarningLines, "squid:secondIssue", 12, 16);
+    List<SuppressWarningsRange> suppressWarnings = Lists.newArrayList();
+    addWarning(suppressWarnings, "squid:secondIssue", 12, 16);
 
-    filter.addComponent(COMPONENT_KEY, suppressWarningLines);
+    filter.addComponent(COMPONENT_KEY, suppressWarnings);
 
     // issue on file
     when(issue.line()).thenReturn(null);
@@ -72,10 +74,10 @@ public class SuppressWarningsFilterTest {
     when(issue.componentKey()).thenReturn(COMPONENT_KEY + "2");
     when(issue.ruleKey()).thenReturn(RuleKey.of("squid", "firstIssue"));
 
-    Multimap<Integer, String> suppressWarningLines = HashMultimap.create();
-    addWarning(suppressWarningLines, "squid:secondIssue", 12, 16);
+    List<SuppressWarningsRange> suppressWarnings = Lists.newArrayList();
+    addWarning(suppressWarnings, "squid:secondIssue", 12, 16);
 
-    filter.addComponent(COMPONENT_KEY, suppressWarningLines);
+    filter.addComponent(COMPONENT_KEY, suppressWarnings);
 
     // issue on file
     when(issue.line()).thenReturn(null);
@@ -92,10 +94,10 @@ public class SuppressWarningsFilterTest {
     when(issue.componentKey()).thenReturn(COMPONENT_KEY);
     when(issue.ruleKey()).thenReturn(RuleKey.of("pmd", "CloseResource"));
 
-    Multimap<Integer, String> suppressWarningLines = HashMultimap.create();
-    addWarning(suppressWarningLines, "pmd:CloseResource", 12, 16);
+    List<SuppressWarningsRange> suppressWarnings = Lists.newArrayList();
+    addWarning(suppressWarnings, "pmd:CloseResource", 12, 16);
 
-    filter.addComponent(COMPONENT_KEY, suppressWarningLines);
+    filter.addComponent(COMPONENT_KEY, suppressWarnings);
 
     // issue on every line covered by @SuppressWarnings, but same as explicitly mentioned
     for (int i = 12; i <= 16; i++) {
@@ -110,10 +112,10 @@ public class SuppressWarningsFilterTest {
     when(issue.componentKey()).thenReturn(COMPONENT_KEY);
     when(issue.ruleKey()).thenReturn(RuleKey.of("pmd", "CloseResource"));
 
-    Multimap<Integer, String> suppressWarningLines = HashMultimap.create();
-    addWarning(suppressWarningLines, "pmd:OtherIssue", 12, 16);
+    List<SuppressWarningsRange> suppressWarnings = Lists.newArrayList();
+    addWarning(suppressWarnings, "pmd:OtherIssue", 12, 16);
 
-    filter.addComponent(COMPONENT_KEY, suppressWarningLines);
+    filter.addComponent(COMPONENT_KEY, suppressWarnings);
 
     // issue on line covered by @SuppressWarnings, but different from the one explicitly mentioned
     when(issue.line()).thenReturn(15);
@@ -126,10 +128,10 @@ public class SuppressWarningsFilterTest {
     when(issue.componentKey()).thenReturn(COMPONENT_KEY);
     when(issue.ruleKey()).thenReturn(RuleKey.of("squid", "S1309"));
 
-    Multimap<Integer, String> suppressWarningLines = HashMultimap.create();
-    addWarning(suppressWarningLines, "all", 12, 16);
+    List<SuppressWarningsRange> suppressWarnings = Lists.newArrayList();
+    addWarning(suppressWarnings, "all", 12, 16);
 
-    filter.addComponent(COMPONENT_KEY, suppressWarningLines);
+    filter.addComponent(COMPONENT_KEY, suppressWarnings);
 
     // issue on line covered by @SuppressWarnings
     when(issue.line()).thenReturn(12);
@@ -142,11 +144,11 @@ public class SuppressWarningsFilterTest {
     when(issue.componentKey()).thenReturn(COMPONENT_KEY);
     when(issue.ruleKey()).thenReturn(RuleKey.of("squid", "S1309"));
 
-    Multimap<Integer, String> suppressWarningLines = HashMultimap.create();
-    addWarning(suppressWarningLines, "unchecked", 12, 16);
-    addWarning(suppressWarningLines, "cast", 13, 15);
+    List<SuppressWarningsRange> suppressWarnings = Lists.newArrayList();
+    addWarning(suppressWarnings, "unchecked", 12, 16);
+    addWarning(suppressWarnings, "cast", 13, 15);
 
-    filter.addComponent(COMPONENT_KEY, suppressWarningLines);
+    filter.addComponent(COMPONENT_KEY, suppressWarnings);
 
     // issue on line covered by @SuppressWarnings
     when(issue.line()).thenReturn(12);
@@ -162,18 +164,39 @@ public class SuppressWarningsFilterTest {
     when(issue.componentKey()).thenReturn(COMPONENT_KEY);
     when(issue.ruleKey()).thenReturn(RuleKey.of("squid", "firstIssue"));
 
-    Multimap<Integer, String> suppressWarningLines = HashMultimap.create();
-    addWarning(suppressWarningLines, "all", 12, 16);
+    List<SuppressWarningsRange> suppressWarnings = Lists.newArrayList();
+    addWarning(suppressWarnings, "all", 12, 16);
 
-    filter.addComponent(COMPONENT_KEY, suppressWarningLines);
+    filter.addComponent(COMPONENT_KEY, suppressWarnings);
 
     when(issue.line()).thenReturn(12);
     assertFalse(filter.accept(issue, chain));
   }
 
-  private void addWarning(Multimap<Integer, String> multimap, String warning, int startLine, int endLine) {
-    for (int i = startLine; i <= endLine; i++) {
-      multimap.put(i, warning);
+  @Test
+  public void should_ignore_issue_if_covered_by_any_of_nested_or_disjoint_warnings() {
+    Issue issue = mock(Issue.class);
+    when(issue.componentKey()).thenReturn(COMPONENT_KEY);
+    when(issue.ruleKey()).thenReturn(RuleKey.of("squid", "firstIssue"));
+
+    List<SuppressWarningsRange> suppressWarnings = Lists.newArrayList();
+    addWarning(suppressWarnings, "unchecked", 1, 100);
+    addWarning(suppressWarnings, "squid:firstIssue", 60, 70);
+    addWarning(suppressWarnings, "cast", 10, 90);
+    addWarning(suppressWarnings, "squid:firstIssue", 20, 30);
+    addWarning(suppressWarnings, "squid:firstIssue", 200, 200);
+    addWarning(suppressWarnings, "not a rule key", 40, 50);
+
+    filter.addComponent(COMPONENT_KEY, suppressWarnings);
+
+    for (int line = 1; line <= 210; line++) {
+      when(issue.line()).thenReturn(line);
+      boolean suppressed = (20 <= line && line <= 30) || (60 <= line && line <= 70) || line == 200;
+      assertTrue(filter.accept(issue, chain) != suppressed);
     }
   }
+
+  private void addWarning(List<SuppressWarningsRange> suppressWarnings, String warning, int startLine, int endLine) {
+    suppressWarnings.add(new SuppressWarningsRange(startLine, endLine, ImmutableList.of(warning)));
+  }
 }
@@ -0,0 +1,191 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.incremental;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.source.Highlightable;
+import org.sonar.java.SonarComponents;
+import org.sonar.java.ast.parser.JavaParser;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ResultsCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File cacheFile;
+  private File a;
+  private File b;
+  private File c;
+  private File d;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheFile = new File(temp.getRoot(), "cache/results.bin");
+    a = write("A.java", "class A { void foo() { int i = 0; } }");
+    b = write("B.java", "class B { A a; }");
+    c = write("C.java", "class C { }");
+    d = write("D.java", "class D { B b; }");
+  }
+
+  @Test
+  public void every_file_is_analyzed_without_previous_results() {
+    ResultsCache cache = analyze("fingerprint");
+    for (File file : files()) {
+      assertThat(cache.isUnchanged(file)).isFalse();
+      assertThat(cache.recordingFor(file)).isNotNull();
+    }
+    assertThat(cache.recordingFor(a).declaredTypes()).containsOnly("A");
+    assertThat(cache.recordingFor(b).identifiers()).containsOnly("A");
+  }
+
+  @Test
+  public void unchanged_files_are_not_analyzed() {
+    analyze("fingerprint");
+    ResultsCache cache = analyze("fingerprint");
+    for (File file : files()) {
+      assertThat(cache.isUnchanged(file)).isTrue();
+      assertThat(cache.recordingFor(file)).isNull();
+      assertThat(cache.resultsFor(file).declaredTypes()).isNotEmpty();
+    }
+  }
+
+  @Test
+  public void change_of_body_does_not_invalidate_dependencies() throws Exception {
+    analyze("fingerprint");
+    write("A.java", "class A { void foo() { int i = 1; } }");
+    ResultsCache cache = analyze("fingerprint");
+    assertThat(cache.isUnchanged(a)).isFalse();
+    assertThat(cache.isUnchanged(b)).isTrue();
+    assertThat(cache.isUnchanged(c)).isTrue();
+    assertThat(cache.isUnchanged(d)).isTrue();
+  }
+
+  @Test
+  public void change_of_declarations_invalidates_dependencies() throws Exception {
+    analyze("fingerprint");
+    write("A.java", "class A { void foo(int j) { int i = 0; } }");
+    ResultsCache cache = analyze("fingerprint");
+    assertThat(cache.isUnchanged(a)).isFalse();
+    assertThat(cache.isUnchanged(b)).isFalse();
+    assertThat(cache.isUnchanged(c)).isTrue();
+    assertThat(cache.isUnchanged(d)).isFalse();
+    assertThat(cache.recordingFor(b).measures(Collections.<String, Metric>emptyMap())).isEmpty();
+  }
+
+  @Test
+  public void deletion_invalidates_dependencies() {
+    analyze("fingerprint");
+    ResultsCache cache = new ResultsCache(cacheFile, "fingerprint", Charsets.UTF_8);
+    cache.computeChanges(ImmutableList.of(b, c, d), Collections.<File>emptyList());
+    assertThat(cache.isUnchanged(b)).isFalse();
+    assertThat(cache.isUnchanged(c)).isTrue();
+  }
+
+  @Test
+  public void previous_results_are_ignored_when_fingerprint_changes() {
+    analyze("fingerprint");
+    ResultsCache cache = analyze("other fingerprint");
+    for (File file : files()) {
+      assertThat(cache.isUnchanged(file)).isFalse();
+    }
+  }
+
+  @Test
+  public void previous_results_are_ignored_when_corrupted() throws Exception {
+    analyze("fingerprint");
+    Files.write(new byte[] {1, 2, 3}, cacheFile);
+    ResultsCache cache = analyze("fingerprint");
+    assertThat(cache.isUnchanged(a)).isFalse();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void no_results_to_replay_for_analyzed_file() {
+    analyze("fingerprint").resultsFor(a);
+  }
+
+  @Test
+  public void recorded_perspectives_are_replayed() {
+    ResultsCache cache = new ResultsCache(cacheFile, "fingerprint", Charsets.UTF_8);
+    cache.computeChanges(ImmutableList.of(a), Collections.<File>emptyList());
+    FileLinesContext fileLinesContext = cache.recordingFor(a).record(mock(FileLinesContext.class));
+    fileLinesContext.setIntValue("ncloc_data", 1, 1);
+    fileLinesContext.setStringValue("comment_lines_data", 2, "x");
+    fileLinesContext.save();
+    cache.recordingFor(a).record(mock(Highlightable.class));
+    cache.save();
+
+    cache = new ResultsCache(cacheFile, "fingerprint", Charsets.UTF_8);
+    cache.computeChanges(ImmutableList.of(a), Collections.<File>emptyList());
+    SonarComponents sonarComponents = mock(SonarComponents.class);
+    FileLinesContext replayedContext = mock(FileLinesContext.class);
+    when(sonarComponents.fileLinesContextFor(a)).thenReturn(replayedContext);
+    cache.resultsFor(a).replayPerspectives(a, sonarComponents);
+
+    verify(replayedContext).setIntValue("ncloc_data", 1, 1);
+    verify(replayedContext).setStringValue("comment_lines_data", 2, "x");
+    verify(replayedContext).save();
+    verify(sonarComponents, never()).highlightableFor(a);
+    verify(sonarComponents, never()).symbolizableFor(a);
+  }
+
+  private ResultsCache analyze(String fingerprint) {
+    ResultsCache cache = new ResultsCache(cacheFile, fingerprint, Charsets.UTF_8);
+    cache.computeChanges(files(), Collections.<File>emptyList());
+    for (File file : files()) {
+      FileResults results = cache.recordingFor(file);
+      if (results != null) {
+        SignatureVisitor.computeSignature((CompilationUnitTree) JavaParser.createParser(Charsets.UTF_8).parse(file), results);
+      }
+    }
+    cache.save();
+    return cache;
+  }
+
+  private List<File> files() {
+    return ImmutableList.of(a, b, c, d);
+  }
+
+  private File write(String name, String content) throws IOException {
+    File file = new File(temp.getRoot(), name);
+    Files.write(content, file, Charsets.UTF_8);
+    return file;
+  }
+
+}
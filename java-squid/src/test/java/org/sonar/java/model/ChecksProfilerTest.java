@@ -0,0 +1,129 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.model;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.java.api.JavaFileScanner;
+import org.sonar.plugins.java.api.JavaFileScannerContext;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ChecksProfilerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private final ChecksProfiler profiler = new ChecksProfiler();
+
+  @Test
+  public void profiles_are_sorted_from_the_slowest() throws Exception {
+    profiler.scanFile(new FastScanner(), context("A.java"));
+    profiler.scanFile(new SlowScanner(), context("A.java"));
+    profiler.scanFile(new SlowScanner(), context("B.java"));
+
+    List<ChecksProfiler.CheckProfile> profiles = profiler.profiles();
+    assertThat(profiles).hasSize(2);
+    assertThat(profiles.get(0).name()).isEqualTo(SlowScanner.class.getName());
+    assertThat(profiles.get(0).files()).isEqualTo(2);
+    assertThat(profiles.get(0).wallTimeNanos()).isGreaterThanOrEqualTo(20000000L);
+    assertThat(profiles.get(0).allocatedBytes()).isNotEqualTo(0);
+    assertThat(profiles.get(1).name()).isEqualTo(FastScanner.class.getName());
+    assertThat(profiles.get(1).files()).isEqualTo(1);
+
+    String report = profiler.report();
+    assertThat(report.indexOf(SlowScanner.class.getName())).isLessThan(report.indexOf(FastScanner.class.getName()));
+  }
+
+  @Test
+  public void measures_which_can_not_be_taken_are_not_available() {
+    ChecksProfiler unsupported = new ChecksProfiler(false, false);
+    unsupported.scanFile(new SlowScanner(), context("A.java"));
+
+    assertThat(unsupported.profiles().get(0).allocatedBytes()).isEqualTo(-1);
+    String line = unsupported.report().split("\\r?\\n")[1];
+    assertThat(line).matches(" *\\d+ +n/a +n/a +1  " + SlowScanner.class.getName().replace("$", "\\$") + ".*");
+
+    profiler.scanFile(new SlowScanner(), context("A.java"));
+    assertThat(profiler.report()).doesNotContain("n/a");
+  }
+
+  @Test
+  public void failure_of_scanner_is_profiled() {
+    try {
+      profiler.scanFile(new JavaFileScanner() {
+        @Override
+        public void scanFile(JavaFileScannerContext context) {
+          throw new IllegalStateException();
+        }
+      }, context("A.java"));
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertThat(profiler.profiles().get(0).files()).isEqualTo(1);
+  }
+
+  @Test
+  public void json() throws Exception {
+    profiler.scanFile(new FastScanner(), context("dir\\A \"quoted\".java"));
+    File file = new File(temp.getRoot(), "profile/checks.json");
+    profiler.writeJson(file);
+
+    String json = Files.toString(file, Charsets.UTF_8);
+    assertThat(json).startsWith("{\"checks\":[{\"check\":\"" + FastScanner.class.getName() + "\",\"files\":1,\"wallTimeNanos\":");
+    assertThat(json).contains("\"slowestFiles\":[{\"file\":\"dir\\\\A \\\"quoted\\\".java\",\"wallTimeNanos\":");
+    assertThat(json).endsWith("}]}]}");
+  }
+
+  private static JavaFileScannerContext context(String fileName) {
+    JavaFileScannerContext context = mock(JavaFileScannerContext.class);
+    when(context.getFile()).thenReturn(new File(fileName));
+    return context;
+  }
+
+  private static class FastScanner implements JavaFileScanner {
+    @Override
+    public void scanFile(JavaFileScannerContext context) {
+      // nothing to do
+    }
+  }
+
+  private static class SlowScanner implements JavaFileScanner {
+    @Override
+    public void scanFile(JavaFileScannerContext context) {
+      byte[] bytes = new byte[1024];
+      bytes[0] = 1;
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+}
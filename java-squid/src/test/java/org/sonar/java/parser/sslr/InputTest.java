@@ -87,6 +87,23 @@ public class InputTest {
       2, 1);
   }
 
+  @Test
+  public void lines() {
+    assertThat(new Input("".toCharArray()).lines()).isEqualTo(1);
+    assertThat(new Input("abc".toCharArray()).lines()).isEqualTo(1);
+    assertThat(new Input("a\nb\r\nc\rd".toCharArray()).lines()).isEqualTo(4);
+    assertThat(new Input("a\r\n".toCharArray()).lines()).isEqualTo(2);
+  }
+
+  @Test
+  public void lineStartIndex() {
+    Input input = new Input("a\nb\r\nc\rd".toCharArray());
+    assertThat(input.lineStartIndex(1)).isEqualTo(0);
+    assertThat(input.lineStartIndex(2)).isEqualTo(2);
+    assertThat(input.lineStartIndex(3)).isEqualTo(5);
+    assertThat(input.lineStartIndex(4)).isEqualTo(7);
+  }
+
   private static void assertLineAndColumn(String string, int index, int expectedLine, int expectedColumn) {
     int[] location = new Input(string.toCharArray()).lineAndColumnAt(index);
     assertThat(location[0]).isEqualTo(expectedLine);
@@ -62,6 +62,20 @@ public class BytecodeCompleterTest {
     assertThat(classSymbol.owner().getName()).isEqualTo("OuterClassEndingWith$");
   }
 
+  @Test
+  public void classes_not_found() {
+    assertThat(bytecodeCompleter.loadClass("java.lang.Unknown").kind).isEqualTo(JavaSymbol.ABSENT);
+    assertThat(bytecodeCompleter.loadClass("java.lang.Unknown").kind).isEqualTo(JavaSymbol.ABSENT);
+    assertThat(bytecodeCompleter.loadClass("java.lang.String").kind).isEqualTo(JavaSymbol.TYP);
+  }
+
+  @Test
+  public void class_files_read_by_lookup_are_completed() {
+    JavaSymbol.TypeJavaSymbol symbol = (JavaSymbol.TypeJavaSymbol) bytecodeCompleter.loadClass("java.util.ArrayList");
+    assertThat(symbol.members().lookup("add")).isNotEmpty();
+    assertThat(symbol.getSuperclass().symbol.name).isEqualTo("AbstractList");
+  }
+
   @Test
   public void annotations() throws Exception {
     bytecodeCompleter.getClassSymbol(Annotations.class.getName().replace('.', '/')).complete();
@@ -302,4 +316,39 @@ public class BytecodeCompleterTest {
     assertThat(interfaces).isNotNull();
     assertThat(interfaces).isEmpty();
   }
+
+  @Test
+  public void classes_from_jars_are_shared_between_files() {
+    JavaSymbol.TypeJavaSymbol arrayList = bytecodeCompleter.getClassSymbol("java/util/ArrayList");
+    arrayList.complete();
+    bytecodeCompleter.endOfFile();
+    assertThat(bytecodeCompleter.getClassSymbol("java/util/ArrayList")).isSameAs(arrayList);
+    assertThat(bytecodeCompleter.isShared(arrayList)).isTrue();
+  }
+
+  @Test
+  public void classes_from_directories_and_sources_are_discarded_at_end_of_file() {
+    JavaSymbol.TypeJavaSymbol fromDirectory = bytecodeCompleter.getClassSymbol(HasInnerClass.class.getName());
+    JavaSymbol.TypeJavaSymbol fromSource = new JavaSymbol.TypeJavaSymbol(Flags.PUBLIC, "Source", bytecodeCompleter.enterPackage("org.foo"));
+    bytecodeCompleter.registerClass(fromSource);
+    assertThat(bytecodeCompleter.isShared(fromDirectory)).isFalse();
+    assertThat(bytecodeCompleter.isShared(fromSource)).isFalse();
+    assertThat(bytecodeCompleter.loadClass("org.foo.Source")).isSameAs(fromSource);
+
+    bytecodeCompleter.endOfFile();
+
+    assertThat(bytecodeCompleter.getClassSymbol(HasInnerClass.class.getName())).isNotSameAs(fromDirectory);
+    assertThat(bytecodeCompleter.loadClass("org.foo.Source")).isInstanceOf(Resolve.JavaSymbolNotFound.class);
+    // class with the same name can be declared by next file
+    bytecodeCompleter.registerClass(new JavaSymbol.TypeJavaSymbol(Flags.PUBLIC, "Source", bytecodeCompleter.enterPackage("org.foo")));
+  }
+
+  @Test
+  public void shared_classes_do_not_reference_classes_of_the_file() {
+    JavaSymbol.TypeJavaSymbol fromSource = new JavaSymbol.TypeJavaSymbol(Flags.PUBLIC, "AbstractList", bytecodeCompleter.enterPackage("java.util"));
+    bytecodeCompleter.registerClass(fromSource);
+    JavaSymbol.TypeJavaSymbol arrayList = bytecodeCompleter.getClassSymbol("java/util/ArrayList");
+    assertThat(arrayList.getSuperclass().symbol).isNotSameAs(fromSource);
+    assertThat(bytecodeCompleter.isShared(arrayList.getSuperclass().symbol)).isTrue();
+  }
 }
@@ -170,6 +170,31 @@ public class JavaTypeTest {
     assertThat(Symbols.unknownType.isSubtypeOf(symbols.objectType)).isFalse();
   }
 
+  @Test
+  public void supertypes_are_computed_once_until_invalidated() {
+    JavaSymbol.PackageJavaSymbol packageSymbol = new JavaSymbol.PackageJavaSymbol("org.foo.bar", null);
+    JavaSymbol.TypeJavaSymbol superTypeSymbol = new JavaSymbol.TypeJavaSymbol(Flags.PUBLIC, "MySuperType", packageSymbol);
+    JavaSymbol.TypeJavaSymbol typeSymbol = new JavaSymbol.TypeJavaSymbol(Flags.PUBLIC, "MyType", packageSymbol);
+    JavaType.ClassJavaType superClassType = (JavaType.ClassJavaType) superTypeSymbol.type;
+    JavaType.ClassJavaType classType = (JavaType.ClassJavaType) typeSymbol.type;
+    superClassType.supertype = symbols.objectType;
+    superClassType.interfaces = Lists.newArrayList(symbols.cloneableType);
+    classType.supertype = symbols.objectType;
+    classType.interfaces = Lists.<JavaType>newArrayList();
+
+    assertThat(typeSymbol.superTypes()).containsOnly(symbols.objectType);
+    assertThat(typeSymbol.superTypes()).isSameAs(typeSymbol.superTypes());
+    assertThat(classType.isSubtypeOf("java.lang.Cloneable")).isFalse();
+
+    classType.supertype = superClassType;
+    assertThat(classType.isSubtypeOf("org.foo.bar.MySuperType")).isFalse();
+    typeSymbol.invalidateSuperTypes();
+    assertThat(typeSymbol.superTypes()).containsOnly(superClassType, symbols.cloneableType, symbols.objectType);
+    assertThat(classType.isSubtypeOf("org.foo.bar.MySuperType")).isTrue();
+    assertThat(classType.isSubtypeOf("java.lang.Cloneable")).isTrue();
+    assertThat(classType.isSubtypeOf(superClassType)).isTrue();
+  }
+
   @Test
   public void is_primitive_wrapper() {
     for (JavaType wrapper : symbols.boxedTypes.values()) {
@@ -56,4 +56,20 @@ public class SafetyNetTest {
     }
   }
 
+  @Test
+  public void test_with_shared_bytecode_completer() {
+    ActionParser2 parser = JavaParser.createParser(Charsets.UTF_8);
+    BytecodeCompleter bytecodeCompleter = new BytecodeCompleter(Lists.newArrayList(new File("target/test-classes"), new File("target/classes")), new ParametrizedTypeCache());
+    for (String dir : dirs) {
+      for (File file : FileUtils.listFiles(new File(dir), new String[] {"java"}, true)) {
+        try {
+          SemanticModel.createFor((CompilationUnitTree) parser.parse(file), bytecodeCompleter).done();
+        } catch (Exception e) {
+          throw new RuntimeException("Unable to process file " + file, e);
+        }
+      }
+    }
+    bytecodeCompleter.done();
+  }
+
 }
@@ -21,6 +21,7 @@ package org.sonar.plugins.surefire;
 
 import com.google.common.collect.ImmutableList;
 import org.sonar.api.CoreProperties;
+import org.sonar.api.PropertyType;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.plugins.surefire.api.SurefireUtils;
@@ -41,6 +42,24 @@ public final class SurefireExtensions {
             .category(CoreProperties.CATEGORY_JAVA)
             .subCategory("JUnit")
             .build(),
+        PropertyDefinition.builder(SurefireUtils.THREADS_PROPERTY)
+            .defaultValue("1")
+            .name("JUnit Reports Threads")
+            .description("Number of threads parsing the JUnit report files.")
+            .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+            .category(CoreProperties.CATEGORY_JAVA)
+            .subCategory("JUnit")
+            .type(PropertyType.INTEGER)
+            .build(),
+        PropertyDefinition.builder(SurefireUtils.MAX_STACK_TRACE_LENGTH_PROPERTY)
+            .name("JUnit Stack Traces Length")
+            .description("Maximum number of characters kept from the message and from the stack trace of each failed test, " +
+                "0 to skip them. Leave empty to keep them entirely.")
+            .onQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+            .category(CoreProperties.CATEGORY_JAVA)
+            .subCategory("JUnit")
+            .type(PropertyType.INTEGER)
+            .build(),
 
         SurefireSensor.class,
         SurefireJavaParser.class);
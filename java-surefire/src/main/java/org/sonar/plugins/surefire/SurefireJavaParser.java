@@ -19,6 +19,9 @@
  */
 package org.sonar.plugins.surefire;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,7 +45,14 @@ import org.sonar.plugins.surefire.data.UnitTestResult;
 import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.FilenameFilter;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @since 2.4
@@ -60,9 +70,18 @@ public class SurefireJavaParser implements BatchExtension {
 
 
   public void collect(SensorContext context, File reportsDir) {
+    collect(context, reportsDir, 1, -1);
+  }
+
+  /**
+   * @param threads number of threads parsing the reports
+   * @param maxStackTraceLength maximum number of characters kept from the message and from the stack trace of each failure, 0 to skip them,
+   *                            or a negative value to keep them entirely
+   */
+  public void collect(SensorContext context, File reportsDir, int threads, int maxStackTraceLength) {
     File[] xmlFiles = getReports(reportsDir);
     if (xmlFiles.length > 0) {
-      parseFiles(context, xmlFiles);
+      parseFiles(context, xmlFiles, threads, maxStackTraceLength);
     }
   }
 
@@ -90,23 +109,58 @@ public class SurefireJavaParser implements BatchExtension {
     });
   }
 
-  private void parseFiles(SensorContext context, File[] reports) {
-    UnitTestIndex index = new UnitTestIndex();
-    parseFiles(reports, index);
+  private void parseFiles(SensorContext context, File[] reports, int threads, int maxStackTraceLength) {
+    UnitTestIndex index = parseFiles(reports, threads, maxStackTraceLength);
     sanitize(index);
     save(index, context);
   }
 
-  private void parseFiles(File[] reports, UnitTestIndex index) {
-    SurefireStaxHandler staxParser = new SurefireStaxHandler(index);
-    StaxParser parser = new StaxParser(staxParser, false);
-    for (File report : reports) {
-      try {
-        parser.parse(report);
-      } catch (XMLStreamException e) {
-        throw new SonarException("Fail to parse the Surefire report: " + report, e);
+  /**
+   * Each report is parsed into its own index on {@code threads} threads. Indexes are merged in the order of the reports, so that the
+   * result does not depend on the number of threads.
+   */
+  private static UnitTestIndex parseFiles(File[] reports, int threads, final int maxStackTraceLength) {
+    ExecutorService executor = threads > 1
+        ? Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("surefire-parser-%d").setDaemon(true).build())
+        : MoreExecutors.sameThreadExecutor();
+    UnitTestIndex index = new UnitTestIndex();
+    Deque<Future<UnitTestIndex>> pending = new ArrayDeque<Future<UnitTestIndex>>();
+    int next = 0;
+    try {
+      while (next < reports.length || !pending.isEmpty()) {
+        while (pending.size() < 2 * threads && next < reports.length) {
+          final File report = reports[next];
+          next++;
+          pending.add(executor.submit(new Callable<UnitTestIndex>() {
+            @Override
+            public UnitTestIndex call() {
+              return parseFile(report, maxStackTraceLength);
+            }
+          }));
+        }
+        index.add(pending.remove().get());
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException(e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new SonarException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return index;
+  }
+
+  private static UnitTestIndex parseFile(File report, int maxStackTraceLength) {
+    UnitTestIndex index = new UnitTestIndex();
+    StaxParser parser = new StaxParser(new SurefireStaxHandler(index, maxStackTraceLength), false);
+    try {
+      parser.parse(report);
+    } catch (XMLStreamException e) {
+      throw new SonarException("Fail to parse the Surefire report: " + report, e);
     }
+    return index;
   }
 
   private void sanitize(UnitTestIndex index) {
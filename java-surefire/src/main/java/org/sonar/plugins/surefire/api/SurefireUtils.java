@@ -36,6 +36,8 @@ public final class SurefireUtils {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SurefireUtils.class);
   public static final String SUREFIRE_REPORTS_PATH_PROPERTY = "sonar.junit.reportsPath";
+  public static final String THREADS_PROPERTY = "sonar.junit.threads";
+  public static final String MAX_STACK_TRACE_LENGTH_PROPERTY = "sonar.junit.maxStackTraceLength";
 
   private SurefireUtils() {
   }
@@ -48,6 +50,17 @@ public final class SurefireUtils {
     return dir;
   }
 
+  public static int getThreads(Settings settings) {
+    return Math.max(1, settings.getInt(THREADS_PROPERTY));
+  }
+
+  /**
+   * @return maximum number of characters kept from the message and from the stack trace of each failure, or -1 if they are kept entirely
+   */
+  public static int getMaxStackTraceLength(Settings settings) {
+    return settings.hasKey(MAX_STACK_TRACE_LENGTH_PROPERTY) ? Math.max(0, settings.getInt(MAX_STACK_TRACE_LENGTH_PROPERTY)) : -1;
+  }
+
   @CheckForNull
   private static File getReportsDirectoryFromProperty(Settings settings, FileSystem fs, PathResolver pathResolver) {
     String path = settings.getString(SUREFIRE_REPORTS_PATH_PROPERTY);
@@ -28,15 +28,27 @@ import org.sonar.api.utils.ParsingUtils;
 import org.sonar.api.utils.StaxParser.XmlStreamHandler;
 
 import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.Writer;
 import java.text.ParseException;
 import java.util.Locale;
 
 public class SurefireStaxHandler implements XmlStreamHandler {
 
   private final UnitTestIndex index;
+  private final int maxStackTraceLength;
 
   public SurefireStaxHandler(UnitTestIndex index) {
+    this(index, -1);
+  }
+
+  /**
+   * @param maxStackTraceLength maximum number of characters kept from the message and from the stack trace of each failure, 0 to skip them,
+   *                            or a negative value to keep them entirely
+   */
+  public SurefireStaxHandler(UnitTestIndex index, int maxStackTraceLength) {
     this.index = index;
+    this.maxStackTraceLength = maxStackTraceLength;
   }
 
   @Override
@@ -73,9 +85,21 @@ public class SurefireStaxHandler implements XmlStreamHandler {
   }
 
   private void setStackAndMessage(UnitTestResult result, SMInputCursor stackAndMessageCursor) throws XMLStreamException {
-    result.setMessage(stackAndMessageCursor.getAttrValue("message"));
-    String stack = stackAndMessageCursor.collectDescendantText();
-    result.setStackTrace(stack);
+    if (maxStackTraceLength < 0) {
+      result.setMessage(stackAndMessageCursor.getAttrValue("message"));
+      String stack = stackAndMessageCursor.collectDescendantText();
+      result.setStackTrace(stack);
+    } else if (maxStackTraceLength > 0) {
+      result.setMessage(StringUtils.left(stackAndMessageCursor.getAttrValue("message"), maxStackTraceLength));
+      // the text is streamed, so that large stack traces are never held in memory
+      BoundedWriter stack = new BoundedWriter(maxStackTraceLength);
+      try {
+        stackAndMessageCursor.processDescendantText(stack, false);
+      } catch (IOException e) {
+        throw new XMLStreamException(e);
+      }
+      result.setStackTrace(stack.toString());
+    }
   }
 
   private UnitTestResult parseTestResult(SMInputCursor testCaseCursor) throws XMLStreamException {
@@ -130,4 +154,36 @@ public class SurefireStaxHandler implements XmlStreamHandler {
     return name;
   }
 
+  /**
+   * Keeps the first characters written, and ignores the next ones.
+   */
+  private static class BoundedWriter extends Writer {
+    private final StringBuilder text = new StringBuilder();
+    private final int maxLength;
+
+    BoundedWriter(int maxLength) {
+      this.maxLength = maxLength;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+      text.append(chars, offset, Math.min(length, maxLength - text.length()));
+    }
+
+    @Override
+    public void flush() {
+      // nothing to flush
+    }
+
+    @Override
+    public void close() {
+      // nothing to close
+    }
+
+    @Override
+    public String toString() {
+      return text.toString();
+    }
+  }
+
 }
@@ -61,6 +61,15 @@ public class UnitTestIndex {
     return indexByClassname.size();
   }
 
+  /**
+   * Adds the results of another index, after the results of this one.
+   */
+  public void add(UnitTestIndex other) {
+    for (Map.Entry<String, UnitTestClassReport> entry : other.indexByClassname.entrySet()) {
+      index(entry.getKey()).add(entry.getValue());
+    }
+  }
+
   public UnitTestClassReport merge(String classname, String intoClassname) {
     UnitTestClassReport from = indexByClassname.get(classname);
     if (from!=null) {
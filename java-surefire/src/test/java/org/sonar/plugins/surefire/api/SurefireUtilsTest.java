@@ -59,4 +59,22 @@ public class SurefireUtilsTest {
     assertThat(directory.exists()).isFalse();
     assertThat(directory.isDirectory()).isFalse();
   }
+
+  @Test
+  public void threads() {
+    Settings settings = new Settings();
+    assertThat(SurefireUtils.getThreads(settings)).isEqualTo(1);
+    settings.setProperty(SurefireUtils.THREADS_PROPERTY, 4);
+    assertThat(SurefireUtils.getThreads(settings)).isEqualTo(4);
+  }
+
+  @Test
+  public void max_stack_trace_length() {
+    Settings settings = new Settings();
+    assertThat(SurefireUtils.getMaxStackTraceLength(settings)).isEqualTo(-1);
+    settings.setProperty(SurefireUtils.MAX_STACK_TRACE_LENGTH_PROPERTY, 1000);
+    assertThat(SurefireUtils.getMaxStackTraceLength(settings)).isEqualTo(1000);
+    settings.setProperty(SurefireUtils.MAX_STACK_TRACE_LENGTH_PROPERTY, 0);
+    assertThat(SurefireUtils.getMaxStackTraceLength(settings)).isEqualTo(0);
+  }
 }
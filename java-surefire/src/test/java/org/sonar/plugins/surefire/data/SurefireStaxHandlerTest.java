@@ -28,6 +28,7 @@ import javax.xml.stream.XMLStreamException;
 import java.io.File;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
 
@@ -114,9 +115,41 @@ public class SurefireStaxHandlerTest {
     assertThat(index.get("org.sonar.SecondTest").getTests(), is(4L));
   }
 
+  @Test
+  public void shouldTruncateStackTracesAndMessages() throws XMLStreamException {
+    parse("errorsAndFailures.xml", 20);
+    UnitTestResult failure = index.get("org.sonar.Foo").getResults().get(0);
+    assertThat(failure.getMessage(), is("expected:<2> but was"));
+    assertThat(failure.getStackTrace(), is("java.lang.AssertionE"));
+  }
+
+  @Test
+  public void shouldSkipStackTracesAndMessages() throws XMLStreamException {
+    parse("errorsAndFailures.xml", 0);
+    UnitTestClassReport report = index.get("org.sonar.Foo");
+    assertThat(report.getFailures(), is(1L));
+    assertThat(report.getResults().get(0).getMessage(), nullValue());
+    assertThat(report.getResults().get(0).getStackTrace(), nullValue());
+  }
+
+  @Test
+  public void shouldKeepShortStackTracesEntirely() throws XMLStreamException {
+    parse("errorsAndFailures.xml", 100000);
+    UnitTestResult truncatedFailure = index.get("org.sonar.Foo").getResults().get(0);
+    index = new UnitTestIndex();
+    parse("errorsAndFailures.xml");
+    UnitTestResult failure = index.get("org.sonar.Foo").getResults().get(0);
+    assertThat(truncatedFailure.getMessage(), is(failure.getMessage()));
+    assertThat(truncatedFailure.getStackTrace(), is(failure.getStackTrace()));
+  }
+
   private void parse(String path) throws XMLStreamException {
+    parse(path, -1);
+  }
+
+  private void parse(String path, int maxStackTraceLength) throws XMLStreamException {
     File xml = TestUtils.getResource(getClass(), path);
-    SurefireStaxHandler staxParser = new SurefireStaxHandler(index);
+    SurefireStaxHandler staxParser = new SurefireStaxHandler(index, maxStackTraceLength);
     StaxParser parser = new StaxParser(staxParser, false);
     parser.parse(xml);
   }
@@ -63,6 +63,26 @@ public class UnitTestIndexTest {
     assertThat(index.get("org.sonar.Foo"), nullValue());
   }
 
+  @Test
+  public void shouldAddIndex() {
+    UnitTestIndex index = new UnitTestIndex();
+    index.index("org.sonar.Foo").add(new UnitTestResult().setName("first").setStatus(UnitTestResult.STATUS_OK).setDurationMilliseconds(200L));
+    UnitTestIndex other = new UnitTestIndex();
+    other.index("org.sonar.Foo").add(new UnitTestResult().setName("second").setStatus(UnitTestResult.STATUS_ERROR).setDurationMilliseconds(500L));
+    other.index("org.sonar.Bar").add(new UnitTestResult().setName("third").setStatus(UnitTestResult.STATUS_OK).setDurationMilliseconds(100L));
+
+    index.add(other);
+
+    assertThat(index.size(), is(2));
+    UnitTestClassReport report = index.get("org.sonar.Foo");
+    assertThat(report.getTests(), is(2L));
+    assertThat(report.getErrors(), is(1L));
+    assertThat(report.getDurationMilliseconds(), is(700L));
+    assertThat(report.getResults().get(0).getName(), is("first"));
+    assertThat(report.getResults().get(1).getName(), is("second"));
+    assertThat(index.get("org.sonar.Bar").getTests(), is(1L));
+  }
+
   @Test
   public void shouldMergeClasses() {
     UnitTestIndex index = new UnitTestIndex();
@@ -44,6 +44,14 @@ public class JavaPlugin extends SonarPlugin {
   public static final String SQUID_ANALYSE_ACCESSORS_PROPERTY = "sonar.squid.analyse.property.accessors";
   public static final boolean SQUID_ANALYSE_ACCESSORS_DEFAULT_VALUE = true;
 
+  public static final String PARSER_THREADS_PROPERTY = "sonar.java.parser.threads";
+  public static final int PARSER_THREADS_DEFAULT_VALUE = 1;
+  public static final String BYTECODE_THREADS_PROPERTY = "sonar.java.bytecode.threads";
+  public static final int BYTECODE_THREADS_DEFAULT_VALUE = 1;
+  public static final String SIGNATURE_INDEX_DIRECTORY_PROPERTY = "sonar.java.signatureIndex.directory";
+  public static final String INCREMENTAL_CACHE_FILE_PROPERTY = "sonar.java.incremental.cacheFile";
+  public static final String PROFILE_CHECKS_PROPERTY = "sonar.java.profileChecks";
+
   @Override
   public List getExtensions() {
     ImmutableList.Builder<Object> builder = ImmutableList.builder();
@@ -74,6 +82,52 @@ public class JavaPlugin extends SonarPlugin {
             .type(PropertyType.BOOLEAN)
             .onQualifiers(Qualifiers.PROJECT)
             .build(),
+        PropertyDefinition.builder(JavaPlugin.PARSER_THREADS_PROPERTY)
+            .defaultValue(JavaPlugin.PARSER_THREADS_DEFAULT_VALUE + "")
+            .category(JAVA_CATEGORY)
+            .subCategory(GENERAL_SUBCATEGORY)
+            .name("Parser threads")
+            .description("Number of threads used to parse source files. Files are still visited by rules one after the other, " +
+                "so results do not depend on this value.")
+            .type(PropertyType.INTEGER)
+            .onQualifiers(Qualifiers.PROJECT)
+            .build(),
+        PropertyDefinition.builder(JavaPlugin.BYTECODE_THREADS_PROPERTY)
+            .defaultValue(JavaPlugin.BYTECODE_THREADS_DEFAULT_VALUE + "")
+            .category(JAVA_CATEGORY)
+            .subCategory(GENERAL_SUBCATEGORY)
+            .name("Bytecode reader threads")
+            .description("Number of threads used to read and parse class files. Classes are still analyzed by rules one after the other, " +
+                "so results do not depend on this value.")
+            .type(PropertyType.INTEGER)
+            .onQualifiers(Qualifiers.PROJECT)
+            .build(),
+        PropertyDefinition.builder(JavaPlugin.SIGNATURE_INDEX_DIRECTORY_PROPERTY)
+            .category(JAVA_CATEGORY)
+            .subCategory(GENERAL_SUBCATEGORY)
+            .name("Signature index directory")
+            .description("Directory where signatures of classes from libraries are indexed, so that next analyses do not have to read " +
+                "libraries again. Indexes are not used when empty.")
+            .onQualifiers(Qualifiers.PROJECT)
+            .build(),
+        PropertyDefinition.builder(JavaPlugin.INCREMENTAL_CACHE_FILE_PROPERTY)
+            .category(JAVA_CATEGORY)
+            .subCategory(GENERAL_SUBCATEGORY)
+            .name("Incremental analysis cache file")
+            .description("File where results of the analysis of each source file are stored, so that next analyses only analyze files " +
+                "which changed or depend on a changed file, and replay the results of other ones. Every file is analyzed when empty.")
+            .onQualifiers(Qualifiers.PROJECT)
+            .build(),
+        PropertyDefinition.builder(JavaPlugin.PROFILE_CHECKS_PROPERTY)
+            .defaultValue("false")
+            .category(JAVA_CATEGORY)
+            .subCategory(GENERAL_SUBCATEGORY)
+            .name("Profile checks")
+            .description("Measure wall time, CPU time and allocated memory of each rule. Rules are logged from the slowest one at the end of " +
+                "the analysis, and detailed in the file " + JavaSquidSensor.CHECKS_PROFILE_FILE + " of the working directory.")
+            .type(PropertyType.BOOLEAN)
+            .onQualifiers(Qualifiers.PROJECT)
+            .build(),
         PropertyDefinition.builder(CoreProperties.DESIGN_SKIP_DESIGN_PROPERTY)
             .defaultValue(CoreProperties.DESIGN_SKIP_DESIGN_DEFAULT_VALUE + "")
             .category(JAVA_CATEGORY)
@@ -19,7 +19,14 @@
  */
 package org.sonar.plugins.java;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.DependedUpon;
 import org.sonar.api.batch.DependsUpon;
@@ -32,6 +39,8 @@ import org.sonar.api.checks.NoSonarFilter;
 import org.sonar.api.config.Settings;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.ActiveRuleParam;
 import org.sonar.java.DefaultJavaResourceLocator;
 import org.sonar.java.JavaClasspath;
 import org.sonar.java.JavaConfiguration;
@@ -40,17 +49,26 @@ import org.sonar.java.Measurer;
 import org.sonar.java.SonarComponents;
 import org.sonar.java.api.JavaUtils;
 import org.sonar.java.checks.CheckList;
+import org.sonar.java.incremental.ResultsCache;
+import org.sonar.java.model.ChecksProfiler;
 
+import javax.annotation.CheckForNull;
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 @Phase(name = Phase.Name.PRE)
 @DependsUpon(JavaUtils.BARRIER_BEFORE_SQUID)
 @DependedUpon(value = JavaUtils.BARRIER_AFTER_SQUID)
 public class JavaSquidSensor implements Sensor {
 
+  static final String CHECKS_PROFILE_FILE = "java-checks-profile.json";
+
+  private static final Logger LOG = LoggerFactory.getLogger(JavaSquidSensor.class);
+
   private final JavaClasspath javaClasspath;
   private final SonarComponents sonarComponents;
   private final FileSystem fs;
@@ -82,8 +100,12 @@ public class JavaSquidSensor implements Sensor {
     sonarComponents.registerTestCheckClasses(CheckList.REPOSITORY_KEY, CheckList.getJavaTestChecks());
     JavaConfiguration configuration = createConfiguration();
     Measurer measurer = new Measurer(project, context, configuration.separatesAccessorsFromMethods());
-    JavaSquid squid = new JavaSquid(configuration, sonarComponents, measurer, javaResourceLocator, sonarComponents.checkClasses());
+    JavaSquid squid = new JavaSquid(configuration, sonarComponents, measurer, javaResourceLocator, createResultsCache(configuration),
+      sonarComponents.checkClasses());
     squid.scan(getSourceFiles(), getTestFiles(), getBytecodeFiles());
+    if (configuration.getChecksProfiler() != null) {
+      saveChecksProfile(configuration.getChecksProfiler());
+    }
     new Bridges(squid, settings).save(context, project, sonarComponents, javaResourceLocator.getResourceMapping(), noSonarFilter, profile);
   }
 
@@ -115,9 +137,110 @@ public class JavaSquidSensor implements Sensor {
     Charset charset = fs.encoding();
     JavaConfiguration conf = new JavaConfiguration(charset);
     conf.setSeparateAccessorsFromMethods(analyzePropertyAccessors);
+    conf.setParserThreads(Math.max(1, settings.getInt(JavaPlugin.PARSER_THREADS_PROPERTY)));
+    conf.setBytecodeThreads(Math.max(1, settings.getInt(JavaPlugin.BYTECODE_THREADS_PROPERTY)));
+    if (settings.getBoolean(JavaPlugin.PROFILE_CHECKS_PROPERTY)) {
+      conf.setChecksProfiler(new ChecksProfiler());
+    }
+    String signatureIndexDirectory = settings.getString(JavaPlugin.SIGNATURE_INDEX_DIRECTORY_PROPERTY);
+    if (StringUtils.isNotBlank(signatureIndexDirectory)) {
+      conf.setSignatureIndexDirectory(new File(signatureIndexDirectory));
+    }
     return conf;
   }
 
+  private void saveChecksProfile(ChecksProfiler checksProfiler) {
+    File file = new File(fs.workDir(), CHECKS_PROFILE_FILE);
+    LOG.info("Profile of checks, also saved in " + file.getAbsolutePath() + ":\n" + checksProfiler.report());
+    try {
+      checksProfiler.writeJson(file);
+    } catch (IOException e) {
+      LOG.warn("Unable to save profile of checks in " + file.getAbsolutePath(), e);
+    }
+  }
+
+  @CheckForNull
+  private ResultsCache createResultsCache(JavaConfiguration configuration) {
+    String cacheFile = settings.getString(JavaPlugin.INCREMENTAL_CACHE_FILE_PROPERTY);
+    if (StringUtils.isBlank(cacheFile)) {
+      return null;
+    }
+    return new ResultsCache(new File(cacheFile), fingerprint(configuration), configuration.getCharset());
+  }
+
+  /**
+   * Everything which can change the results of the analysis of a file, except its content and the content of the other files.
+   */
+  private String fingerprint(JavaConfiguration configuration) {
+    List<String> rules = Lists.newArrayList();
+    for (ActiveRule activeRule : profile.getActiveRules()) {
+      List<String> params = Lists.newArrayList();
+      for (ActiveRuleParam param : activeRule.getActiveRuleParams()) {
+        params.add(param.getKey() + "=" + param.getValue());
+      }
+      rules.add(activeRule.getRepositoryKey() + ":" + activeRule.getRuleKey() + Ordering.natural().sortedCopy(params));
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append(JavaSquid.class.getPackage().getImplementationVersion()).append('\n');
+    sb.append(configuration.getCharset()).append(' ').append(configuration.separatesAccessorsFromMethods())
+      .append(' ').append(settings.getBoolean(CoreProperties.DESIGN_SKIP_DESIGN_PROPERTY)).append('\n');
+    sb.append(Ordering.natural().sortedCopy(rules)).append('\n');
+    Set<File> binaryDirs = Sets.newHashSet();
+    for (File binaryDir : Iterables.concat(sonarComponents.getJavaBinaryDirs(), sonarComponents.getJavaTestBinaryDirs())) {
+      binaryDirs.add(binaryDir.getAbsoluteFile());
+    }
+    sb.append(classpathFingerprint(sonarComponents.getJavaClasspath(), binaryDirs));
+    sb.append(classpathFingerprint(sonarComponents.getJavaTestClasspath(), binaryDirs));
+    return sb.toString();
+  }
+
+  /**
+   * Files are identified by their length and last modification, directories by the files they contain, so that the cache is
+   * invalidated when a library or the output directory of another module changes. The binary directories of the module itself
+   * are only identified by their path: they are compiled from the analyzed files, whose changes are already tracked by the cache,
+   * and are rewritten by each build.
+   */
+  @VisibleForTesting
+  static String classpathFingerprint(List<File> classpath, Set<File> binaryDirs) {
+    StringBuilder sb = new StringBuilder();
+    for (File element : classpath) {
+      sb.append(element.getAbsolutePath());
+      if (binaryDirs.contains(element.getAbsoluteFile())) {
+        sb.append(" binaries");
+      } else if (element.isFile()) {
+        sb.append(' ').append(element.length()).append(' ').append(element.lastModified());
+      } else if (element.isDirectory()) {
+        long[] stats = new long[3];
+        addDirectoryStats(element, "", stats);
+        sb.append(' ').append(stats[0]).append(' ').append(stats[1]).append(' ').append(stats[2]);
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Adds to {@code stats} the number of files of the directory, their latest modification, and a hash of their paths, lengths
+   * and modifications which does not depend on the order of the files.
+   */
+  private static void addDirectoryStats(File dir, String path, long[] stats) {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      String relativePath = path + file.getName();
+      if (file.isDirectory()) {
+        addDirectoryStats(file, relativePath + "/", stats);
+      } else {
+        long lastModified = file.lastModified();
+        stats[0]++;
+        stats[1] = Math.max(stats[1], lastModified);
+        stats[2] += (relativePath + ' ' + file.length() + ' ' + lastModified).hashCode();
+      }
+    }
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
@@ -19,8 +19,14 @@
  */
 package org.sonar.plugins.java;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.fs.internal.DefaultFileSystem;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.checks.NoSonarFilter;
@@ -30,12 +36,21 @@ import org.sonar.api.resources.Project;
 import org.sonar.java.DefaultJavaResourceLocator;
 import org.sonar.java.JavaClasspath;
 import org.sonar.java.SonarComponents;
+import org.sonar.java.incremental.ResultsCache;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 
 public class JavaSquidSensorTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private final DefaultFileSystem fileSystem = new DefaultFileSystem();
   private JavaSquidSensor sensor;
 
@@ -61,4 +76,54 @@ public class JavaSquidSensorTest {
     assertThat(sensor.toString()).isEqualTo("JavaSquidSensor");
   }
 
+  @Test
+  public void classpath_fingerprint_should_change_with_content_of_directories() throws Exception {
+    File classes = temp.newFolder("classes");
+    File classFile = new File(classes, "org/example/Foo.class");
+    Files.createParentDirs(classFile);
+    Files.write("foo", classFile, Charsets.UTF_8);
+    List<File> classpath = ImmutableList.of(classes, new File(classes, "missing.jar"));
+    Set<File> binaryDirs = Collections.emptySet();
+    String fingerprint = JavaSquidSensor.classpathFingerprint(classpath, binaryDirs);
+    assertThat(JavaSquidSensor.classpathFingerprint(classpath, binaryDirs)).isEqualTo(fingerprint);
+
+    Files.write("foo2", classFile, Charsets.UTF_8);
+    String changedFingerprint = JavaSquidSensor.classpathFingerprint(classpath, binaryDirs);
+    assertThat(changedFingerprint).isNotEqualTo(fingerprint);
+
+    Files.write("bar", new File(classes, "org/example/Bar.class"), Charsets.UTF_8);
+    assertThat(JavaSquidSensor.classpathFingerprint(classpath, binaryDirs)).isNotEqualTo(changedFingerprint);
+  }
+
+  @Test
+  public void recompilation_of_the_module_keeps_the_cache() throws Exception {
+    File binaries = temp.newFolder("binaries");
+    File classFile = new File(binaries, "org/example/Foo.class");
+    Files.createParentDirs(classFile);
+    Files.write("foo", classFile, Charsets.UTF_8);
+    File library = temp.newFolder("library");
+    Files.write("bar", new File(library, "Bar.class"), Charsets.UTF_8);
+    List<File> classpath = ImmutableList.of(binaries, library);
+    Set<File> binaryDirs = ImmutableSet.of(binaries.getAbsoluteFile());
+    File source = temp.newFile("Foo.java");
+    Files.write("class Foo { }", source, Charsets.UTF_8);
+    File cacheFile = new File(temp.getRoot(), "cache.bin");
+
+    ResultsCache cache = new ResultsCache(cacheFile, JavaSquidSensor.classpathFingerprint(classpath, binaryDirs), Charsets.UTF_8);
+    cache.computeChanges(ImmutableList.of(source), Collections.<File>emptyList());
+    cache.save();
+
+    Files.write("foo2", classFile, Charsets.UTF_8);
+    Files.write("baz", new File(binaries, "org/example/Baz.class"), Charsets.UTF_8);
+    cache = new ResultsCache(cacheFile, JavaSquidSensor.classpathFingerprint(classpath, binaryDirs), Charsets.UTF_8);
+    cache.computeChanges(ImmutableList.of(source), Collections.<File>emptyList());
+    assertThat(cache.isUnchanged(source)).isTrue();
+    cache.save();
+
+    Files.write("bar2", new File(library, "Bar.class"), Charsets.UTF_8);
+    cache = new ResultsCache(cacheFile, JavaSquidSensor.classpathFingerprint(classpath, binaryDirs), Charsets.UTF_8);
+    cache.computeChanges(ImmutableList.of(source), Collections.<File>emptyList());
+    assertThat(cache.isUnchanged(source)).isFalse();
+  }
+
 }